@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2017 SaltedFish Captain
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.graphics;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Description:
+ * A heap backed stand-in of the framework bitmap for benchmarks on JVM. The pixels are a byte
+ * array sized like a native allocation, so allocation, reconfiguring and copying cost about the
+ * same as on a device, while drawing is not supported.
+ * <p>
+ * Attention:
+ * Only the methods the benchmarked code uses are here.
+ * <p>
+ */
+
+public final class Bitmap {
+    private int width;
+    private int height;
+    private Config config;
+    private byte[] pixels;
+    private boolean recycled;
+
+    private Bitmap(int width, int height, Config config) {
+        this.width = width;
+        this.height = height;
+        this.config = config;
+        this.pixels = new byte[width * height * config.bytesPerPixel];
+    }
+
+    public static Bitmap createBitmap(int width, int height, Config config) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("width and height must be > 0");
+        }
+        return new Bitmap(width, height, config);
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public Config getConfig() {
+        return config;
+    }
+
+    public int getRowBytes() {
+        return width * config.bytesPerPixel;
+    }
+
+    public int getByteCount() {
+        return getRowBytes() * height;
+    }
+
+    public int getAllocationByteCount() {
+        return pixels.length;
+    }
+
+    public boolean isMutable() {
+        return true;
+    }
+
+    public boolean isRecycled() {
+        return recycled;
+    }
+
+    public void recycle() {
+        recycled = true;
+    }
+
+    public void reconfigure(int width, int height, Config config) {
+        if (width * height * config.bytesPerPixel > pixels.length) {
+            throw new IllegalArgumentException("Bitmap not large enough to support new configuration");
+        }
+        this.width = width;
+        this.height = height;
+        this.config = config;
+    }
+
+    public void eraseColor(int color) {
+        Arrays.fill(pixels, 0, getByteCount(), (byte) (color >>> 24));
+    }
+
+    public void copyPixelsFromBuffer(Buffer source) {
+        ((ByteBuffer) source).get(pixels, 0, getByteCount());
+    }
+
+    /**
+     * Only the alpha is kept for {@link Config#ALPHA_8}, other configs keep all channels.
+     */
+    public void setPixels(int[] colors, int offset, int stride, int x, int y, int width, int height) {
+        int bytesPerPixel = config.bytesPerPixel;
+        for (int row = 0; row < height; row++) {
+            int source = offset + row * stride;
+            int target = ((y + row) * this.width + x) * bytesPerPixel;
+            for (int column = 0; column < width; column++) {
+                int color = colors[source + column];
+                if (bytesPerPixel == 1) {
+                    pixels[target++] = (byte) (color >>> 24);
+                } else {
+                    pixels[target++] = (byte) (color >>> 16);
+                    pixels[target++] = (byte) (color >>> 8);
+                    pixels[target++] = (byte) color;
+                    pixels[target++] = (byte) (color >>> 24);
+                }
+            }
+        }
+    }
+
+    public enum Config {
+        ALPHA_8(1),
+        RGB_565(2),
+        ARGB_4444(4),
+        ARGB_8888(4);
+
+        final int bytesPerPixel; // 与KITKAT之后一致，ARGB_4444实际按ARGB_8888分配
+
+        Config(int bytesPerPixel) {
+            this.bytesPerPixel = bytesPerPixel;
+        }
+    }
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright (c) 2017 SaltedFish Captain
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.os;
+
+/**
+ * Description:
+ * A stand-in of the framework build information for benchmarks on JVM, it pretends to be the
+ * target SDK so the code paths of current devices are measured.
+ * <p>
+ */
+
+public final class Build {
+
+    public static final class VERSION {
+        public static final int SDK_INT = VERSION_CODES.N_MR1;
+    }
+
+    public static final class VERSION_CODES {
+        public static final int JELLY_BEAN = 16;
+        public static final int KITKAT = 19;
+        public static final int N_MR1 = 25;
+    }
+}
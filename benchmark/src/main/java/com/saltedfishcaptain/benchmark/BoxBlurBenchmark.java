@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2017 SaltedFish Captain
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.saltedfishcaptain.benchmark;
+
+import com.saltedfishcaptain.library.BoxBlurShadowRenderer;
+import com.saltedfishcaptain.library.ShadowMask;
+import com.saltedfishcaptain.library.ShadowRenderScale;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Description:
+ * Render a full shadow mask the way ShadowLayout does for a view size, including the geometry
+ * and blur radius conversion of a downsampled render.
+ * <p>
+ */
+
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BoxBlurBenchmark {
+    @Param({"360x240", "1080x720"})
+    public String size;
+
+    @Param({"4", "16", "48"})
+    public float blurRadius;
+
+    @Param({"0", "8", "32"})
+    public float cornerRadius;
+
+    @Param({"1", "2", "4"})
+    public int renderScale;
+
+    private final BoxBlurShadowRenderer renderer = new BoxBlurShadowRenderer();
+    private int maskWidth;
+    private int maskHeight;
+    private float inset;
+    private float scaledCornerRadius;
+    private float scaledBlurRadius;
+
+    @Setup
+    public void setUp() {
+        maskWidth = ShadowRenderScale.scaleSize(Sizes.width(size), renderScale);
+        maskHeight = ShadowRenderScale.scaleSize(Sizes.height(size), renderScale);
+        inset = blurRadius / renderScale;
+        scaledCornerRadius = cornerRadius / renderScale;
+        scaledBlurRadius = ShadowRenderScale.scaleBlurRadius(blurRadius, renderScale);
+    }
+
+    @Benchmark
+    public ShadowMask render() {
+        ShadowMask mask = ShadowMask.obtain(maskWidth, maskHeight);
+        renderer.render(mask, inset, inset, maskWidth - inset, maskHeight - inset,
+                scaledCornerRadius, scaledBlurRadius);
+        mask.recycle();
+        return mask;
+    }
+}
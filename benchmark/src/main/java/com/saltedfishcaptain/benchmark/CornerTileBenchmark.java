@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2017 SaltedFish Captain
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.saltedfishcaptain.benchmark;
+
+import com.saltedfishcaptain.library.BoxBlurShadowRenderer;
+import com.saltedfishcaptain.library.ShadowMask;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Description:
+ * Render the corner tile of nine patch mode, whose size only depends on corner radius and blur
+ * radius, the same as ShadowLayout computes it.
+ * <p>
+ */
+
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CornerTileBenchmark {
+    @Param({"4", "16", "48"})
+    public float blurRadius;
+
+    @Param({"0", "8", "32"})
+    public float cornerRadius;
+
+    private final BoxBlurShadowRenderer renderer = new BoxBlurShadowRenderer();
+    private int tileSize;
+
+    @Setup
+    public void setUp() {
+        // NinePatchShadowDrawable.getCornerSize, the blur extent is three sigma and three pixels
+        float sigma = 0.57735f * blurRadius + 0.5f;
+        int cornerSize = (int) Math.ceil(blurRadius + cornerRadius) + (int) Math.ceil(3 * sigma) + 3;
+        tileSize = cornerSize * 2 + 1;
+    }
+
+    @Benchmark
+    public ShadowMask render() {
+        ShadowMask mask = ShadowMask.obtain(tileSize, tileSize);
+        renderer.render(mask, blurRadius, blurRadius, tileSize - blurRadius, tileSize - blurRadius,
+                cornerRadius, blurRadius);
+        mask.recycle();
+        return mask;
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2017 SaltedFish Captain
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.saltedfishcaptain.benchmark;
+
+import android.graphics.Bitmap;
+
+import com.saltedfishcaptain.library.BoxBlurShadowRenderer;
+import com.saltedfishcaptain.library.ShadowMask;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Description:
+ * Move a rendered mask into a bitmap. {@link Bitmap.Config#ALPHA_8} is copied as is and tinted
+ * when drawn, which is what the layouts do, {@link Bitmap.Config#ARGB_8888} is tinted pixel by
+ * pixel while rendering, which is kept to compare with.
+ * <p>
+ */
+
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MaskTintBenchmark {
+    private static final int SHADOW_COLOR = 0x88757575;
+
+    @Param({"360x240", "1080x720"})
+    public String size;
+
+    @Param({"ALPHA_8", "ARGB_8888"})
+    public Bitmap.Config config;
+
+    private ShadowMask mask;
+    private Bitmap bitmap;
+    private int[] row;
+
+    @Setup
+    public void setUp() {
+        int width = Sizes.width(size);
+        int height = Sizes.height(size);
+
+        mask = new ShadowMask(width, height);
+        new BoxBlurShadowRenderer().render(mask, 16, 16, width - 16, height - 16, 8, 16);
+        bitmap = Bitmap.createBitmap(width, height, config);
+        row = new int[width];
+    }
+
+    @Benchmark
+    public Bitmap copy() {
+        int width = mask.getWidth();
+        int height = mask.getHeight();
+        byte[] buffer = mask.getBuffer();
+
+        if (config == Bitmap.Config.ALPHA_8) {
+            bitmap.copyPixelsFromBuffer(ByteBuffer.wrap(buffer, 0, width * height));
+            return bitmap;
+        }
+
+        int colorAlpha = SHADOW_COLOR >>> 24;
+        int rgb = SHADOW_COLOR & 0x00FFFFFF;
+        for (int y = 0; y < height; y++) {
+            int offset = y * width;
+            for (int x = 0; x < width; x++) {
+                int alpha = ((buffer[offset + x] & 0xFF) * colorAlpha + 127) / 255;
+                row[x] = (alpha << 24) | rgb;
+            }
+            bitmap.setPixels(row, 0, width, 0, y, width, 1);
+        }
+        return bitmap;
+    }
+}
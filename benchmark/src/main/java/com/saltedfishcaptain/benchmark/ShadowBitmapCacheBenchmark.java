@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2017 SaltedFish Captain
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.saltedfishcaptain.benchmark;
+
+import android.graphics.Bitmap;
+
+import com.saltedfishcaptain.library.ShadowBitmapCache;
+import com.saltedfishcaptain.library.ShadowBitmapPool;
+import com.saltedfishcaptain.library.ShadowRenderer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Description:
+ * Look up {@link ShadowBitmapCache} like a list of identical cards, which always hits, and like a
+ * list of different cards with a small budget, which misses and evicts into the pool every time.
+ * <p>
+ */
+
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ShadowBitmapCacheBenchmark {
+    private static final int KEY_COUNT = 64;
+    private static final int CACHED_COUNT = 4;
+
+    @Param({"360x240", "1080x720"})
+    public String size;
+
+    @Param({"ALPHA_8", "ARGB_8888"})
+    public Bitmap.Config config;
+
+    private final ShadowBitmapCache cache = ShadowBitmapCache.getInstance();
+    private final ShadowBitmapPool pool = ShadowBitmapPool.getInstance();
+    private final ShadowBitmapCache.Key[] keys = new ShadowBitmapCache.Key[KEY_COUNT];
+    private int width;
+    private int height;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        width = Sizes.width(size);
+        height = Sizes.height(size);
+        for (int i = 0; i < KEY_COUNT; i++) {
+            keys[i] = new ShadowBitmapCache.Key.Builder(ShadowRenderer.class, width, height)
+                    .setShadow(8, 4 + i)
+                    .setColor(0xFF000000)
+                    .setConfig(config)
+                    .build();
+        }
+
+        cache.clear();
+        pool.clear();
+        long bytes = (long) width * height * (config == Bitmap.Config.ALPHA_8 ? 1 : 4);
+        cache.setMaxBytes(bytes * CACHED_COUNT);
+        pool.setMaxBytes(bytes * CACHED_COUNT);
+
+        cache.put(keys[0], pool.get(width, height, config));
+        cache.release(keys[0]);
+    }
+
+    @TearDown
+    public void tearDown() {
+        cache.clear();
+        pool.clear();
+    }
+
+    @Benchmark
+    public Bitmap hit() {
+        Bitmap bitmap = cache.acquire(keys[0]);
+        cache.release(keys[0]);
+        return bitmap;
+    }
+
+    @Benchmark
+    public Bitmap missAndEvict() {
+        next = next % (KEY_COUNT - 1) + 1;
+        ShadowBitmapCache.Key key = keys[next];
+
+        Bitmap bitmap = cache.acquire(key);
+        if (bitmap == null) {
+            bitmap = cache.put(key, pool.get(width, height, config));
+        }
+        cache.release(key);
+        return bitmap;
+    }
+}
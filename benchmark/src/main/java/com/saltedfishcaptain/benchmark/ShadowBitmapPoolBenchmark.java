@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2017 SaltedFish Captain
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.saltedfishcaptain.benchmark;
+
+import android.graphics.Bitmap;
+
+import com.saltedfishcaptain.library.ShadowBitmapPool;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Description:
+ * Take bitmaps from {@link ShadowBitmapPool} and hand them back, for the same size which is a
+ * plain hit, and for sizes changing every time which reconfigures and erases the bitmap.
+ * <p>
+ */
+
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ShadowBitmapPoolBenchmark {
+    private static final int RESIZE_STEP = 16;
+
+    @Param({"360x240", "1080x720"})
+    public String size;
+
+    @Param({"ALPHA_8", "ARGB_8888"})
+    public Bitmap.Config config;
+
+    private final ShadowBitmapPool pool = ShadowBitmapPool.getInstance();
+    private int width;
+    private int height;
+    private boolean smaller;
+
+    @Setup
+    public void setUp() {
+        width = Sizes.width(size);
+        height = Sizes.height(size);
+        pool.clear();
+        pool.setMaxBytes(64L * 1024 * 1024);
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.clear();
+    }
+
+    @Benchmark
+    public Bitmap sameSize() {
+        Bitmap bitmap = pool.get(width, height, config);
+        pool.put(bitmap);
+        return bitmap;
+    }
+
+    @Benchmark
+    public Bitmap changingSize() {
+        smaller = !smaller;
+        int step = smaller ? RESIZE_STEP : 0;
+        Bitmap bitmap = pool.get(width - step, height - step, config);
+        pool.put(bitmap);
+        return bitmap;
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ * Copyright (c) 2017 SaltedFish Captain
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.saltedfishcaptain.library;
+
+/**
+ * Description:
+ * A pure Java {@link ShadowRenderer} evaluates the gaussian blur of a round rect in closed form.
+ * The blur of a rect is the product of two differences of the gaussian integral, which is read
+ * from a small precomputed table. A round rect is split into horizontal slices, the straight
+ * middle is one slice, and each corner band within reach of a row is cut into a few slices by
+ * equal angles of the arc, each inset by the mean width of the arc over it. There is no
+ * convolution, the cost per pixel is bounded: a pixel which is not solid sums at most 25
+ * slices, though the mask grows by 4σ of the blur on each side. The falloff is the exact
+ * gaussian profile which {@link ShadowDrawable} approximates by a three-stop gradient.
+ * <p>
+ * Attention:
+ * Rendering is synchronized on the instance because of the shared row buffers, use one instance
+ * per thread if renders should run in parallel.
+ * <p>
+ */
+
+public class AnalyticShadowRenderer implements ShadowRenderer {
+    private static final float TABLE_RANGE = 4f; // 查表范围是正负4σ，之外的积分当作0或1
+    private static final int TABLE_SIZE = 1024;
+    private static final float TABLE_SCALE = TABLE_SIZE / (2 * TABLE_RANGE);
+    private static final float[] CDF_TABLE = buildCdfTable();
+
+    private static final int CORNER_SLICES = 12; // 每个圆角带在一行可及范围内切成的片数
+    private static final int MAX_SLICES = 2 * CORNER_SLICES + 1;
+
+    // 一行内每一片的权重和左右边界，每行只计算一次
+    private final float[] sliceWeights = new float[MAX_SLICES];
+    private final float[] sliceLefts = new float[MAX_SLICES];
+    private final float[] sliceRights = new float[MAX_SLICES];
+    private int sliceCount;
+
+    @Override
+    public synchronized void render(ShadowMask mask, float left, float top, float right, float bottom,
+                                    float cornerRadius, float blurRadius) {
+        float sigma = BoxBlurShadowRenderer.convertRadiusToSigma(blurRadius);
+        if (sigma <= 0 || right <= left || bottom <= top) {
+            mask.fillRoundRect(left, top, right, bottom, cornerRadius);
+            return;
+        }
+
+        float radius = Math.max(0, Math.min(cornerRadius, Math.min(right - left, bottom - top) / 2));
+        float inverseSigma = 1 / sigma;
+        float reach = TABLE_RANGE * sigma;
+
+        int width = mask.getWidth();
+        int height = mask.getHeight();
+        byte[] buffer = mask.getBuffer();
+
+        int startY = Math.max(0, (int) Math.floor(top - reach));
+        int endY = Math.min(height, (int) Math.ceil(bottom + reach));
+        int startX = Math.max(0, (int) Math.floor(left - reach));
+        int endX = Math.min(width, (int) Math.ceil(right + reach));
+        // 这个范围内所有片的左右两边都在可及范围外，水平积分都是1
+        float solidLeft = left + radius + reach;
+        float solidRight = right - radius - reach;
+
+        for (int y = startY; y < endY; y++) {
+            float centerY = y + 0.5f;
+            float rowWeight = computeSlices(centerY, left, top, right, bottom, radius, sigma, reach);
+            if (rowWeight <= 0) continue;
+
+            int offset = y * width;
+            byte solid = toAlpha(rowWeight);
+            for (int x = startX; x < endX; x++) {
+                float centerX = x + 0.5f;
+                if (centerX > solidLeft && centerX < solidRight) {
+                    buffer[offset + x] = solid;
+                    continue;
+                }
+
+                float coverage = 0;
+                for (int i = 0; i < sliceCount; i++) {
+                    coverage += sliceWeights[i] * (cdf((sliceRights[i] - centerX) * inverseSigma)
+                            - cdf((sliceLefts[i] - centerX) * inverseSigma));
+                }
+                buffer[offset + x] = toAlpha(coverage);
+            }
+        }
+    }
+
+    /**
+     * Split the part of the round rect within reach of the row into slices, each weighted by the
+     * gaussian integral over its height.
+     *
+     * @return the sum of weights, which is the coverage far inside the round rect.
+     */
+    private float computeSlices(float centerY, float left, float top, float right, float bottom,
+                                float radius, float sigma, float reach) {
+        sliceCount = 0;
+        float middleTop = top + radius;
+        float middleBottom = bottom - radius;
+
+        float total = addSlice(centerY, Math.max(middleTop, centerY - reach),
+                Math.min(middleBottom, centerY + reach), left, right, sigma);
+        if (radius > 0) {
+            total += addCornerSlices(centerY, top, middleTop, middleTop, left, right, radius, sigma, reach);
+            total += addCornerSlices(centerY, middleBottom, bottom, middleBottom, left, right, radius, sigma, reach);
+        }
+        return total;
+    }
+
+    private float addCornerSlices(float centerY, float bandTop, float bandBottom, float arcCenterY,
+                                  float left, float right, float radius, float sigma, float reach) {
+        float from = Math.max(bandTop, centerY - reach);
+        float to = Math.min(bandBottom, centerY + reach);
+        if (to <= from) return 0;
+
+        // 按角度均分，弧线陡峭的一端切得更细
+        double fromAngle = Math.asin(Math.max(-1, Math.min(1, (from - arcCenterY) / radius)));
+        double toAngle = Math.asin(Math.max(-1, Math.min(1, (to - arcCenterY) / radius)));
+        double angleStep = (toAngle - fromAngle) / CORNER_SLICES;
+        float total = 0;
+        float sliceTop = from;
+        for (int i = 1; i <= CORNER_SLICES; i++) {
+            float sliceBottom = i == CORNER_SLICES ? to
+                    : arcCenterY + radius * (float) Math.sin(fromAngle + i * angleStep);
+            if (sliceBottom <= sliceTop) continue;
+
+            float inset = radius - getMeanArcWidth(sliceTop - arcCenterY, sliceBottom - arcCenterY, radius);
+            total += addSlice(centerY, sliceTop, sliceBottom, left + inset, right - inset, sigma);
+            sliceTop = sliceBottom;
+        }
+        return total;
+    }
+
+    /**
+     * The mean width of a quarter circle over a range of heights from its center, the arc is too
+     * steep near its end for the width at the middle of a slice.
+     */
+    private static float getMeanArcWidth(float from, float to, float radius) {
+        return (getArcArea(to, radius) - getArcArea(from, radius)) / (to - from);
+    }
+
+    /**
+     * The integral of sqrt(r * r - t * t) from 0 to the height.
+     */
+    private static float getArcArea(float height, float radius) {
+        double t = Math.max(-radius, Math.min(radius, height));
+        double r = radius;
+        return (float) ((t * Math.sqrt(r * r - t * t) + r * r * Math.asin(t / r)) / 2);
+    }
+
+    private float addSlice(float centerY, float sliceTop, float sliceBottom,
+                           float sliceLeft, float sliceRight, float sigma) {
+        if (sliceBottom <= sliceTop || sliceRight <= sliceLeft) return 0;
+
+        float weight = cdf((sliceBottom - centerY) / sigma) - cdf((sliceTop - centerY) / sigma);
+        if (weight <= 0) return 0;
+
+        sliceWeights[sliceCount] = weight;
+        sliceLefts[sliceCount] = sliceLeft;
+        sliceRights[sliceCount] = sliceRight;
+        sliceCount++;
+        return weight;
+    }
+
+    private static byte toAlpha(float coverage) {
+        return (byte) (Math.max(0, Math.min(1, coverage)) * 255 + 0.5f);
+    }
+
+    /*--------------------------------------------------------------------------------------------*/
+
+    /**
+     * The standard normal cumulative distribution, linearly interpolated from the table, the error
+     * is far below the precision of an alpha byte.
+     */
+    static float cdf(float x) {
+        float position = (x + TABLE_RANGE) * TABLE_SCALE;
+        if (position <= 0) return 0;
+        if (position >= TABLE_SIZE) return 1;
+
+        int index = (int) position;
+        float fraction = position - index;
+        return CDF_TABLE[index] + (CDF_TABLE[index + 1] - CDF_TABLE[index]) * fraction;
+    }
+
+    private static float[] buildCdfTable() {
+        float[] table = new float[TABLE_SIZE + 1];
+        for (int i = 1; i < TABLE_SIZE; i++) {
+            float x = i / TABLE_SCALE - TABLE_RANGE;
+            table[i] = SignedDistanceField.erfc(-x / (float) Math.sqrt(2)) / 2;
+        }
+        // 两端取0和1，和查表范围外的值连续
+        table[TABLE_SIZE] = 1;
+        return table;
+    }
+}
@@ -0,0 +1,335 @@
+/*
+ * Copyright (c) 2017 SaltedFish Captain
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.saltedfishcaptain.library;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.ColorFilter;
+import android.graphics.PixelFormat;
+import android.graphics.Rect;
+import android.graphics.drawable.Drawable;
+
+/**
+ * Description:
+ * Draw a shadow whose blur radius, offset and color change every frame, e.g. the elevation of a
+ * card being pressed or dragged, without rendering anything per frame. Nine patch tiles are
+ * rendered once at a few keyframe blur radii, and a frame cross-fades the two tiles around the
+ * current radius, each stretched to the shape outset by its own radius, and translates them by
+ * the offset. A frame only sets bounds and colors of two tiles, so it allocates nothing.
+ * <p>
+ * Attention:
+ * The shape is the round rect of the bounds inset by {@link #setShapeInsets(int, int, int, int)},
+ * the shadow spreads outside it by the blur radius and the offset, leave room for it, e.g. inset
+ * the shape by the padding of the view it is the background of. Blur radii out of the keyframes
+ * are clamped to them. Call {@link #prewarm()} before the animation starts to have the tiles
+ * rendered up front, otherwise tiles not in {@link ShadowBitmapCache} are rendered in the
+ * background after the first draw, and the shadow is not drawn until all of them arrive. Call
+ * {@link #release()} when the drawable is no longer used.
+ * <p>
+ */
+
+public class AnimatedShadowDrawable extends Drawable {
+    private final float cornerRadius; // 阴影实体边缘的圆角半径
+    private final float[] keyframeRadii; // 预先渲染的模糊半径，从小到大
+    private final ShadowRenderer renderer;
+    private NinePatchShadowDrawable[] keyframes; // 每个模糊半径的九宫格图块，预热或第一次绘制时获取，未就绪的为null
+    private ShadowBitmapCache.Key[] keyframeKeys; // 图块的key，图块就绪时持有引用
+    private final ShadowRenderQueue renderQueue = new ShadowRenderQueue(); // 在后台逐个渲染缓存中没有的图块
+
+    private float blurRadius; // 当前帧的状态
+    private float offsetX;
+    private float offsetY;
+    private int color = Color.BLACK;
+    private int alpha = 255;
+    private ColorFilter colorFilter;
+
+    private final Rect shapeInsets = new Rect(); // 形状到bounds四边的距离
+    private int shapeLeft; // 以下只在bounds改变时更新
+    private int shapeTop;
+    private int shapeRight;
+    private int shapeBottom;
+
+    /**
+     * @param keyframeRadii blur radii to render tiles at, more keyframes are closer to a real blur
+     *                      in between, e.g. the resting and the pressed radius and one between.
+     */
+    public AnimatedShadowDrawable(float cornerRadius, float... keyframeRadii) {
+        this(cornerRadius, keyframeRadii, ShadowLayout.getDefaultRenderer(), null);
+    }
+
+    AnimatedShadowDrawable(float cornerRadius, float[] keyframeRadii, ShadowRenderer renderer,
+                           NinePatchShadowDrawable[] keyframes) {
+        if (keyframeRadii == null || keyframeRadii.length == 0) {
+            throw new IllegalArgumentException("At least one keyframe is needed");
+        }
+        for (int i = 0; i < keyframeRadii.length; i++) {
+            if (keyframeRadii[i] < 0 || (i > 0 && keyframeRadii[i] <= keyframeRadii[i - 1])) {
+                throw new IllegalArgumentException("Keyframe radii must not be negative and must ascend");
+            }
+        }
+
+        this.cornerRadius = cornerRadius;
+        this.keyframeRadii = keyframeRadii.clone();
+        this.renderer = renderer;
+        this.keyframes = keyframes;
+        this.blurRadius = keyframeRadii[0];
+    }
+
+    /*--------------------------------------------------------------------------------------------*/
+
+    /**
+     * Set the state of a frame, nothing is rendered.
+     */
+    public void setShadow(float blurRadius, float offsetX, float offsetY, int color) {
+        if (this.blurRadius == blurRadius && this.offsetX == offsetX && this.offsetY == offsetY
+                && this.color == color) {
+            return;
+        }
+
+        this.blurRadius = blurRadius;
+        this.offsetX = offsetX;
+        this.offsetY = offsetY;
+        this.color = color;
+        invalidateSelf();
+    }
+
+    public float getBlurRadius() {
+        return blurRadius;
+    }
+
+    public float getOffsetX() {
+        return offsetX;
+    }
+
+    public float getOffsetY() {
+        return offsetY;
+    }
+
+    public int getColor() {
+        return color;
+    }
+
+    public float getCornerRadius() {
+        return cornerRadius;
+    }
+
+    public void setShapeInsets(int left, int top, int right, int bottom) {
+        shapeInsets.set(left, top, right, bottom);
+        updateShape(getBounds());
+        invalidateSelf();
+    }
+
+    /**
+     * Acquire the tiles, or render them now on the calling thread if not cached, so the animation
+     * never waits for a tile. Call it on the main thread before starting the animator.
+     */
+    public void prewarm() {
+        renderQueue.cancel();
+        obtainKeyframes(true);
+    }
+
+    /**
+     * Give the tiles back to {@link ShadowBitmapCache}, they are acquired again on the next draw
+     * or prewarm, a tile still rendering is dropped.
+     */
+    public void release() {
+        renderQueue.cancel();
+        if (keyframeKeys != null) {
+            for (int i = 0; i < keyframeKeys.length; i++) {
+                if (keyframes[i] != null) {
+                    ShadowBitmapCache.getInstance().release(keyframeKeys[i]);
+                }
+            }
+            keyframeKeys = null;
+        }
+        keyframes = null;
+    }
+
+    /*--------------------------------------------------------------------------------------------*/
+
+    @Override
+    protected void onBoundsChange(Rect bounds) {
+        super.onBoundsChange(bounds);
+        updateShape(bounds);
+    }
+
+    private void updateShape(Rect bounds) {
+        if (bounds == null) return;
+
+        shapeLeft = bounds.left + shapeInsets.left;
+        shapeTop = bounds.top + shapeInsets.top;
+        shapeRight = bounds.right - shapeInsets.right;
+        shapeBottom = bounds.bottom - shapeInsets.bottom;
+    }
+
+    /**
+     * Tiles at the two keyframes around the blur radius are drawn one over another. The lower
+     * one fades out linearly, and the upper one is made a little stronger so that where both
+     * tiles are solid, the result is exactly the alpha of the color, instead of dipping in the
+     * middle of the fade.
+     */
+    @Override
+    public void draw(Canvas canvas) {
+        if (shapeRight <= shapeLeft || shapeBottom <= shapeTop) return;
+        NinePatchShadowDrawable[] tiles = obtainKeyframes(false);
+        if (tiles == null) return;
+
+        int last = keyframeRadii.length - 1;
+        int lower = findLowerKeyframe(keyframeRadii, blurRadius);
+        float fraction = 0;
+        if (last > 0) {
+            float span = keyframeRadii[lower + 1] - keyframeRadii[lower];
+            fraction = Math.max(0, Math.min(1, (blurRadius - keyframeRadii[lower]) / span));
+        }
+
+        float opacity = Color.alpha(color) / 255f * alpha / 255f;
+        float lowerOpacity = (1 - fraction) * opacity;
+        float upperOpacity = getUpperOpacity(lowerOpacity, fraction, opacity);
+
+        int saved = canvas.save();
+        canvas.translate(offsetX, offsetY);
+        drawKeyframe(canvas, tiles, lower, lowerOpacity);
+        if (last > 0) {
+            drawKeyframe(canvas, tiles, lower + 1, upperOpacity);
+        }
+        canvas.restoreToCount(saved);
+    }
+
+    /**
+     * @return the index of the keyframe below the blur radius, which always has one above it
+     * unless there is only one keyframe.
+     */
+    static int findLowerKeyframe(float[] keyframeRadii, float blurRadius) {
+        int lower = 0;
+        while (lower < keyframeRadii.length - 2 && blurRadius >= keyframeRadii[lower + 1]) {
+            lower++;
+        }
+        return lower;
+    }
+
+    /**
+     * The upper tile drawn over the lower one with this opacity makes solid areas exactly the
+     * opacity, since lower + upper * (1 - lower) = opacity.
+     */
+    static float getUpperOpacity(float lowerOpacity, float fraction, float opacity) {
+        return lowerOpacity < 1 ? fraction * opacity / (1 - lowerOpacity) : 0;
+    }
+
+    private void drawKeyframe(Canvas canvas, NinePatchShadowDrawable[] tiles, int index, float opacity) {
+        int tileAlpha = Math.round(opacity * 255);
+        if (tileAlpha <= 0) return;
+
+        int outset = Math.round(keyframeRadii[index]);
+        NinePatchShadowDrawable tile = tiles[index];
+        tile.setBounds(shapeLeft - outset, shapeTop - outset, shapeRight + outset, shapeBottom + outset);
+        tile.setColor(Color.argb(tileAlpha, Color.red(color), Color.green(color), Color.blue(color)));
+        tile.draw(canvas);
+    }
+
+    /**
+     * @param render true to render tiles not cached on the calling thread, false to only acquire
+     *               cached ones in a draw, and render the first missing one on
+     *               {@link ShadowRenderQueue}, which acquires the rest when it arrives.
+     * @return the tiles, or null if some are not ready yet.
+     */
+    private NinePatchShadowDrawable[] obtainKeyframes(boolean render) {
+        if (keyframes == null) {
+            keyframes = new NinePatchShadowDrawable[keyframeRadii.length];
+        }
+        if (keyframeKeys == null) {
+            keyframeKeys = new ShadowBitmapCache.Key[keyframeRadii.length];
+        }
+
+        for (int i = 0; i < keyframeRadii.length; i++) {
+            if (keyframes[i] != null) continue;
+            if (keyframeKeys[i] == null) {
+                keyframeKeys[i] = NinePatchShadowDrawable.createTileKey(renderer, cornerRadius, keyframeRadii[i], 0, 0);
+            }
+
+            Bitmap tile = render
+                    ? NinePatchShadowDrawable.acquireTile(renderer, keyframeKeys[i], cornerRadius,
+                    keyframeRadii[i], ShadowStats.TRIGGER_PREWARM)
+                    : ShadowBitmapCache.getInstance().acquire(keyframeKeys[i]);
+            if (tile == null) {
+                if (!renderQueue.isPending()) {
+                    renderKeyframeAsync(i);
+                }
+                return null;
+            }
+            setKeyframe(i, tile);
+        }
+        return keyframes;
+    }
+
+    private void renderKeyframeAsync(final int index) {
+        final ShadowBitmapCache.Key key = keyframeKeys[index];
+        final float radius = keyframeRadii[index];
+        renderQueue.submit(new ShadowRenderQueue.Renderer() {
+            @Override
+            public Bitmap render() {
+                return NinePatchShadowDrawable.renderTile(ShadowLayout.getWorkerRenderer(renderer),
+                        cornerRadius, radius, ShadowStats.TRIGGER_TILE);
+            }
+        }, new ShadowRenderQueue.Callback() {
+            @Override
+            public void onRendered(Bitmap bitmap) {
+                setKeyframe(index, ShadowBitmapCache.getInstance().put(key, bitmap));
+                invalidateSelf();
+            }
+        });
+    }
+
+    private void setKeyframe(int index, Bitmap tile) {
+        keyframes[index] = new NinePatchShadowDrawable(tile,
+                NinePatchShadowDrawable.getCornerSize(cornerRadius, keyframeRadii[index]));
+        keyframes[index].setColorFilter(colorFilter);
+    }
+
+    /*--------------------------------------------------------------------------------------------*/
+
+    @Override
+    public void setAlpha(int alpha) {
+        if (this.alpha == alpha) return;
+
+        this.alpha = alpha;
+        invalidateSelf();
+    }
+
+    @Override
+    public int getAlpha() {
+        return alpha;
+    }
+
+    @Override
+    public void setColorFilter(ColorFilter colorFilter) {
+        this.colorFilter = colorFilter;
+        if (keyframes != null) {
+            for (NinePatchShadowDrawable tile : keyframes) {
+                if (tile != null) {
+                    tile.setColorFilter(colorFilter);
+                }
+            }
+        }
+        invalidateSelf();
+    }
+
+    @Override
+    public int getOpacity() {
+        return PixelFormat.TRANSLUCENT;
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright (c) 2017 SaltedFish Captain
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.saltedfishcaptain.library;
+
+/**
+ * Description:
+ * A pure Java {@link ShadowRenderer} approximates the gaussian blur of
+ * {@link android.graphics.Paint#setShadowLayer(float, float, float, int)} by three separable box
+ * blur passes. Each pass is a sliding window over one row or column, so the cost of a pixel does
+ * not grow with blur radius, and the only scratch memory is two line buffers reused between
+ * renders.
+ * <p>
+ * Attention:
+ * Rendering is synchronized on the instance because of the shared line buffers, use one instance
+ * per thread if renders should run in parallel.
+ * <p>
+ */
+
+public class BoxBlurShadowRenderer implements ShadowRenderer {
+    private static final int PASS_COUNT = 3;
+
+    private final int[] boxRadii = new int[PASS_COUNT];
+    private int[] lineA = new int[0];
+    private int[] lineB = new int[0];
+
+    @Override
+    public synchronized void render(ShadowMask mask, float left, float top, float right, float bottom,
+                                    float cornerRadius, float blurRadius) {
+        mask.fillRoundRect(left, top, right, bottom, cornerRadius);
+        blur(mask, blurRadius);
+    }
+
+    /**
+     * Blur the mask in place with the same sigma Skia converts from a blur radius.
+     */
+    public synchronized void blur(ShadowMask mask, float blurRadius) {
+        float sigma = convertRadiusToSigma(blurRadius);
+        if (!computeBoxRadii(sigma, boxRadii)) return;
+
+        int width = mask.getWidth();
+        int height = mask.getHeight();
+        ensureLineCapacity(Math.max(width, height));
+
+        byte[] buffer = mask.getBuffer();
+        for (int y = 0; y < height; y++) {
+            blurLine(buffer, y * width, 1, width);
+        }
+        for (int x = 0; x < width; x++) {
+            blurLine(buffer, x, width, height);
+        }
+    }
+
+    /*--------------------------------------------------------------------------------------------*/
+
+    /**
+     * Same as SkBlurMask::ConvertRadiusToSigma, which is used by shadow layer of paint.
+     */
+    static float convertRadiusToSigma(float radius) {
+        return radius > 0 ? 0.57735f * radius + 0.5f : 0;
+    }
+
+    /**
+     * Compute the radii of box blur passes whose result approximates a gaussian blur with the
+     * sigma, the variance of n boxes of width w is n * (w * w - 1) / 12.
+     *
+     * @return false if the blur is too small to change anything.
+     */
+    static boolean computeBoxRadii(float sigma, int[] radii) {
+        int passCount = radii.length;
+        float idealWidth = (float) Math.sqrt(12 * sigma * sigma / passCount + 1);
+
+        int lowerWidth = (int) Math.floor(idealWidth);
+        if (lowerWidth % 2 == 0) lowerWidth--;
+        int upperWidth = lowerWidth + 2;
+
+        float idealLowerCount = (12 * sigma * sigma - passCount * lowerWidth * lowerWidth
+                - 4 * passCount * lowerWidth - 3 * passCount) / (-4 * lowerWidth - 4);
+        int lowerCount = Math.round(idealLowerCount);
+
+        boolean hasBlur = false;
+        for (int i = 0; i < passCount; i++) {
+            radii[i] = ((i < lowerCount ? lowerWidth : upperWidth) - 1) / 2;
+            hasBlur |= radii[i] > 0;
+        }
+        return hasBlur;
+    }
+
+    private void ensureLineCapacity(int length) {
+        if (lineA.length < length) {
+            lineA = new int[length];
+            lineB = new int[length];
+        }
+    }
+
+    /**
+     * Blur one row or column of the buffer by all passes, pixels outside are transparent.
+     */
+    private void blurLine(byte[] buffer, int start, int stride, int length) {
+        int[] src = lineA;
+        int[] dst = lineB;
+
+        for (int i = 0, index = start; i < length; i++, index += stride) {
+            src[i] = buffer[index] & 0xFF;
+        }
+
+        for (int radius : boxRadii) {
+            if (radius <= 0) continue;
+
+            boxBlur(src, dst, length, radius);
+            int[] swap = src;
+            src = dst;
+            dst = swap;
+        }
+
+        for (int i = 0, index = start; i < length; i++, index += stride) {
+            buffer[index] = (byte) src[i];
+        }
+    }
+
+    /**
+     * A sliding window sum, the division is replaced by a fixed point reciprocal.
+     */
+    static void boxBlur(int[] src, int[] dst, int length, int radius) {
+        int window = radius * 2 + 1;
+        int reciprocal = (1 << 16) / window;
+        int half = 1 << 15;
+
+        int sum = 0;
+        for (int i = 0, end = Math.min(radius, length); i < end; i++) {
+            sum += src[i];
+        }
+
+        for (int x = 0; x < length; x++) {
+            int add = x + radius;
+            if (add < length) sum += src[add];
+
+            dst[x] = Math.min(255, (sum * reciprocal + half) >>> 16);
+
+            int remove = x - radius;
+            if (remove >= 0) sum -= src[remove];
+        }
+    }
+}
@@ -0,0 +1,309 @@
+/*
+ * Copyright (c) 2017 SaltedFish Captain
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.saltedfishcaptain.library;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.ColorFilter;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.PixelFormat;
+import android.graphics.Rect;
+import android.graphics.drawable.Drawable;
+
+/**
+ * Description:
+ * A drawable which keeps only the ring of a shadow around a hole covered by the content, the
+ * hole is neither stored nor drawn. The ring is packed into one bitmap as four bands, the top and
+ * bottom bands as they are, the left and right bands transposed into rows below them, so the
+ * bitmap costs {@code max(width, middle height) * (sum of band thicknesses)} instead of the full
+ * size, and every stored pixel is exactly the same as in a full bitmap.
+ * <p>
+ * Attention:
+ * Band thicknesses are in pixels of the bitmap, the drawable is stretched from the full size to
+ * its bounds like {@link QuadrantShadowDrawable}. An {@link Bitmap.Config#ALPHA_8} ring is tinted
+ * with {@link #setColor(int)}.
+ * <p>
+ */
+
+public class HollowShadowDrawable extends Drawable {
+    static final int BAND_TOP = 0;
+    static final int BAND_BOTTOM = 1;
+    static final int BAND_LEFT = 2; // 左右两条转置后排在上下两条的下方
+    static final int BAND_RIGHT = 3;
+    static final int BAND_COUNT = 4;
+
+    private final Bitmap ring;
+    private int fullWidth; // 完整阴影的尺寸，bounds不同时会被拉伸
+    private int fullHeight;
+    private final int[] insets = new int[4]; // 依次为左上右下四条边的厚度，中间剩下的就是空洞
+    private final Paint paint = new Paint(Paint.FILTER_BITMAP_FLAG);
+    private int color = Color.BLACK; // 透明度蒙版的染色
+    private int alpha = 255;
+
+    private final Rect bandRect = new Rect();
+    private final Matrix bandMatrix = new Matrix();
+    private final float[] matrixValues = new float[9];
+
+    /**
+     * @param insets thicknesses of the left, top, right and bottom bands.
+     */
+    public HollowShadowDrawable(Bitmap ring, int fullWidth, int fullHeight, int[] insets) {
+        this.ring = ring;
+        setFullSize(fullWidth, fullHeight, insets);
+    }
+
+    /*--------------------------------------------------------------------------------------------*/
+
+    /**
+     * @return true if a hole is left inside bands of the thicknesses, otherwise a ring saves
+     * nothing.
+     */
+    public static boolean hasHole(int fullWidth, int fullHeight, int[] insets) {
+        return insets[0] + insets[2] < fullWidth && insets[1] + insets[3] < fullHeight;
+    }
+
+    public static int getRingWidth(int fullWidth, int fullHeight, int[] insets) {
+        return Math.max(fullWidth, fullHeight - insets[1] - insets[3]);
+    }
+
+    public static int getRingHeight(int[] insets) {
+        return insets[0] + insets[1] + insets[2] + insets[3];
+    }
+
+    /**
+     * @param rect receives the band in the ring bitmap.
+     */
+    static void getBandRect(int band, int fullWidth, int fullHeight, int[] insets, Rect rect) {
+        int middleHeight = fullHeight - insets[1] - insets[3];
+        switch (band) {
+            case BAND_TOP:
+                rect.set(0, 0, fullWidth, insets[1]);
+                break;
+            case BAND_BOTTOM:
+                rect.set(0, insets[1], fullWidth, insets[1] + insets[3]);
+                break;
+            case BAND_LEFT:
+                rect.set(0, insets[1] + insets[3], middleHeight, insets[1] + insets[3] + insets[0]);
+                break;
+            default:
+                int top = insets[1] + insets[3] + insets[0];
+                rect.set(0, top, middleHeight, top + insets[2]);
+                break;
+        }
+    }
+
+    /**
+     * Fill the values of the matrix which maps a band in the ring to where it is in the full
+     * shadow, or the inverse. Top and bottom bands are translated, left and right bands are
+     * transposed, which swaps x and y, and translated.
+     */
+    static void getBandMatrixValues(int band, int fullWidth, int fullHeight, int[] insets,
+                                    boolean toFull, float[] values) {
+        boolean transposed = band == BAND_LEFT || band == BAND_RIGHT;
+        float dx = 0;
+        float dy = 0;
+        switch (band) {
+            case BAND_BOTTOM:
+                dy = fullHeight - insets[3] - insets[1];
+                break;
+            case BAND_LEFT:
+                dx = -(insets[1] + insets[3]);
+                dy = insets[1];
+                break;
+            case BAND_RIGHT:
+                dx = fullWidth - insets[2] - (insets[1] + insets[3] + insets[0]);
+                dy = insets[1];
+                break;
+        }
+
+        // 转置的逆矩阵还是转置，平移的方向交换后取反
+        if (!toFull) {
+            float inverseDx = transposed ? -dy : -dx;
+            dy = transposed ? -dx : -dy;
+            dx = inverseDx;
+        }
+
+        values[0] = transposed ? 0 : 1;
+        values[1] = transposed ? 1 : 0;
+        values[2] = dx;
+        values[3] = transposed ? 1 : 0;
+        values[4] = transposed ? 0 : 1;
+        values[5] = dy;
+        values[6] = 0;
+        values[7] = 0;
+        values[8] = 1;
+    }
+
+    /**
+     * Copy the bands of a full mask into a ring mask of {@link #getRingWidth(int, int, int[])} and
+     * {@link #getRingHeight(int[])}, pixels the bands do not cover stay transparent.
+     */
+    static void packRing(ShadowMask full, ShadowMask ring, int[] insets) {
+        int fullWidth = full.getWidth();
+        int fullHeight = full.getHeight();
+        int ringWidth = ring.getWidth();
+        int middleHeight = fullHeight - insets[1] - insets[3];
+        byte[] source = full.getBuffer();
+        byte[] target = ring.getBuffer();
+
+        for (int y = 0; y < insets[1]; y++) {
+            System.arraycopy(source, y * fullWidth, target, y * ringWidth, fullWidth);
+        }
+        for (int y = 0; y < insets[3]; y++) {
+            System.arraycopy(source, (fullHeight - insets[3] + y) * fullWidth,
+                    target, (insets[1] + y) * ringWidth, fullWidth);
+        }
+
+        int leftTop = insets[1] + insets[3];
+        int rightTop = leftTop + insets[0];
+        int rightStart = fullWidth - insets[2];
+        for (int x = 0; x < middleHeight; x++) {
+            int sourceOffset = (insets[1] + x) * fullWidth;
+            for (int y = 0; y < insets[0]; y++) {
+                target[(leftTop + y) * ringWidth + x] = source[sourceOffset + y];
+            }
+            for (int y = 0; y < insets[2]; y++) {
+                target[(rightTop + y) * ringWidth + x] = source[sourceOffset + rightStart + y];
+            }
+        }
+    }
+
+    /*--------------------------------------------------------------------------------------------*/
+
+    public Bitmap getBitmap() {
+        return ring;
+    }
+
+    /**
+     * Called after the ring is rendered again in place for a new size.
+     */
+    public void setFullSize(int fullWidth, int fullHeight, int[] insets) {
+        this.fullWidth = fullWidth;
+        this.fullHeight = fullHeight;
+        System.arraycopy(insets, 0, this.insets, 0, this.insets.length);
+        invalidateSelf();
+    }
+
+    public int getFullWidth() {
+        return fullWidth;
+    }
+
+    public int getFullHeight() {
+        return fullHeight;
+    }
+
+    public void setColor(int color) {
+        this.color = color;
+        updatePaintColor();
+    }
+
+    public int getColor() {
+        return color;
+    }
+
+    private void updatePaintColor() {
+        paint.setColor(color);
+        paint.setAlpha(Color.alpha(color) * alpha / 255);
+        invalidateSelf();
+    }
+
+    /*--------------------------------------------------------------------------------------------*/
+
+    @Override
+    public void draw(Canvas canvas) {
+        Rect bounds = getBounds();
+        if (bounds.isEmpty() || fullWidth <= 0 || fullHeight <= 0) return;
+
+        int saved = canvas.save();
+        canvas.translate(bounds.left, bounds.top);
+        canvas.scale(bounds.width() / (float) fullWidth, bounds.height() / (float) fullHeight);
+
+        for (int band = 0; band < BAND_COUNT; band++) {
+            getBandRect(band, fullWidth, fullHeight, insets, bandRect);
+            if (bandRect.isEmpty()) continue;
+
+            getBandMatrixValues(band, fullWidth, fullHeight, insets, true, matrixValues);
+            bandMatrix.setValues(matrixValues);
+
+            int bandSaved = canvas.save();
+            canvas.concat(bandMatrix);
+            canvas.drawBitmap(ring, bandRect, bandRect, paint);
+            canvas.restoreToCount(bandSaved);
+        }
+
+        canvas.restoreToCount(saved);
+    }
+
+    /*--------------------------------------------------------------------------------------------*/
+
+    @Override
+    public void setAlpha(int alpha) {
+        this.alpha = alpha;
+        updatePaintColor();
+    }
+
+    @Override
+    public void setColorFilter(ColorFilter colorFilter) {
+        paint.setColorFilter(colorFilter);
+        invalidateSelf();
+    }
+
+    @Override
+    public int getOpacity() {
+        return PixelFormat.TRANSLUCENT;
+    }
+
+    /*--------------------------------------------------------------------------------------------*/
+
+    /**
+     * Draw a full shadow into a ring bitmap band by band, for renderers which draw through a
+     * canvas. It can be kept and reused, so rendering again allocates nothing.
+     */
+    static final class RingRenderer {
+        private final Rect bandRect = new Rect();
+        private final Matrix bandMatrix = new Matrix();
+        private final float[] matrixValues = new float[9];
+
+        /**
+         * @param painter draws the full shadow in full coordinates, it is clipped to each band.
+         */
+        void draw(Canvas canvas, int fullWidth, int fullHeight, int[] insets, Painter painter) {
+            for (int band = 0; band < BAND_COUNT; band++) {
+                getBandRect(band, fullWidth, fullHeight, insets, bandRect);
+                if (bandRect.isEmpty()) continue;
+
+                getBandMatrixValues(band, fullWidth, fullHeight, insets, false, matrixValues);
+                bandMatrix.setValues(matrixValues);
+
+                int saved = canvas.save();
+                canvas.clipRect(bandRect);
+                canvas.concat(bandMatrix);
+                painter.draw(canvas);
+                canvas.restoreToCount(saved);
+            }
+        }
+    }
+
+    interface Painter {
+        /**
+         * Draw the full shadow, the canvas is clipped and transformed to a band already.
+         */
+        void draw(Canvas canvas);
+    }
+}
@@ -0,0 +1,227 @@
+/*
+ * Copyright (c) 2017 SaltedFish Captain
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.saltedfishcaptain.library;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.ColorFilter;
+import android.graphics.Paint;
+import android.graphics.PixelFormat;
+import android.graphics.Rect;
+import android.graphics.Region;
+import android.graphics.drawable.Drawable;
+
+/**
+ * Description:
+ * A drawable which stretch a small shadow tile to any size like a nine patch. The tile only
+ * contains the four corners and a thin edge strip in the middle, so the size of it is only
+ * related to corner radius and blur radius, not the size of the view. An
+ * {@link Bitmap.Config#ALPHA_8} tile is tinted with {@link #setColor(int)} when drawn.
+ * <p>
+ * Attention:
+ * The middle strip of the tile must be uniform, or it will be visibly stretched. A hollow tile
+ * clips out the hole set by {@link #setHoleInsets(int, int, int, int)}, which is covered by the
+ * content, so it is not overdrawn.
+ * <p>
+ */
+
+public class NinePatchShadowDrawable extends Drawable {
+    private final Bitmap tile;
+    private final int cornerSize; // 四角区域的边长，中间剩余的部分会被拉伸
+    private final Paint paint = new Paint(Paint.FILTER_BITMAP_FLAG);
+    private int color = Color.BLACK; // 透明度蒙版的染色
+    private int alpha = 255;
+    private final Rect holeInsets = new Rect(); // 空洞到bounds四边的距离，空洞内不绘制
+    private boolean hollow;
+
+    private final Rect holeRect = new Rect();
+    private final Rect srcRect = new Rect();
+    private final Rect dstRect = new Rect();
+    private final int[] srcX = new int[4];
+    private final int[] srcY = new int[4];
+    private final int[] dstX = new int[4];
+    private final int[] dstY = new int[4];
+
+    public NinePatchShadowDrawable(Bitmap tile, int cornerSize) {
+        this.tile = tile;
+        this.cornerSize = cornerSize;
+    }
+
+    /**
+     * The size of the corners of every shadow tile, nine patch {@link ShadowLayout}, decorations
+     * and animated keyframes included. The round rect is inset by the blur radius in the tile, and
+     * the blur reaches {@link QuadrantShadowDrawable#getBlurExtent(float)} inward from its edge
+     * beyond the corner radius, so the middle strip is uniform.
+     */
+    static int getCornerSize(float cornerRadius, float blurRadius) {
+        return (int) Math.ceil(blurRadius + cornerRadius) + QuadrantShadowDrawable.getBlurExtent(blurRadius);
+    }
+
+    /**
+     * @param renderer null for the default renderer of {@link ShadowLayout}, a tile is never
+     *                 drawn by {@link Paint}.
+     * @return the key of the tile in {@link ShadowBitmapCache}, the same as the key of a nine
+     * patch {@link ShadowLayout} with the same shadow, so they share the tile.
+     */
+    static ShadowBitmapCache.Key createTileKey(ShadowRenderer renderer, float cornerRadius, float blurRadius,
+                                               float offsetX, float offsetY) {
+        int size = getCornerSize(cornerRadius, blurRadius) * 2 + 1;
+        return ShadowLayout.newMaskKey(getTileRenderer(renderer), size, size)
+                .setShadow(cornerRadius, blurRadius)
+                .setOffset(offsetX, offsetY)
+                .build();
+    }
+
+    /**
+     * Acquire the tile from {@link ShadowBitmapCache}, or render it once if not cached, release
+     * the key when the tile is no longer drawn. It renders on the calling thread, never call it
+     * in {@link #draw(Canvas)}.
+     */
+    static Bitmap acquireTile(ShadowRenderer renderer, ShadowBitmapCache.Key key,
+                              float cornerRadius, float blurRadius, int trigger) {
+        Bitmap tile = ShadowBitmapCache.getInstance().acquire(key);
+        if (tile != null) return tile;
+
+        return ShadowBitmapCache.getInstance().put(key, renderTile(renderer, cornerRadius, blurRadius, trigger));
+    }
+
+    /**
+     * Render a tile without putting it into {@link ShadowBitmapCache}, which can be done on a
+     * background thread, and the caller puts it with the key on the main thread. The render is
+     * recorded in {@link ShadowStats} by the trigger.
+     */
+    static Bitmap renderTile(ShadowRenderer renderer, float cornerRadius, float blurRadius, int trigger) {
+        long start = ShadowStats.getInstance().startRender();
+        int size = getCornerSize(cornerRadius, blurRadius) * 2 + 1;
+        ShadowMask mask = ShadowMask.obtain(size, size);
+        ShadowLayout.renderShadowMask(getTileRenderer(renderer), mask, size, size, ShadowRenderScale.FULL,
+                cornerRadius, blurRadius, null);
+
+        Bitmap tile = ShadowBitmapPool.getInstance().get(size, size, ShadowLayout.SHADOW_BITMAP_CONFIG);
+        ShadowLayout.copyMaskToBitmap(mask, tile);
+        mask.recycle();
+        ShadowStats.getInstance().onShadowRendered(trigger, start, size, size);
+        return tile;
+    }
+
+    private static ShadowRenderer getTileRenderer(ShadowRenderer renderer) {
+        return renderer != null ? renderer : ShadowLayout.getDefaultRenderer();
+    }
+
+    public Bitmap getTile() {
+        return tile;
+    }
+
+    public int getCornerSize() {
+        return cornerSize;
+    }
+
+    /**
+     * Leave a hole inside the bounds undrawn, given by its distances to the four sides.
+     */
+    public void setHoleInsets(int left, int top, int right, int bottom) {
+        holeInsets.set(left, top, right, bottom);
+        hollow = true;
+        invalidateSelf();
+    }
+
+    /**
+     * Only works for a tile in {@link Bitmap.Config#ALPHA_8}, other tiles keep their own colors.
+     */
+    public void setColor(int color) {
+        this.color = color;
+        updatePaintColor();
+    }
+
+    public int getColor() {
+        return color;
+    }
+
+    private void updatePaintColor() {
+        paint.setColor(color);
+        paint.setAlpha(Color.alpha(color) * alpha / 255);
+        invalidateSelf();
+    }
+
+    /*--------------------------------------------------------------------------------------------*/
+
+    @Override
+    public void draw(Canvas canvas) {
+        Rect bounds = getBounds();
+        if (bounds.isEmpty()) return;
+
+        fillSlices(srcX, 0, tile.getWidth(), dstX, bounds.left, bounds.right);
+        fillSlices(srcY, 0, tile.getHeight(), dstY, bounds.top, bounds.bottom);
+
+        int saved = canvas.save();
+        if (hollow) {
+            holeRect.set(bounds.left + holeInsets.left, bounds.top + holeInsets.top,
+                    bounds.right - holeInsets.right, bounds.bottom - holeInsets.bottom);
+            if (!holeRect.isEmpty()) {
+                canvas.clipRect(holeRect, Region.Op.DIFFERENCE);
+            }
+        }
+
+        for (int row = 0; row < 3; row++) {
+            for (int column = 0; column < 3; column++) {
+                dstRect.set(dstX[column], dstY[row], dstX[column + 1], dstY[row + 1]);
+                if (dstRect.isEmpty()) continue;
+
+                srcRect.set(srcX[column], srcY[row], srcX[column + 1], srcY[row + 1]);
+                canvas.drawBitmap(tile, srcRect, dstRect, paint);
+            }
+        }
+        canvas.restoreToCount(saved);
+    }
+
+    /**
+     * If the bounds is smaller than two corners, corners will share the bounds and be scaled down.
+     */
+    private void fillSlices(int[] src, int srcStart, int srcEnd, int[] dst, int dstStart, int dstEnd) {
+        int dstCorner = Math.min(cornerSize, (dstEnd - dstStart) / 2);
+
+        src[0] = srcStart;
+        src[1] = srcStart + cornerSize;
+        src[2] = srcEnd - cornerSize;
+        src[3] = srcEnd;
+
+        dst[0] = dstStart;
+        dst[1] = dstStart + dstCorner;
+        dst[2] = dstEnd - dstCorner;
+        dst[3] = dstEnd;
+    }
+
+    /*--------------------------------------------------------------------------------------------*/
+
+    @Override
+    public void setAlpha(int alpha) {
+        this.alpha = alpha;
+        updatePaintColor();
+    }
+
+    @Override
+    public void setColorFilter(ColorFilter colorFilter) {
+        paint.setColorFilter(colorFilter);
+        invalidateSelf();
+    }
+
+    @Override
+    public int getOpacity() {
+        return PixelFormat.TRANSLUCENT;
+    }
+}
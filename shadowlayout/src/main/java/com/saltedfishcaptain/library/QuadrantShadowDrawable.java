@@ -0,0 +1,161 @@
+/*
+ * Copyright (c) 2017 SaltedFish Captain
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.saltedfishcaptain.library;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.ColorFilter;
+import android.graphics.Paint;
+import android.graphics.PixelFormat;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.graphics.drawable.Drawable;
+
+/**
+ * Description:
+ * A drawable which keeps only the top left quadrant of a shadow symmetric on both axes, and
+ * mirrors it to the other three quadrants when drawn. The quadrant is a quarter of the full
+ * bitmap, so it costs a quarter of memory and rendering.
+ * <p>
+ * Attention:
+ * The quadrant covers the middle row and column of an odd size, mirrored quadrants leave them
+ * out, so nothing is drawn twice. An {@link Bitmap.Config#ALPHA_8} quadrant is tinted with
+ * {@link #setColor(int)}.
+ * <p>
+ */
+
+public class QuadrantShadowDrawable extends Drawable {
+    private final Bitmap quadrant;
+    private int fullWidth; // 完整阴影的尺寸，bounds不同时会被拉伸
+    private int fullHeight;
+    private final Paint paint = new Paint(Paint.FILTER_BITMAP_FLAG);
+    private int color = Color.BLACK; // 透明度蒙版的染色
+    private int alpha = 255;
+
+    private final Rect srcRect = new Rect();
+    private final RectF dstRect = new RectF();
+
+    public QuadrantShadowDrawable(Bitmap quadrant, int fullWidth, int fullHeight) {
+        this.quadrant = quadrant;
+        this.fullWidth = fullWidth;
+        this.fullHeight = fullHeight;
+    }
+
+    /**
+     * @return the size of the quadrant for a full size, the middle pixel of an odd size included.
+     */
+    public static int getQuadrantSize(int fullSize) {
+        return (fullSize + 1) / 2;
+    }
+
+    /**
+     * How far a blur reaches, pixels of a quadrant only depend on the shape within this distance
+     * outside of it. Three sigma covers a gaussian blur, and a box blur approximating it exceeds
+     * that by at most one pixel a pass.
+     */
+    static int getBlurExtent(float blurRadius) {
+        return (int) Math.ceil(3 * BoxBlurShadowRenderer.convertRadiusToSigma(blurRadius)) + 3;
+    }
+
+    public Bitmap getBitmap() {
+        return quadrant;
+    }
+
+    /**
+     * Called after the quadrant is rendered again in place for a new size.
+     */
+    public void setFullSize(int fullWidth, int fullHeight) {
+        this.fullWidth = fullWidth;
+        this.fullHeight = fullHeight;
+        invalidateSelf();
+    }
+
+    public int getFullWidth() {
+        return fullWidth;
+    }
+
+    public int getFullHeight() {
+        return fullHeight;
+    }
+
+    public void setColor(int color) {
+        this.color = color;
+        updatePaintColor();
+    }
+
+    public int getColor() {
+        return color;
+    }
+
+    private void updatePaintColor() {
+        paint.setColor(color);
+        paint.setAlpha(Color.alpha(color) * alpha / 255);
+        invalidateSelf();
+    }
+
+    /*--------------------------------------------------------------------------------------------*/
+
+    @Override
+    public void draw(Canvas canvas) {
+        Rect bounds = getBounds();
+        if (bounds.isEmpty() || fullWidth <= 0 || fullHeight <= 0) return;
+
+        int quadrantWidth = getQuadrantSize(fullWidth);
+        int quadrantHeight = getQuadrantSize(fullHeight);
+
+        int saved = canvas.save();
+        canvas.translate(bounds.left, bounds.top);
+        canvas.scale(bounds.width() / (float) fullWidth, bounds.height() / (float) fullHeight);
+
+        for (int i = 0; i < 4; i++) {
+            boolean mirrorX = (i & 1) != 0;
+            boolean mirrorY = (i & 2) != 0;
+            int width = mirrorX ? fullWidth - quadrantWidth : quadrantWidth;
+            int height = mirrorY ? fullHeight - quadrantHeight : quadrantHeight;
+            if (width <= 0 || height <= 0) continue;
+
+            int quadrantSaved = canvas.save();
+            canvas.scale(mirrorX ? -1 : 1, mirrorY ? -1 : 1, fullWidth / 2f, fullHeight / 2f);
+            srcRect.set(0, 0, width, height);
+            dstRect.set(0, 0, width, height);
+            canvas.drawBitmap(quadrant, srcRect, dstRect, paint);
+            canvas.restoreToCount(quadrantSaved);
+        }
+
+        canvas.restoreToCount(saved);
+    }
+
+    /*--------------------------------------------------------------------------------------------*/
+
+    @Override
+    public void setAlpha(int alpha) {
+        this.alpha = alpha;
+        updatePaintColor();
+    }
+
+    @Override
+    public void setColorFilter(ColorFilter colorFilter) {
+        paint.setColorFilter(colorFilter);
+        invalidateSelf();
+    }
+
+    @Override
+    public int getOpacity() {
+        return PixelFormat.TRANSLUCENT;
+    }
+}
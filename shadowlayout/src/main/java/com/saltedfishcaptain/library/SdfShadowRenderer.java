@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2017 SaltedFish Captain
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.saltedfishcaptain.library;
+
+/**
+ * Description:
+ * A {@link ShadowRenderer} which renders the shadow of an arbitrary shape from its
+ * {@link SignedDistanceField}, e.g. {@code layout.setShadowRenderer(new SdfShadowRenderer(
+ * SignedDistanceField.fromPath(path, 64)))}. The shape is stretched over the shadow rect, and the
+ * corner radius is ignored since the shape has its own. Resizing or changing the blur radius
+ * only evaluates the field again, no blur is run.
+ * <p>
+ * Attention:
+ * The shadow of a shape is not a nine patch, and only a shape symmetric on both axes can be
+ * rendered in quadrant mode. Hollow mode assumes the content covers the round rect of the
+ * corner radius.
+ * <p>
+ */
+
+public class SdfShadowRenderer implements ShadowRenderer {
+    private final SignedDistanceField field;
+
+    public SdfShadowRenderer(SignedDistanceField field) {
+        this.field = field;
+    }
+
+    @Override
+    public void render(ShadowMask mask, float left, float top, float right, float bottom,
+                       float cornerRadius, float blurRadius) {
+        field.render(mask, left, top, right, bottom, blurRadius);
+    }
+
+    public SignedDistanceField getField() {
+        return field;
+    }
+
+    /**
+     * Shadows rendered by this class differ by shape, so the shape is part of the cache key.
+     *
+     * @return the id of the renderer for {@link ShadowBitmapCache.Key}, null if the class of it
+     * decides its shadows.
+     */
+    static String getCacheId(ShadowRenderer renderer) {
+        if (renderer instanceof SdfShadowRenderer) return ((SdfShadowRenderer) renderer).field.getCacheId();
+        return null;
+    }
+}
@@ -0,0 +1,399 @@
+/*
+ * Copyright (c) 2017 SaltedFish Captain
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.saltedfishcaptain.library;
+
+import android.graphics.Bitmap;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Description:
+ * A process-wide LRU cache of rendered shadow bitmaps, so layouts with identical shadow share
+ * one {@link Bitmap}. Every {@link #acquire(Key)} or {@link #put(Key, Bitmap)} holds a reference
+ * of the entry, and entries still referenced are never evicted even if the cache is over budget.
+ * <p>
+ * Attention:
+ * Bitmaps from this cache are shared, never draw into or recycle them, and always call
+ * {@link #release(Key)} once for every acquire or put.
+ * <p>
+ */
+
+public class ShadowBitmapCache {
+    private static final ShadowBitmapCache INSTANCE = new ShadowBitmapCache(Runtime.getRuntime().maxMemory() / 16);
+
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long maxBytes;
+    private long currentBytes;
+
+    private int hitCount;
+    private int missCount;
+    private int putCount;
+    private int evictionCount;
+
+    public static ShadowBitmapCache getInstance() {
+        return INSTANCE;
+    }
+
+    ShadowBitmapCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /*--------------------------------------------------------------------------------------------*/
+
+    /**
+     * @return the cached bitmap with its reference count increased, or null if not cached.
+     */
+    public synchronized Bitmap acquire(Key key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            missCount++;
+            return null;
+        }
+
+        hitCount++;
+        entry.refCount++;
+        return entry.bitmap;
+    }
+
+    /**
+     * Put a newly rendered bitmap into the cache with one reference held by the caller.
+     *
+     * @return the bitmap should be used, it will be the old one if the same key has been put by
+     * others in the meantime, and the given bitmap will be given to {@link ShadowBitmapPool}.
+     */
+    public synchronized Bitmap put(Key key, Bitmap bitmap) {
+        Entry entry = entries.get(key);
+        if (entry != null) {
+            entry.refCount++;
+            if (entry.bitmap != bitmap) {
+                ShadowBitmapPool.getInstance().put(bitmap);
+            }
+            return entry.bitmap;
+        }
+
+        entry = new Entry(bitmap);
+        entry.refCount = 1;
+        entries.put(key, entry);
+        putCount++;
+        currentBytes += entry.bytes;
+
+        trimToSize(maxBytes);
+        return bitmap;
+    }
+
+    /**
+     * @return true if the key is cached, which neither counts as a hit nor holds a reference.
+     */
+    public synchronized boolean contains(Key key) {
+        return entries.containsKey(key);
+    }
+
+    public synchronized void release(Key key) {
+        Entry entry = entries.get(key);
+        if (entry == null || entry.refCount <= 0) return;
+
+        entry.refCount--;
+        if (entry.refCount == 0) {
+            trimToSize(maxBytes);
+        }
+    }
+
+    /**
+     * Evict unused entries from the least recently used one, until bytes of the cache is not
+     * larger than the given size. Evicted bitmaps are given to {@link ShadowBitmapPool}.
+     */
+    public synchronized void trimToSize(long size) {
+        Iterator<Map.Entry<Key, Entry>> iterator = entries.entrySet().iterator();
+        while (currentBytes > size && iterator.hasNext()) {
+            Entry entry = iterator.next().getValue();
+            if (entry.refCount > 0) continue;
+
+            iterator.remove();
+            currentBytes -= entry.bytes;
+            evictionCount++;
+            ShadowBitmapPool.getInstance().put(entry.bitmap);
+        }
+    }
+
+    /**
+     * Evict all entries not in use.
+     */
+    public void clear() {
+        trimToSize(-1);
+    }
+
+    /*--------------------------------------------------------------------------------------------*/
+
+    public synchronized void setMaxBytes(long maxBytes) {
+        this.maxBytes = maxBytes;
+        trimToSize(maxBytes);
+    }
+
+    public synchronized long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public synchronized long getCurrentBytes() {
+        return currentBytes;
+    }
+
+    public synchronized int getEntryCount() {
+        return entries.size();
+    }
+
+    public synchronized int getHitCount() {
+        return hitCount;
+    }
+
+    public synchronized int getMissCount() {
+        return missCount;
+    }
+
+    public synchronized int getPutCount() {
+        return putCount;
+    }
+
+    public synchronized int getEvictionCount() {
+        return evictionCount;
+    }
+
+    /*--------------------------------------------------------------------------------------------*/
+
+    private static class Entry {
+        final Bitmap bitmap;
+        final int bytes;
+        int refCount;
+
+        Entry(Bitmap bitmap) {
+            this.bitmap = bitmap;
+            this.bytes = ShadowBitmapPool.getAllocationBytes(bitmap);
+        }
+    }
+
+    /**
+     * Everything decides how the shadow bitmap looks like, the renderer distinguishes bitmaps
+     * rendered by different layouts with the same parameters, the render scale distinguishes
+     * a downsampled bitmap from a full one of the same size, and a quadrant bitmap only keeps the
+     * top left quarter of the shadow of the size. Layers of a layered shadow replace the blur
+     * radius and offsets, and a ring only keeps the bands of a hollow shadow. A renderer whose
+     * shadows differ by more than its class, e.g. by shape, gives an id of its own.
+     */
+    public static final class Key {
+        private final Class<?> renderer;
+        private final int width;
+        private final int height;
+        private final float cornerRadius;
+        private final float blurRadius;
+        private final int color;
+        private final float offsetX;
+        private final float offsetY;
+        private final Bitmap.Config config;
+        private final int renderScale;
+        private final boolean quadrant;
+        private final ShadowLayer[] layers;
+        private final int[] ring;
+        private final String rendererId;
+
+        private Key(Builder builder) {
+            this.renderer = builder.renderer;
+            this.width = builder.width;
+            this.height = builder.height;
+            this.cornerRadius = builder.cornerRadius;
+            this.blurRadius = builder.blurRadius;
+            this.color = builder.color;
+            this.offsetX = builder.offsetX;
+            this.offsetY = builder.offsetY;
+            this.config = builder.config;
+            this.renderScale = builder.renderScale;
+            this.quadrant = builder.quadrant;
+            this.layers = builder.layers;
+            this.ring = builder.ring;
+            this.rendererId = builder.rendererId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+
+            Key key = (Key) o;
+            return renderer == key.renderer
+                    && width == key.width
+                    && height == key.height
+                    && Float.compare(key.cornerRadius, cornerRadius) == 0
+                    && Float.compare(key.blurRadius, blurRadius) == 0
+                    && color == key.color
+                    && Float.compare(key.offsetX, offsetX) == 0
+                    && Float.compare(key.offsetY, offsetY) == 0
+                    && config == key.config
+                    && renderScale == key.renderScale
+                    && quadrant == key.quadrant
+                    && Arrays.equals(layers, key.layers)
+                    && Arrays.equals(ring, key.ring)
+                    && (rendererId != null ? rendererId.equals(key.rendererId) : key.rendererId == null);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = renderer.hashCode();
+            result = 31 * result + width;
+            result = 31 * result + height;
+            result = 31 * result + Float.floatToIntBits(cornerRadius);
+            result = 31 * result + Float.floatToIntBits(blurRadius);
+            result = 31 * result + color;
+            result = 31 * result + Float.floatToIntBits(offsetX);
+            result = 31 * result + Float.floatToIntBits(offsetY);
+            result = 31 * result + (config != null ? config.hashCode() : 0);
+            result = 31 * result + renderScale;
+            result = 31 * result + (quadrant ? 1 : 0);
+            result = 31 * result + Arrays.hashCode(layers);
+            result = 31 * result + Arrays.hashCode(ring);
+            result = 31 * result + (rendererId != null ? rendererId.hashCode() : 0);
+            return result;
+        }
+
+        /**
+         * Write every field in a form which stays the same across runs, for
+         * {@link ShadowDiskCache} to name files by.
+         */
+        void writeTo(DataOutput output) throws IOException {
+            output.writeUTF(renderer.getName());
+            output.writeInt(width);
+            output.writeInt(height);
+            output.writeFloat(cornerRadius);
+            output.writeFloat(blurRadius);
+            output.writeInt(color);
+            output.writeFloat(offsetX);
+            output.writeFloat(offsetY);
+            output.writeUTF(config != null ? config.name() : "");
+            output.writeInt(renderScale);
+            output.writeBoolean(quadrant);
+            output.writeInt(layers != null ? layers.length : -1);
+            if (layers != null) {
+                for (ShadowLayer layer : layers) {
+                    output.writeFloat(layer.getOffsetX());
+                    output.writeFloat(layer.getOffsetY());
+                    output.writeFloat(layer.getBlurRadius());
+                    output.writeFloat(layer.getSpread());
+                    output.writeInt(layer.getColor());
+                }
+            }
+            output.writeInt(ring != null ? ring.length : -1);
+            if (ring != null) {
+                for (int inset : ring) {
+                    output.writeInt(inset);
+                }
+            }
+            output.writeUTF(rendererId != null ? rendererId : "");
+        }
+
+        /**
+         * Only the renderer and the size are required, the rest defaults to a full unshifted
+         * shadow without layers or ring.
+         */
+        public static final class Builder {
+            private final Class<?> renderer;
+            private final int width;
+            private final int height;
+            private float cornerRadius;
+            private float blurRadius;
+            private int color;
+            private float offsetX;
+            private float offsetY;
+            private Bitmap.Config config;
+            private int renderScale = ShadowRenderScale.FULL;
+            private boolean quadrant;
+            private ShadowLayer[] layers;
+            private int[] ring;
+            private String rendererId;
+
+            public Builder(Class<?> renderer, int width, int height) {
+                this.renderer = renderer;
+                this.width = width;
+                this.height = height;
+            }
+
+            public Builder setShadow(float cornerRadius, float blurRadius) {
+                this.cornerRadius = cornerRadius;
+                this.blurRadius = blurRadius;
+                return this;
+            }
+
+            public Builder setColor(int color) {
+                this.color = color;
+                return this;
+            }
+
+            public Builder setOffset(float offsetX, float offsetY) {
+                this.offsetX = offsetX;
+                this.offsetY = offsetY;
+                return this;
+            }
+
+            public Builder setConfig(Bitmap.Config config) {
+                this.config = config;
+                return this;
+            }
+
+            public Builder setRenderScale(int renderScale) {
+                this.renderScale = renderScale;
+                return this;
+            }
+
+            public Builder setQuadrant(boolean quadrant) {
+                this.quadrant = quadrant;
+                return this;
+            }
+
+            /**
+             * @param layers the layers of a layered shadow, or null for a single shadow, it must
+             *               not be modified after.
+             */
+            public Builder setLayers(ShadowLayer[] layers) {
+                this.layers = layers;
+                return this;
+            }
+
+            /**
+             * @param ring thicknesses of the bands of a hollow shadow, or null for a full bitmap,
+             *             it must not be modified after.
+             */
+            public Builder setRing(int[] ring) {
+                this.ring = ring;
+                return this;
+            }
+
+            /**
+             * @param rendererId distinguishes shadows of renderers of the same class, or null.
+             */
+            public Builder setRendererId(String rendererId) {
+                this.rendererId = rendererId;
+                return this;
+            }
+
+            public Key build() {
+                return new Key(this);
+            }
+        }
+    }
+}
@@ -0,0 +1,216 @@
+/*
+ * Copyright (c) 2017 SaltedFish Captain
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.saltedfishcaptain.library;
+
+import android.graphics.Bitmap;
+import android.graphics.Color;
+import android.os.Build;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+
+/**
+ * Description:
+ * A pool of unused shadow bitmaps grouped by size class, the size class of a bitmap is the
+ * power of two its allocation bytes round up to. Since KITKAT a pooled bitmap can be
+ * {@link Bitmap#reconfigure(int, int, Bitmap.Config)} to any size which fits its allocation, so a
+ * request only looks up its own size class and the next one, which wastes at most 4 times memory.
+ * Before KITKAT only bitmaps with exactly the same size and config are reused.
+ * <p>
+ * Attention:
+ * A bitmap put into the pool belongs to the pool, it must not be drawn or referenced anymore.
+ * <p>
+ */
+
+public class ShadowBitmapPool {
+    private static final int SIZE_CLASS_COUNT = 32;
+
+    private static final ShadowBitmapPool INSTANCE = new ShadowBitmapPool(Runtime.getRuntime().maxMemory() / 32);
+
+    private final ArrayList<LinkedList<Bitmap>> sizeClasses = new ArrayList<>(SIZE_CLASS_COUNT);
+    private final LinkedList<Bitmap> lruBitmaps = new LinkedList<>(); // 最早放入的在前，超出容量时优先淘汰
+
+    private long maxBytes;
+    private long currentBytes;
+
+    private int hitCount;
+    private int missCount;
+
+    public static ShadowBitmapPool getInstance() {
+        return INSTANCE;
+    }
+
+    ShadowBitmapPool(long maxBytes) {
+        this.maxBytes = maxBytes;
+        for (int i = 0; i < SIZE_CLASS_COUNT; i++) {
+            sizeClasses.add(new LinkedList<Bitmap>());
+        }
+    }
+
+    /*--------------------------------------------------------------------------------------------*/
+
+    /**
+     * @return a transparent mutable bitmap in the given size and config, reused from the pool if
+     * possible.
+     */
+    public Bitmap get(int width, int height, Bitmap.Config config) {
+        Bitmap bitmap = poll(width, height, config);
+        if (bitmap != null) {
+            reconfigure(bitmap, width, height, config);
+            return bitmap;
+        }
+
+        bitmap = Bitmap.createBitmap(width, height, config);
+        ShadowStats.getInstance().onBitmapCreated(getAllocationBytes(bitmap));
+        return bitmap;
+    }
+
+    private synchronized Bitmap poll(int width, int height, Bitmap.Config config) {
+        int neededBytes = width * height * getBytesPerPixel(config);
+        int sizeClass = getSizeClass(neededBytes);
+
+        for (int i = sizeClass; i <= sizeClass + 1 && i < SIZE_CLASS_COUNT; i++) {
+            Iterator<Bitmap> iterator = sizeClasses.get(i).iterator();
+            while (iterator.hasNext()) {
+                Bitmap bitmap = iterator.next();
+                if (!canReconfigure(bitmap, width, height, config)) continue;
+
+                iterator.remove();
+                lruBitmaps.remove(bitmap);
+                currentBytes -= getAllocationBytes(bitmap);
+                hitCount++;
+                return bitmap;
+            }
+        }
+
+        missCount++;
+        return null;
+    }
+
+    /**
+     * Give a bitmap no longer used to the pool, it will be dropped if it can not be reused.
+     */
+    public synchronized void put(Bitmap bitmap) {
+        if (bitmap == null || bitmap.isRecycled() || !bitmap.isMutable()) return;
+
+        int bytes = getAllocationBytes(bitmap);
+        if (bytes > maxBytes) {
+            ShadowStats.getInstance().onBitmapDropped(bytes);
+            return;
+        }
+
+        LinkedList<Bitmap> sizeClass = sizeClasses.get(getSizeClass(bytes));
+        if (sizeClass.contains(bitmap)) return;
+
+        sizeClass.add(bitmap);
+        lruBitmaps.add(bitmap);
+        currentBytes += bytes;
+
+        trimToSize(maxBytes);
+    }
+
+    /**
+     * Drop pooled bitmaps from the earliest one, until bytes of the pool is not larger than the
+     * given size. Dropped bitmaps are left to GC instead of being recycled, in case the render
+     * thread still holds them in an old display list.
+     */
+    public synchronized void trimToSize(long size) {
+        while (currentBytes > size && !lruBitmaps.isEmpty()) {
+            Bitmap bitmap = lruBitmaps.removeFirst();
+            int bytes = getAllocationBytes(bitmap);
+            sizeClasses.get(getSizeClass(bytes)).remove(bitmap);
+            currentBytes -= bytes;
+            ShadowStats.getInstance().onBitmapDropped(bytes);
+        }
+    }
+
+    public void clear() {
+        trimToSize(0);
+    }
+
+    /*--------------------------------------------------------------------------------------------*/
+
+    public synchronized void setMaxBytes(long maxBytes) {
+        this.maxBytes = maxBytes;
+        trimToSize(maxBytes);
+    }
+
+    public synchronized long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public synchronized long getCurrentBytes() {
+        return currentBytes;
+    }
+
+    public synchronized int getHitCount() {
+        return hitCount;
+    }
+
+    public synchronized int getMissCount() {
+        return missCount;
+    }
+
+    /*--------------------------------------------------------------------------------------------*/
+
+    /**
+     * Reuse the bitmap in place for a new size, the content will be cleared to transparent.
+     *
+     * @return false if the bitmap can not hold the new size, and nothing will be changed.
+     */
+    public static boolean reconfigure(Bitmap bitmap, int width, int height, Bitmap.Config config) {
+        if (!canReconfigure(bitmap, width, height, config)) return false;
+
+        if (bitmap.getWidth() != width || bitmap.getHeight() != height || bitmap.getConfig() != config) {
+            bitmap.reconfigure(width, height, config);
+        }
+        bitmap.eraseColor(Color.TRANSPARENT);
+        return true;
+    }
+
+    private static boolean canReconfigure(Bitmap bitmap, int width, int height, Bitmap.Config config) {
+        if (bitmap == null || bitmap.isRecycled() || !bitmap.isMutable()) return false;
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+            return getAllocationBytes(bitmap) >= width * height * getBytesPerPixel(config);
+        }
+        return bitmap.getWidth() == width && bitmap.getHeight() == height && bitmap.getConfig() == config;
+    }
+
+    static int getAllocationBytes(Bitmap bitmap) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+            return bitmap.getAllocationByteCount();
+        }
+        return bitmap.getByteCount();
+    }
+
+    /**
+     * Since KITKAT bitmaps in {@link Bitmap.Config#ARGB_4444} are created as ARGB_8888 instead.
+     */
+    static int getBytesPerPixel(Bitmap.Config config) {
+        if (config == Bitmap.Config.ALPHA_8) return 1;
+        if (config == Bitmap.Config.RGB_565) return 2;
+        if (config == Bitmap.Config.ARGB_4444 && Build.VERSION.SDK_INT < Build.VERSION_CODES.KITKAT) return 2;
+        return 4;
+    }
+
+    private static int getSizeClass(int bytes) {
+        if (bytes <= 1) return 0;
+        return Math.min(SIZE_CLASS_COUNT - 1, 32 - Integer.numberOfLeadingZeros(bytes - 1));
+    }
+}
@@ -0,0 +1,409 @@
+/*
+ * Copyright (c) 2017 SaltedFish Captain
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.saltedfishcaptain.library;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Description:
+ * An optional LRU cache of rendered shadow bitmaps on disk, so a cold start loads the shadows
+ * rendered by the last run instead of rendering them again during the first layout. A file is
+ * named by a digest of the {@link ShadowBitmapCache.Key} and {@link #FORMAT_VERSION}, and holds
+ * a small header and the raw pixels, which are read straight into a pooled bitmap through
+ * {@link Bitmap#copyPixelsFromBuffer(java.nio.Buffer)}.
+ * <p>
+ * Attention:
+ * Nothing is cached on disk until {@link #install(Context)} is called, usually in
+ * {@link android.app.Application#onCreate()}. Pixels are copied on put and written on a
+ * background thread to a temporary file which is renamed when complete, so a crash never leaves
+ * a broken entry. Bump {@link #FORMAT_VERSION} whenever rendering changes, old files are then
+ * never read again and are evicted in time.
+ * <p>
+ */
+
+public class ShadowDiskCache {
+    static final int FORMAT_VERSION = 1;
+
+    private static final int MAGIC = 0x53484457; // "SHDW"
+    private static final int HEADER_BYTES = 16; // 魔数、版本、宽、高各4字节
+    private static final String FILE_SUFFIX = ".shadow";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final String DIRECTORY_NAME = "shadow";
+    private static final long DEFAULT_MAX_BYTES = 4 * 1024 * 1024;
+    private static final long KEEP_ALIVE_SECONDS = 30;
+
+    private static ShadowDiskCache instance;
+
+    private final File directory;
+    private final Executor writeExecutor;
+    private final LinkedHashMap<String, Long> files = new LinkedHashMap<>(16, 0.75f, true); // 文件名到字节数，按访问顺序排列
+    private final HashSet<String> pendingWrites = new HashSet<>(); // 已提交还没写完的文件名，避免重复写
+    private boolean indexLoaded; // 目录在写线程第一次写之前扫描，之前的读取只刷新文件的修改时间
+
+    private long maxBytes;
+    private long currentBytes;
+
+    private int hitCount;
+    private int missCount;
+    private int writeCount;
+
+    /**
+     * Install the cache in the cache directory of the app with a default size of 4MB.
+     */
+    public static void install(Context context) {
+        install(new File(context.getCacheDir(), DIRECTORY_NAME), DEFAULT_MAX_BYTES);
+    }
+
+    public static synchronized void install(File directory, long maxBytes) {
+        instance = new ShadowDiskCache(directory, maxBytes, createDefaultExecutor());
+    }
+
+    /**
+     * Install a cache created directly, e.g. writing on the calling thread in tests, or uninstall
+     * the cache by null.
+     */
+    static synchronized void install(ShadowDiskCache cache) {
+        instance = cache;
+    }
+
+    /**
+     * @return the installed cache, or null if there is none.
+     */
+    public static synchronized ShadowDiskCache getInstance() {
+        return instance;
+    }
+
+    ShadowDiskCache(File directory, long maxBytes, Executor writeExecutor) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        this.writeExecutor = writeExecutor;
+    }
+
+    private static Executor createDefaultExecutor() {
+        ThreadPoolExecutor threadPool = new ThreadPoolExecutor(1, 1,
+                KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable runnable) {
+                        Thread thread = new Thread(runnable, "ShadowDiskCache");
+                        thread.setDaemon(true);
+                        thread.setPriority(Thread.MIN_PRIORITY);
+                        return thread;
+                    }
+                });
+        threadPool.allowCoreThreadTimeOut(true);
+        return threadPool;
+    }
+
+    /*--------------------------------------------------------------------------------------------*/
+
+    /**
+     * Load the cached pixels into the bitmap, which must be in the size and config the shadow of
+     * the key is rendered in. It reads the disk, call it where the shadow would be rendered.
+     *
+     * @return true if loaded, otherwise the bitmap is not touched and has to be rendered.
+     */
+    public boolean get(ShadowBitmapCache.Key key, Bitmap bitmap) {
+        ByteBuffer pixels = ByteBuffer.allocate(bitmap.getByteCount());
+        if (!read(getFileName(key), bitmap.getWidth(), bitmap.getHeight(), pixels)) return false;
+
+        pixels.rewind();
+        bitmap.copyPixelsFromBuffer(pixels);
+        return true;
+    }
+
+    /**
+     * Copy pixels of a newly rendered bitmap and write them on the background thread, the bitmap
+     * can be used or recycled right after.
+     */
+    public void put(ShadowBitmapCache.Key key, Bitmap bitmap) {
+        String name = getFileName(key);
+        synchronized (this) {
+            if (files.containsKey(name) || pendingWrites.contains(name)) return;
+        }
+
+        ByteBuffer pixels = ByteBuffer.allocate(bitmap.getByteCount());
+        bitmap.copyPixelsToBuffer(pixels);
+        write(name, bitmap.getWidth(), bitmap.getHeight(), pixels.array());
+    }
+
+    /**
+     * Read a file into the buffer, which must have exactly as many bytes remaining as the file
+     * has pixels. A file which does not match is deleted.
+     */
+    boolean read(String name, int width, int height, ByteBuffer pixels) {
+        File file = new File(directory, name + FILE_SUFFIX);
+        if (!file.exists()) {
+            onRead(name, false);
+            return false;
+        }
+
+        boolean valid = false;
+        FileInputStream input = null;
+        try {
+            input = new FileInputStream(file);
+            FileChannel channel = input.getChannel();
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            if (readFully(channel, header)
+                    && header.getInt(0) == MAGIC && header.getInt(4) == FORMAT_VERSION
+                    && header.getInt(8) == width && header.getInt(12) == height
+                    && channel.size() == HEADER_BYTES + pixels.remaining()) {
+                valid = readFully(channel, pixels);
+            }
+        } catch (IOException ignored) {
+        } finally {
+            closeQuietly(input);
+        }
+
+        if (valid) {
+            file.setLastModified(System.currentTimeMillis());
+        } else {
+            file.delete();
+        }
+        onRead(name, valid);
+        return valid;
+    }
+
+    private synchronized void onRead(String name, boolean hit) {
+        if (hit) {
+            hitCount++;
+            files.get(name); // 刷新访问顺序
+        } else {
+            missCount++;
+            Long bytes = files.remove(name);
+            if (bytes != null) currentBytes -= bytes;
+        }
+    }
+
+    /**
+     * Write the pixels on the background thread, to a temporary file first and rename it when
+     * complete.
+     */
+    void write(final String name, final int width, final int height, final byte[] pixels) {
+        synchronized (this) {
+            pendingWrites.add(name);
+        }
+        writeExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                loadIndex();
+                boolean written = writeFile(name, width, height, pixels);
+                synchronized (ShadowDiskCache.this) {
+                    pendingWrites.remove(name);
+                    if (!written) return;
+
+                    writeCount++;
+                    Long oldBytes = files.put(name, (long) HEADER_BYTES + pixels.length);
+                    currentBytes += HEADER_BYTES + pixels.length - (oldBytes != null ? oldBytes : 0);
+                    trimToSize(maxBytes);
+                }
+            }
+        });
+    }
+
+    private boolean writeFile(String name, int width, int height, byte[] pixels) {
+        if (!directory.isDirectory() && !directory.mkdirs()) return false;
+
+        File temp = new File(directory, name + TEMP_SUFFIX);
+        FileOutputStream output = null;
+        boolean written = false;
+        try {
+            output = new FileOutputStream(temp);
+            FileChannel channel = output.getChannel();
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            header.putInt(MAGIC).putInt(FORMAT_VERSION).putInt(width).putInt(height);
+            header.flip();
+            writeFully(channel, header);
+            writeFully(channel, ByteBuffer.wrap(pixels));
+            output.getFD().sync();
+            written = true;
+        } catch (IOException ignored) {
+        } finally {
+            closeQuietly(output);
+        }
+
+        if (written && temp.renameTo(new File(directory, name + FILE_SUFFIX))) return true;
+        temp.delete();
+        return false;
+    }
+
+    /**
+     * Scan the directory once on the write thread, temporary files left by a crash are deleted
+     * and the others are ordered by their last modified time, which every read refreshes.
+     */
+    private void loadIndex() {
+        synchronized (this) {
+            if (indexLoaded) return;
+        }
+
+        File[] list = directory.listFiles();
+        if (list == null) list = new File[0];
+        Arrays.sort(list, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                long diff = a.lastModified() - b.lastModified();
+                return diff < 0 ? -1 : (diff > 0 ? 1 : 0);
+            }
+        });
+
+        synchronized (this) {
+            for (File file : list) {
+                String fileName = file.getName();
+                if (fileName.endsWith(TEMP_SUFFIX)) {
+                    file.delete();
+                } else if (fileName.endsWith(FILE_SUFFIX)) {
+                    String name = fileName.substring(0, fileName.length() - FILE_SUFFIX.length());
+                    if (!files.containsKey(name)) {
+                        files.put(name, file.length());
+                        currentBytes += file.length();
+                    }
+                }
+            }
+            indexLoaded = true;
+            trimToSize(maxBytes);
+        }
+    }
+
+    /**
+     * Delete files from the least recently used one, until bytes of the cache is not larger than
+     * the given size. Files not scanned yet are only counted after the first write.
+     */
+    public synchronized void trimToSize(long size) {
+        Iterator<Map.Entry<String, Long>> iterator = files.entrySet().iterator();
+        while (currentBytes > size && iterator.hasNext()) {
+            Map.Entry<String, Long> entry = iterator.next();
+            iterator.remove();
+            currentBytes -= entry.getValue();
+            new File(directory, entry.getKey() + FILE_SUFFIX).delete();
+        }
+    }
+
+    /**
+     * Delete all files, on the write thread so that writes in flight are deleted too.
+     */
+    public void clear() {
+        writeExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                loadIndex();
+                trimToSize(-1);
+            }
+        });
+    }
+
+    /*--------------------------------------------------------------------------------------------*/
+
+    public synchronized void setMaxBytes(long maxBytes) {
+        this.maxBytes = maxBytes;
+        trimToSize(maxBytes);
+    }
+
+    public synchronized long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public synchronized long getCurrentBytes() {
+        return currentBytes;
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    public synchronized int getHitCount() {
+        return hitCount;
+    }
+
+    public synchronized int getMissCount() {
+        return missCount;
+    }
+
+    public synchronized int getWriteCount() {
+        return writeCount;
+    }
+
+    /*--------------------------------------------------------------------------------------------*/
+
+    /**
+     * A hex SHA-1 of the format version and every field of the key, which stays the same across
+     * runs, unlike {@link ShadowBitmapCache.Key#hashCode()}.
+     */
+    static String getFileName(ShadowBitmapCache.Key key) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream output = new DataOutputStream(bytes);
+            output.writeInt(FORMAT_VERSION);
+            key.writeTo(output);
+            output.flush();
+
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(bytes.toByteArray());
+            char[] hex = new char[digest.length * 2];
+            for (int i = 0; i < digest.length; i++) {
+                hex[i * 2] = Character.forDigit((digest[i] >> 4) & 0xF, 16);
+                hex[i * 2 + 1] = Character.forDigit(digest[i] & 0xF, 16);
+            }
+            return new String(hex);
+        } catch (IOException | NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static boolean readFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) return false;
+        }
+        return true;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable == null) return;
+        try {
+            closeable.close();
+        } catch (IOException ignored) {
+        }
+    }
+}
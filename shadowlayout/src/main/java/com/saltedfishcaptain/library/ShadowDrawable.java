@@ -0,0 +1,286 @@
+/*
+ * Copyright (c) 2017 SaltedFish Captain
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.saltedfishcaptain.library;
+
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.ColorFilter;
+import android.graphics.LinearGradient;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.PixelFormat;
+import android.graphics.RadialGradient;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.graphics.Region;
+import android.graphics.Shader;
+import android.graphics.drawable.Drawable;
+
+/**
+ * Description:
+ * Draw the shadow of {@link SuperShadowLayout} directly by a corner sector with a radial gradient
+ * and edges with a linear gradient, the inner rect between the corners is filled with the shadow
+ * color. The pieces only meet and never overlap, and none is anti aliased, so no seam shows where
+ * two edges would both be partially covered. Nothing is rasterized into a bitmap, so it can be
+ * hardware accelerated. The path and gradients
+ * are rebuilt only when shadow parameters change, and the transforms of corners only when bounds
+ * change, so the drawable allocates nothing of its own when drawn.
+ * <p>
+ * Attention:
+ * The shadow fills the bounds, the blur area is inside the bounds just like the bitmap shadow.
+ * The inner rect is not filled inside the hole set by
+ * {@link #setHoleInsets(float, float, float, float)}, which is covered by the content.
+ * <p>
+ */
+
+public class ShadowDrawable extends Drawable {
+    // 四个角依次为LT、RB、LB、RT，相对中心的方向和旋转角度
+    private static final float[] CORNER_ROTATIONS = {0f, 180f, 270f, 90f};
+    private static final int[] CORNER_SIGNS_X = {-1, 1, -1, 1};
+    private static final int[] CORNER_SIGNS_Y = {-1, 1, 1, -1};
+
+    private float cornerRadius; // 阴影实体边缘的圆角半径
+    private float blurRadius; // 阴影渐变区的半径
+    private int color; // 阴影颜色
+    private int alpha = 255; // setAlpha设置的整体透明度，颜色改变后要重新乘到实体部分上
+
+    private final Path cornerShadowPath = new Path();
+    private final Paint cornerShadowPaint = new Paint(Paint.DITHER_FLAG); // 扇形外弧处渐变已透明，不需要抗锯齿
+    private final Paint edgeShadowPaint = new Paint(Paint.DITHER_FLAG);
+    private final Paint innerShadowPaint = new Paint(Paint.DITHER_FLAG);
+
+    private final RectF cornerOuterBounds = new RectF();
+
+    // 以下只在bounds改变时更新，绘制时不再计算和分配
+    private final RectF innerShadowRect = new RectF();
+    private final RectF[] innerFillRects = {new RectF(), new RectF(), new RectF()}; // 四个角之间的十字区域，分成不重叠的三块
+    private final Matrix[] cornerMatrices = {new Matrix(), new Matrix(), new Matrix(), new Matrix()};
+    private final float[] edgeLengths = new float[4];
+
+    private final RectF holeInsets = new RectF(); // 空洞到bounds四边的距离，空洞内不填充
+    private boolean hollow;
+    private final RectF holeRect = new RectF();
+
+    public ShadowDrawable(float cornerRadius, float blurRadius, int color) {
+        cornerShadowPaint.setStyle(Paint.Style.FILL);
+        edgeShadowPaint.setStyle(Paint.Style.FILL);
+
+        this.cornerRadius = cornerRadius;
+        this.blurRadius = blurRadius;
+        this.color = color;
+        buildShadowCorners();
+    }
+
+    /**
+     * Rebuild the path and gradients only if any parameter is really changed.
+     *
+     * @return true if the shadow is changed.
+     */
+    public boolean setShadow(float cornerRadius, float blurRadius, int color) {
+        if (this.cornerRadius == cornerRadius && this.blurRadius == blurRadius && this.color == color) {
+            return false;
+        }
+
+        this.cornerRadius = cornerRadius;
+        this.blurRadius = blurRadius;
+        this.color = color;
+        buildShadowCorners();
+        updateGeometry(getBounds());
+        invalidateSelf();
+        return true;
+    }
+
+    public float getCornerRadius() {
+        return cornerRadius;
+    }
+
+    public float getBlurRadius() {
+        return blurRadius;
+    }
+
+    public int getColor() {
+        return color;
+    }
+
+    /**
+     * Leave a hole inside the bounds unfilled, given by its distances to the four sides.
+     */
+    public void setHoleInsets(float left, float top, float right, float bottom) {
+        holeInsets.set(left, top, right, bottom);
+        hollow = true;
+        updateGeometry(getBounds());
+        invalidateSelf();
+    }
+
+    /*--------------------------------------------------------------------------------------------*/
+
+    /**
+     * The path and gradients of a corner are only related to corner radius, blur radius and
+     * color, so they are built once and transformed to the four corners when drawing.
+     */
+    private void buildShadowCorners() {
+        innerShadowPaint.setColor(color);
+        innerShadowPaint.setAlpha(Color.alpha(color) * alpha / 255);
+
+        float outerRadius = cornerRadius + blurRadius;
+        cornerOuterBounds.set(-outerRadius, -outerRadius, outerRadius, outerRadius);
+
+        // the whole sector from the corner center, the gradient is solid inside the corner radius
+        cornerShadowPath.rewind();
+        cornerShadowPath.moveTo(0, 0);
+        cornerShadowPath.lineTo(-cornerRadius - blurRadius, 0);
+        cornerShadowPath.arcTo(cornerOuterBounds, 180f, 90f, false);
+        cornerShadowPath.close();
+
+        if (cornerRadius + blurRadius <= 0) {
+            cornerShadowPaint.setShader(null);
+            edgeShadowPaint.setShader(null);
+            return;
+        }
+
+        int shadowEndColor = transparentColor(color);
+        float startRatio = cornerRadius / (cornerRadius + blurRadius);
+        cornerShadowPaint.setShader(new RadialGradient(0, 0, cornerRadius + blurRadius,
+                new int[]{color, color, shadowEndColor},
+                new float[]{0f, startRatio, 1f}, Shader.TileMode.CLAMP));
+
+        edgeShadowPaint.setShader(new LinearGradient(0, -cornerRadius + blurRadius, 0,
+                -cornerRadius - blurRadius,
+                new int[]{color, color, shadowEndColor},
+                new float[]{0f, .5f, 1f}, Shader.TileMode.CLAMP));
+    }
+
+    private static int transparentColor(int color) {
+        int red = Color.red(color);
+        int green = Color.green(color);
+        int blue = Color.blue(color);
+        return Color.argb(0, red, green, blue);
+    }
+
+    /*--------------------------------------------------------------------------------------------*/
+
+    @Override
+    protected void onBoundsChange(Rect bounds) {
+        super.onBoundsChange(bounds);
+        updateGeometry(bounds);
+    }
+
+    /**
+     * Place the corner primitive at the four corners, each corner is translated from the center
+     * by half of the edges and rotated, the edge drawn with it goes to the next corner clockwise.
+     */
+    private void updateGeometry(Rect bounds) {
+        if (bounds == null) return;
+
+        innerShadowRect.set(
+                bounds.left + blurRadius,
+                bounds.top + blurRadius,
+                bounds.right - blurRadius,
+                bounds.bottom - blurRadius);
+
+        float horizontalEdgesLength = innerShadowRect.width() - 2 * cornerRadius;
+        float verticalEdgesLength = innerShadowRect.height() - 2 * cornerRadius;
+        float horizontalHalfEdgesLength = horizontalEdgesLength / 2;
+        float verticalHalfEdgesLength = verticalEdgesLength / 2;
+        float centerX = (bounds.left + bounds.right) / 2f;
+        float centerY = (bounds.top + bounds.bottom) / 2f;
+
+        for (int i = 0; i < 4; i++) {
+            cornerMatrices[i].setRotate(CORNER_ROTATIONS[i]);
+            cornerMatrices[i].postTranslate(
+                    centerX + CORNER_SIGNS_X[i] * horizontalHalfEdgesLength,
+                    centerY + CORNER_SIGNS_Y[i] * verticalHalfEdgesLength);
+            edgeLengths[i] = i < 2 ? horizontalEdgesLength : verticalEdgesLength;
+        }
+
+        innerFillRects[0].set(innerShadowRect.left, innerShadowRect.top + cornerRadius,
+                innerShadowRect.right, innerShadowRect.bottom - cornerRadius);
+        innerFillRects[1].set(innerShadowRect.left + cornerRadius, innerShadowRect.top,
+                innerShadowRect.right - cornerRadius, innerShadowRect.top + cornerRadius);
+        innerFillRects[2].set(innerShadowRect.left + cornerRadius, innerShadowRect.bottom - cornerRadius,
+                innerShadowRect.right - cornerRadius, innerShadowRect.bottom);
+
+        holeRect.set(
+                bounds.left + holeInsets.left,
+                bounds.top + holeInsets.top,
+                bounds.right - holeInsets.right,
+                bounds.bottom - holeInsets.bottom);
+    }
+
+    @Override
+    public void draw(Canvas canvas) {
+        for (int i = 0; i < 4; i++) {
+            int saved = canvas.save();
+            canvas.concat(cornerMatrices[i]);
+            drawCornerAndRightEdgeShadow(canvas, edgeLengths[i], edgeLengths[i] > 0);
+            canvas.restoreToCount(saved);
+        }
+
+        if (!hollow || holeRect.isEmpty()) {
+            drawInnerShadow(canvas);
+            return;
+        }
+
+        int saved = canvas.save();
+        canvas.clipRect(holeRect, Region.Op.DIFFERENCE);
+        drawInnerShadow(canvas);
+        canvas.restoreToCount(saved);
+    }
+
+    /**
+     * The parts of the inner round rect inside the corner radius are drawn by the corner sectors.
+     */
+    private void drawInnerShadow(Canvas canvas) {
+        for (RectF rect : innerFillRects) {
+            if (!rect.isEmpty()) canvas.drawRect(rect, innerShadowPaint);
+        }
+    }
+
+    private void drawCornerAndRightEdgeShadow(Canvas canvas, float edgesLength, boolean isDrawEdge) {
+        final float edgeShadowTop = -cornerRadius - blurRadius;
+
+        canvas.drawPath(cornerShadowPath, cornerShadowPaint);
+        if (isDrawEdge) {
+            canvas.drawRect(0, edgeShadowTop, edgesLength, -cornerRadius, edgeShadowPaint);
+        }
+    }
+
+    /*--------------------------------------------------------------------------------------------*/
+
+    @Override
+    public void setAlpha(int alpha) {
+        this.alpha = alpha;
+        cornerShadowPaint.setAlpha(alpha);
+        edgeShadowPaint.setAlpha(alpha);
+        innerShadowPaint.setAlpha(Color.alpha(color) * alpha / 255);
+        invalidateSelf();
+    }
+
+    @Override
+    public void setColorFilter(ColorFilter colorFilter) {
+        cornerShadowPaint.setColorFilter(colorFilter);
+        edgeShadowPaint.setColorFilter(colorFilter);
+        innerShadowPaint.setColorFilter(colorFilter);
+        invalidateSelf();
+    }
+
+    @Override
+    public int getOpacity() {
+        return PixelFormat.TRANSLUCENT;
+    }
+}
@@ -0,0 +1,240 @@
+/*
+ * Copyright (c) 2017 SaltedFish Captain
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.saltedfishcaptain.library;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Rect;
+import android.support.v7.widget.RecyclerView;
+import android.view.View;
+
+/**
+ * Description:
+ * Draw the shadow of every visible item of a {@link RecyclerView} in
+ * {@link #onDraw(Canvas, RecyclerView, RecyclerView.State)}, so items need no
+ * {@link ShadowLayout} wrapping them, which saves a level of measure and layout per item. All
+ * items share one nine patch tile rendered by the same {@link ShadowRenderer} as
+ * {@link ShadowLayout}, and the tile is shared through {@link ShadowBitmapCache} with other
+ * decorations and nine patch layouts of the same shadow, so the memory does not grow with the
+ * item count.
+ * <p>
+ * Attention:
+ * The shadow follows the bounds, translation and alpha of an item, and is stretched like a nine
+ * patch, so an item should be a round rect with the corner radius given. Items are offset by
+ * the extent of the shadow by default, see {@link #setShadowInItemOffsets(boolean)}. The
+ * recyclerview library is not a dependency of this library, add it to use this class. A tile
+ * not cached is rendered in the background, and shadows are not drawn until it arrives, call
+ * {@link #prewarm()} before the first frame to have them at once. Call {@link #release()} when
+ * the decoration is removed, so the tile can be evicted.
+ * <p>
+ */
+
+public class ShadowItemDecoration extends RecyclerView.ItemDecoration {
+    private final float shadowCornerRadius; // 阴影实体边缘的圆角半径，与item的圆角一致
+    private final float shadowBlurRadius; // 投影半径
+    private final float shadowOffsetX; // 阴影X方向的偏移
+    private final float shadowOffsetY; // 阴影Y方向的偏移
+    private int shadowColor; // 阴影颜色，绘制时给透明度蒙版染色
+    private boolean shadowInItemOffsets = true; // 是否给item留出阴影的空间
+    private ShadowRenderer shadowRenderer = ShadowLayout.getDefaultRenderer();
+    private final ShadowRenderQueue renderQueue = new ShadowRenderQueue();
+
+    private ShadowBitmapCache.Key tileKey; // 当前持有引用的图块key
+    private NinePatchShadowDrawable tileDrawable; // 所有item共用的九宫格图块
+    private final Rect shadowBounds = new Rect();
+
+    public ShadowItemDecoration(float cornerRadius, float blurRadius, int color) {
+        this(cornerRadius, blurRadius, color, 0, 0);
+    }
+
+    /**
+     * Radii and offsets are in pixels, the same meanings as attributes of {@link ShadowLayout}.
+     */
+    public ShadowItemDecoration(float cornerRadius, float blurRadius, int color, float offsetX, float offsetY) {
+        this.shadowCornerRadius = cornerRadius;
+        this.shadowBlurRadius = blurRadius;
+        this.shadowColor = color;
+        this.shadowOffsetX = offsetX;
+        this.shadowOffsetY = offsetY;
+    }
+
+    /*--------------------------------------------------------------------------------------------*/
+
+    /**
+     * Items are offset like the content of {@link ShadowLayout} is padded, so that shadows of
+     * neighbouring items do not overlap the items.
+     */
+    @Override
+    public void getItemOffsets(Rect outRect, View view, RecyclerView parent, RecyclerView.State state) {
+        if (!shadowInItemOffsets) {
+            outRect.set(0, 0, 0, 0);
+            return;
+        }
+
+        outRect.set((int) (shadowBlurRadius - shadowOffsetX), (int) (shadowBlurRadius - shadowOffsetY),
+                (int) (shadowBlurRadius + shadowOffsetX), (int) (shadowBlurRadius + shadowOffsetY));
+    }
+
+    @Override
+    public void onDraw(Canvas canvas, RecyclerView parent, RecyclerView.State state) {
+        NinePatchShadowDrawable drawable = obtainTileDrawable(parent);
+        if (drawable == null) return;
+
+        int blurRadius = (int) Math.ceil(shadowBlurRadius);
+        for (int i = 0, count = parent.getChildCount(); i < count; i++) {
+            View child = parent.getChildAt(i);
+            if (child.getVisibility() != View.VISIBLE || child.getAlpha() <= 0) continue;
+
+            int left = Math.round(child.getLeft() + child.getTranslationX() + shadowOffsetX);
+            int top = Math.round(child.getTop() + child.getTranslationY() + shadowOffsetY);
+            shadowBounds.set(left - blurRadius, top - blurRadius,
+                    left + child.getWidth() + blurRadius, top + child.getHeight() + blurRadius);
+            drawable.setBounds(shadowBounds);
+            drawable.setAlpha(Math.round(child.getAlpha() * 255));
+            drawable.draw(canvas);
+        }
+    }
+
+    /**
+     * The tile is acquired from {@link ShadowBitmapCache} on the first draw, with the same key as
+     * the tile of a nine patch {@link ShadowLayout}. A tile not cached is rendered on
+     * {@link ShadowRenderQueue} rather than in the draw, and the parent is redrawn when it arrives.
+     *
+     * @return the drawable, or null if the tile is not ready yet.
+     */
+    private NinePatchShadowDrawable obtainTileDrawable(final RecyclerView parent) {
+        if (tileDrawable != null) return tileDrawable;
+        if (shadowBlurRadius <= 0 || renderQueue.isPending()) return null;
+
+        final ShadowBitmapCache.Key key = createTileKey();
+        Bitmap tile = ShadowBitmapCache.getInstance().acquire(key);
+        if (tile != null) return setTile(key, tile);
+
+        final ShadowRenderer renderer = shadowRenderer;
+        renderQueue.submit(new ShadowRenderQueue.Renderer() {
+            @Override
+            public Bitmap render() {
+                return NinePatchShadowDrawable.renderTile(ShadowLayout.getWorkerRenderer(renderer),
+                        shadowCornerRadius, shadowBlurRadius, ShadowStats.TRIGGER_TILE);
+            }
+        }, new ShadowRenderQueue.Callback() {
+            @Override
+            public void onRendered(Bitmap bitmap) {
+                setTile(key, ShadowBitmapCache.getInstance().put(key, bitmap));
+                parent.invalidate();
+            }
+        });
+        return null;
+    }
+
+    /**
+     * Acquire or render the tile now on the calling thread, so the first draw has the shadows.
+     * Call it on the main thread, e.g. when the decoration is added.
+     */
+    public void prewarm() {
+        if (tileDrawable != null || shadowBlurRadius <= 0) return;
+
+        renderQueue.cancel();
+        ShadowBitmapCache.Key key = createTileKey();
+        setTile(key, NinePatchShadowDrawable.acquireTile(shadowRenderer, key, shadowCornerRadius,
+                shadowBlurRadius, ShadowStats.TRIGGER_PREWARM));
+    }
+
+    private ShadowBitmapCache.Key createTileKey() {
+        return NinePatchShadowDrawable.createTileKey(shadowRenderer, shadowCornerRadius, shadowBlurRadius,
+                shadowOffsetX, shadowOffsetY);
+    }
+
+    private NinePatchShadowDrawable setTile(ShadowBitmapCache.Key key, Bitmap tile) {
+        tileKey = key;
+        tileDrawable = new NinePatchShadowDrawable(tile,
+                NinePatchShadowDrawable.getCornerSize(shadowCornerRadius, shadowBlurRadius));
+        tileDrawable.setColor(shadowColor);
+        return tileDrawable;
+    }
+
+    /**
+     * Give the tile back to {@link ShadowBitmapCache}, it is acquired again on the next draw, a
+     * tile still rendering is dropped.
+     */
+    public void release() {
+        renderQueue.cancel();
+        if (tileKey != null) {
+            ShadowBitmapCache.getInstance().release(tileKey);
+            tileKey = null;
+        }
+        tileDrawable = null;
+    }
+
+    /*--------------------------------------------------------------------------------------------*/
+
+    /**
+     * The tile is a mask, a new color only tints it, call
+     * {@link RecyclerView#invalidateItemDecorations()} to redraw.
+     */
+    public void setShadowColor(int color) {
+        shadowColor = color;
+        if (tileDrawable != null) {
+            tileDrawable.setColor(color);
+        }
+    }
+
+    public int getShadowColor() {
+        return shadowColor;
+    }
+
+    /**
+     * Call {@link RecyclerView#invalidateItemDecorations()} after changing it.
+     */
+    public void setShadowInItemOffsets(boolean shadowInItemOffsets) {
+        this.shadowInItemOffsets = shadowInItemOffsets;
+    }
+
+    public boolean isShadowInItemOffsets() {
+        return shadowInItemOffsets;
+    }
+
+    /**
+     * The tile is rendered again by the new renderer after the next draw.
+     */
+    public void setShadowRenderer(ShadowRenderer renderer) {
+        if (renderer == null) throw new IllegalArgumentException("Renderer must not be null");
+
+        shadowRenderer = renderer;
+        release();
+    }
+
+    public ShadowRenderer getShadowRenderer() {
+        return shadowRenderer;
+    }
+
+    public float getShadowCornerRadius() {
+        return shadowCornerRadius;
+    }
+
+    public float getShadowBlurRadius() {
+        return shadowBlurRadius;
+    }
+
+    public float getShadowOffsetX() {
+        return shadowOffsetX;
+    }
+
+    public float getShadowOffsetY() {
+        return shadowOffsetY;
+    }
+}
@@ -0,0 +1,265 @@
+/*
+ * Copyright (c) 2017 SaltedFish Captain
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.saltedfishcaptain.library;
+
+import java.util.ArrayList;
+
+/**
+ * Description:
+ * One layer of a layered shadow, like a key shadow or an ambient shadow of Material design. A
+ * layer is the round rect of the content moved by its offset, grown by its spread and blurred by
+ * its blur radius. All layers are composited into one alpha mask, see
+ * {@link #render(ShadowRenderer, ShadowMask, ShadowLayer[], float, int)}.
+ * <p>
+ * Attention:
+ * The mask only keeps alpha and is tinted by one color when drawn, so only the alpha of a layer
+ * color goes into the mask, and layers share the rgb of the shadow color.
+ * <p>
+ */
+
+public final class ShadowLayer {
+    private final float offsetX; // 以下尺寸单位都是px
+    private final float offsetY;
+    private final float blurRadius;
+    private final float spread; // 阴影实体向外扩展的距离，负数为收缩
+    private final int color; // 只有透明度会被渲染进蒙版
+
+    public ShadowLayer(float offsetX, float offsetY, float blurRadius, float spread, int color) {
+        if (blurRadius < 0) {
+            throw new IllegalArgumentException("Negative blur radius: " + blurRadius);
+        }
+
+        this.offsetX = offsetX;
+        this.offsetY = offsetY;
+        this.blurRadius = blurRadius;
+        this.spread = spread;
+        this.color = color;
+    }
+
+    /*--------------------------------------------------------------------------------------------*/
+
+    /**
+     * Parse layers written like a css box shadow, layers are separated by commas and each is
+     * {@code offsetX offsetY blurRadius [spread] color}, e.g.
+     * {@code "0 1dp 3dp #33000000, 0 1dp 1dp #24000000"}. Lengths are dp unless they end with px,
+     * colors are #RRGGBB or #AARRGGBB.
+     *
+     * @param density to convert dp to px.
+     * @throws IllegalArgumentException if the spec is malformed.
+     */
+    public static ShadowLayer[] parse(String spec, float density) {
+        ArrayList<ShadowLayer> layers = new ArrayList<>();
+        for (String layerSpec : spec.split(",")) {
+            String[] values = layerSpec.trim().split("\\s+");
+            if (values.length != 4 && values.length != 5) {
+                throw new IllegalArgumentException("Invalid shadow layer: " + layerSpec);
+            }
+
+            float offsetX = parseLength(values[0], density);
+            float offsetY = parseLength(values[1], density);
+            float blurRadius = parseLength(values[2], density);
+            float spread = values.length == 5 ? parseLength(values[3], density) : 0;
+            int color = parseColor(values[values.length - 1]);
+            layers.add(new ShadowLayer(offsetX, offsetY, blurRadius, spread, color));
+        }
+        return layers.toArray(new ShadowLayer[layers.size()]);
+    }
+
+    private static float parseLength(String value, float density) {
+        try {
+            if (value.endsWith("px")) return Float.parseFloat(value.substring(0, value.length() - 2));
+            if (value.endsWith("dp")) value = value.substring(0, value.length() - 2);
+            return Float.parseFloat(value) * density;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid length: " + value, e);
+        }
+    }
+
+    /**
+     * The same formats as {@code Color.parseColor} without color names, which is not available on
+     * JVM.
+     */
+    private static int parseColor(String value) {
+        if (!value.startsWith("#") || (value.length() != 7 && value.length() != 9)) {
+            throw new IllegalArgumentException("Invalid color: " + value);
+        }
+
+        try {
+            long color = Long.parseLong(value.substring(1), 16);
+            if (value.length() == 7) {
+                color |= 0xFF000000L;
+            }
+            return (int) color;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid color: " + value, e);
+        }
+    }
+
+    /*--------------------------------------------------------------------------------------------*/
+
+    /**
+     * How far the layers reach outside of the content on the left, this is the padding the content
+     * needs so that no layer is cut off by the bounds.
+     */
+    public static float getExtentLeft(ShadowLayer[] layers) {
+        float extent = 0;
+        for (ShadowLayer layer : layers) {
+            extent = Math.max(extent, layer.blurRadius + layer.spread - layer.offsetX);
+        }
+        return extent;
+    }
+
+    public static float getExtentRight(ShadowLayer[] layers) {
+        float extent = 0;
+        for (ShadowLayer layer : layers) {
+            extent = Math.max(extent, layer.blurRadius + layer.spread + layer.offsetX);
+        }
+        return extent;
+    }
+
+    public static float getExtentTop(ShadowLayer[] layers) {
+        float extent = 0;
+        for (ShadowLayer layer : layers) {
+            extent = Math.max(extent, layer.blurRadius + layer.spread - layer.offsetY);
+        }
+        return extent;
+    }
+
+    public static float getExtentBottom(ShadowLayer[] layers) {
+        float extent = 0;
+        for (ShadowLayer layer : layers) {
+            extent = Math.max(extent, layer.blurRadius + layer.spread + layer.offsetY);
+        }
+        return extent;
+    }
+
+    /**
+     * The sharpest layer limits how much the mask can be downsampled.
+     */
+    public static float getMinBlurRadius(ShadowLayer[] layers) {
+        float blurRadius = Float.MAX_VALUE;
+        for (ShadowLayer layer : layers) {
+            blurRadius = Math.min(blurRadius, layer.blurRadius);
+        }
+        return layers.length > 0 ? blurRadius : 0;
+    }
+
+    /**
+     * Render every layer and composite them from the first to the last with source over into the
+     * mask. The content sits inside the mask at the extents of the layers, and the mask may be
+     * downsampled by the scale.
+     *
+     * @param cornerRadius the corner radius of the content, which grows with the spread.
+     */
+    public static void render(ShadowRenderer renderer, ShadowMask mask, ShadowLayer[] layers,
+                              float cornerRadius, int scale) {
+        // 与getLayerRect相同的矩形，直接计算而不用临时数组，重新渲染时不分配内存
+        float extentLeft = getExtentLeft(layers);
+        float extentTop = getExtentTop(layers);
+        float extentRight = getExtentRight(layers);
+        float extentBottom = getExtentBottom(layers);
+
+        ShadowMask layerMask = ShadowMask.obtain(mask.getWidth(), mask.getHeight());
+        for (int i = 0; i < layers.length; i++) {
+            ShadowLayer layer = layers[i];
+            if (i > 0) {
+                layerMask.reset(mask.getWidth(), mask.getHeight());
+            }
+
+            renderer.render(layerMask,
+                    (extentLeft + layer.offsetX - layer.spread) / scale,
+                    (extentTop + layer.offsetY - layer.spread) / scale,
+                    mask.getWidth() - (extentRight - layer.offsetX - layer.spread) / scale,
+                    mask.getHeight() - (extentBottom - layer.offsetY - layer.spread) / scale,
+                    layer.getCornerRadius(cornerRadius) / scale,
+                    ShadowRenderScale.scaleBlurRadius(layer.blurRadius, scale));
+            mask.composite(layerMask, layer.color >>> 24);
+        }
+        layerMask.recycle();
+    }
+
+    /**
+     * The round rect of a layer in a shadow of the size, which is downsampled by the scale.
+     *
+     * @param rect receives left, top, right and bottom.
+     */
+    static void getLayerRect(ShadowLayer[] layers, ShadowLayer layer, int width, int height,
+                             int scale, float[] rect) {
+        rect[0] = (getExtentLeft(layers) + layer.offsetX - layer.spread) / scale;
+        rect[1] = (getExtentTop(layers) + layer.offsetY - layer.spread) / scale;
+        rect[2] = width - (getExtentRight(layers) - layer.offsetX - layer.spread) / scale;
+        rect[3] = height - (getExtentBottom(layers) - layer.offsetY - layer.spread) / scale;
+    }
+
+    /**
+     * @return the corner radius of the round rect of this layer, which grows with the spread.
+     */
+    public float getCornerRadius(float contentCornerRadius) {
+        return Math.max(0, contentCornerRadius + spread);
+    }
+
+    /*--------------------------------------------------------------------------------------------*/
+
+    public float getOffsetX() {
+        return offsetX;
+    }
+
+    public float getOffsetY() {
+        return offsetY;
+    }
+
+    public float getBlurRadius() {
+        return blurRadius;
+    }
+
+    public float getSpread() {
+        return spread;
+    }
+
+    public int getColor() {
+        return color;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof ShadowLayer)) return false;
+
+        ShadowLayer layer = (ShadowLayer) o;
+        return Float.compare(layer.offsetX, offsetX) == 0
+                && Float.compare(layer.offsetY, offsetY) == 0
+                && Float.compare(layer.blurRadius, blurRadius) == 0
+                && Float.compare(layer.spread, spread) == 0
+                && layer.color == color;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = Float.floatToIntBits(offsetX);
+        result = 31 * result + Float.floatToIntBits(offsetY);
+        result = 31 * result + Float.floatToIntBits(blurRadius);
+        result = 31 * result + Float.floatToIntBits(spread);
+        result = 31 * result + color;
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return offsetX + "px " + offsetY + "px " + blurRadius + "px " + spread + "px #"
+                + Integer.toHexString(color);
+    }
+}
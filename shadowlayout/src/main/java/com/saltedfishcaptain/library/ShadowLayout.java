@@ -17,17 +17,20 @@
 package com.saltedfishcaptain.library;
 
 import android.content.Context;
-import android.content.res.TypedArray;
 import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
 import android.graphics.RectF;
 import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.Drawable;
 import android.os.Build;
+import android.os.Looper;
 import android.util.AttributeSet;
 import android.widget.FrameLayout;
 
+import java.util.Arrays;
+
 /**
  * Description:
  * <p>
@@ -37,6 +40,31 @@ import android.widget.FrameLayout;
  */
 
 public class ShadowLayout extends FrameLayout {
+    static final Bitmap.Config SHADOW_BITMAP_CONFIG = Bitmap.Config.ALPHA_8;
+    static final int MASK_COLOR = Color.argb(254, 0, 0, 0); // Paint#setShadowLayer的阴影颜色不透明时会使用画笔的透明度，所以用254
+
+    private static final ShadowRenderer DEFAULT_RENDERER = new BoxBlurShadowRenderer();
+    private static final ShadowRenderer ANALYTIC_RENDERER = new AnalyticShadowRenderer();
+
+    // 共用的渲染引擎是同步的，后台线程各自使用一个实例，异步渲染之间以及与主线程之间不会互相等待
+    private static final ThreadLocal<ShadowRenderer> WORKER_BOX_BLUR_RENDERER = new ThreadLocal<ShadowRenderer>() {
+        @Override
+        protected ShadowRenderer initialValue() {
+            return new BoxBlurShadowRenderer();
+        }
+    };
+    private static final ThreadLocal<ShadowRenderer> WORKER_ANALYTIC_RENDERER = new ThreadLocal<ShadowRenderer>() {
+        @Override
+        protected ShadowRenderer initialValue() {
+            return new AnalyticShadowRenderer();
+        }
+    };
+
+    // 属性修改的影响，批量修改时合并起来只处理一次
+    private static final int CHANGE_TINT = 1; // 只需要给蒙版重新着色
+    private static final int CHANGE_PADDING = 1 << 1; // 只需要重新计算内容的padding
+    private static final int CHANGE_GEOMETRY = 1 << 2; // 阴影形状变了，需要重新渲染
+
     private int shadowColor; // 阴影颜色
     private float shadowCornerRadius; // 阴影实体边缘的圆角半径
     private float shadowBlurRadius; // 投影半径，对应PS阴影设置中的大小，是阴影渐变区的半径，上下左右都会增加区域，0会导致没有阴影
@@ -46,15 +74,52 @@ public class ShadowLayout extends FrameLayout {
     private float shadowPaddingRight; // 阴影区域右侧的缩进
     private float shadowPaddingTop; // 阴影区域上方的缩进
     private float shadowPaddingBottom; // 阴影区域下方的缩进
+    private ShadowLayer[] shadowLayers; // 多层阴影，不为null时代替模糊半径和偏移，所有层合成到同一个蒙版中
 
     private boolean invalidateShadowOnSizeChanged; // size改变很快但改变得很小，对阴影的精确性要求不高但对性能要求较高时，可以把这个设置为false，并且手动调用invalidateShadow来刷新shadow
+    private boolean ninePatchShadow; // 九宫格模式，只渲染四角和中间1px的边缘，size改变时直接拉伸，不会重新渲染阴影
+    private boolean sharedShadowCache; // 与其他阴影参数完全相同的布局共享同一个阴影Bitmap，适合列表中大量相同的卡片
+    private boolean asyncShadow; // 在后台线程渲染阴影，渲染完成前继续拉伸显示旧的阴影，适合一次加载大量卡片的页面
+    private boolean quadrantShadow; // 只渲染和保存左上角四分之一的阴影，绘制时镜像到其他三个角，内存和渲染量都是四分之一
+    private boolean hollowShadow; // 空心模式，被内容盖住的中间区域既不保存也不绘制，减少内存和过度绘制
+    private int shadowRenderScale = ShadowRenderScale.FULL; // 渲染分辨率的缩小倍数，模糊的阴影缩小渲染后再双线性拉伸回原尺寸，看不出差别
+    private boolean coalesceShadowResize; // 动画中size每帧都在变时，合并重新渲染，中间拉伸旧的阴影，停止变化后再按精确size渲染一次
     private boolean forceInvalidateShadow = false;
+    private int shadowEditDepth; // beginShadowEdit的嵌套层数，大于0时修改先累积起来
+    private int pendingShadowChanges; // 批量修改中累积的CHANGE标志
+
+    private ShadowRenderer shadowRenderer = DEFAULT_RENDERER; // 阴影渲染引擎，为null时使用Paint#setShadowLayer
+    private ShadowBitmapCache.Key shadowCacheKey; // 当前持有引用的共享缓存key
+    private Bitmap shadowBitmap; // 当前背景使用的阴影Bitmap，开启共享缓存时来自缓存，否则由自己独占，size改变时可以原地复用
+    private final ShadowRenderQueue renderQueue = new ShadowRenderQueue();
+    private final Object paintLock = new Object(); // Paint渲染用的对象是共用的，异步渲染时需要串行
+    private final Paint shadowPaint = new Paint(); // 以下在Paint渲染时复用
+    private final RectF shadowRect = new RectF();
+    private final float[] layerRect = new float[4];
+    private final Canvas renderCanvas = new Canvas();
+    private final HollowShadowDrawable.RingRenderer ringRenderer = new HollowShadowDrawable.RingRenderer();
+    private final int[] reusedRing = new int[4]; // size改变时先在这里计算环形的厚度，复用Bitmap重新渲染时不用分配
+    private final ShadowResizeScheduler resizeScheduler = new ShadowResizeScheduler(
+            new ShadowResizeScheduler.Callback() {
+                @Override
+                public void onRenderSize(int width, int height) {
+                    setBackgroundCompat(width, height, ShadowStats.TRIGGER_RESIZE);
+                }
+            });
 
     public ShadowLayout(Context context) {
         super(context);
         initView(context, null);
     }
 
+    /**
+     * Create a layout in code with a spec, e.g. built by {@link ShadowSpec.Builder}.
+     */
+    public ShadowLayout(Context context, ShadowSpec spec) {
+        super(context);
+        applyShadowSpec(spec);
+    }
+
     public ShadowLayout(Context context, AttributeSet attrs) {
         super(context, attrs);
         initView(context, attrs);
@@ -66,51 +131,76 @@ public class ShadowLayout extends FrameLayout {
     }
 
     private void initView(Context context, AttributeSet attrs) {
-        initAttributes(context, attrs);
-        adjustAttributes();
-
-        int paddingLeft = (int) (shadowBlurRadius - shadowOffsetX - shadowPaddingLeft);
-        int paddingRight = (int) (shadowBlurRadius + shadowOffsetX - shadowPaddingRight);
-
-        int paddingTop = (int) (shadowBlurRadius - shadowOffsetY - shadowPaddingTop);
-        int paddingBottom = (int) (shadowBlurRadius + shadowOffsetY - shadowPaddingBottom);
-
-        setPadding(paddingLeft, paddingTop, paddingRight, paddingBottom);
+        applyShadowSpec(ShadowSpec.obtain(context, attrs));
     }
 
-    private void initAttributes(Context context, AttributeSet attrs) {
-        if (attrs == null) return;
+    /**
+     * Layouts inflated with the same style share the spec, so attributes are only resolved and
+     * padding only computed once.
+     */
+    private void applyShadowSpec(ShadowSpec spec) {
+        shadowCornerRadius = spec.getCornerRadius();
+        shadowBlurRadius = spec.getBlurRadius();
+        shadowColor = spec.getColor();
+        shadowOffsetX = spec.getOffsetX();
+        shadowOffsetY = spec.getOffsetY();
+        shadowPaddingLeft = spec.getPaddingLeft();
+        shadowPaddingRight = spec.getPaddingRight();
+        shadowPaddingTop = spec.getPaddingTop();
+        shadowPaddingBottom = spec.getPaddingBottom();
+        shadowLayers = spec.getLayersInternal();
+        invalidateShadowOnSizeChanged = spec.isInvalidateOnSizeChanged();
+        ninePatchShadow = spec.isNinePatch();
+        sharedShadowCache = spec.isSharedCache();
+        asyncShadow = spec.isAsync();
+        quadrantShadow = spec.isQuadrant();
+        hollowShadow = spec.isHollow();
+        shadowRenderScale = spec.getRenderScale();
+        coalesceShadowResize = spec.isResizeCoalesced();
+        resizeScheduler.setIntervalMillis(spec.getResizeIntervalMillis());
+        resizeScheduler.setBucketSize(spec.getResizeBucketSize());
+        shadowRenderer = getRenderer(spec.getRenderer());
 
-        TypedArray attr = context.obtainStyledAttributes(attrs, R.styleable.ShadowLayout, 0, 0);
+        setPadding(spec.getContentPaddingLeft(), spec.getContentPaddingTop(),
+                spec.getContentPaddingRight(), spec.getContentPaddingBottom());
+    }
 
-        shadowCornerRadius = attr.getDimension(R.styleable.ShadowLayout_shadow_corner_radius,
-                getResources().getDimension(R.dimen.shadow_layout_default_corner_radius));
-        shadowBlurRadius = attr.getDimension(R.styleable.ShadowLayout_shadow_blur_radius,
-                getResources().getDimension(R.dimen.shadow_layout_default_shadow_radius));
-        shadowColor = attr.getColor(R.styleable.ShadowLayout_shadow_color,
-                getResources().getColor(R.color.shadow_layout_default_shadow_color));
-        shadowOffsetX = attr.getDimension(R.styleable.ShadowLayout_shadow_offset_x, 0);
-        shadowOffsetY = attr.getDimension(R.styleable.ShadowLayout_shadow_offset_y, 0);
-        shadowPaddingLeft = attr.getDimension(R.styleable.ShadowLayout_shadow_padding_left, 0);
-        shadowPaddingRight = attr.getDimension(R.styleable.ShadowLayout_shadow_padding_right, 0);
-        shadowPaddingTop = attr.getDimension(R.styleable.ShadowLayout_shadow_padding_top, 0);
-        shadowPaddingBottom = attr.getDimension(R.styleable.ShadowLayout_shadow_padding_bottom, 0);
-        invalidateShadowOnSizeChanged = attr.getBoolean(R.styleable.ShadowLayout_invalidate_shadow_on_size_changed, true);
+    /**
+     * @return the shared engine of a renderer of {@link ShadowSpec}, null for
+     * {@link ShadowSpec#RENDERER_PAINT}.
+     */
+    private static ShadowRenderer getRenderer(int renderer) {
+        switch (renderer) {
+            case ShadowSpec.RENDERER_PAINT:
+                return null;
+            case ShadowSpec.RENDERER_ANALYTIC:
+                return ANALYTIC_RENDERER;
+            default:
+                return DEFAULT_RENDERER;
+        }
+    }
 
-        attr.recycle();
+    /**
+     * @return the engine shared by layouts of the default renderer.
+     */
+    static ShadowRenderer getDefaultRenderer() {
+        return DEFAULT_RENDERER;
     }
 
     /**
-     * Cause {@link Paint#setShadowLayer(float, float, float, int)} will set alpha of the shadow as
-     * the paint's alpha if the shadow color is opaque, or the alpha from the shadow color if not.
+     * @return an instance of the current thread for the shared engines, which render the same
+     * shadows, other renderers are used as they are.
      */
-    private void adjustAttributes() {
-        if (Color.alpha(shadowColor) >= 255) {
-            int red = Color.red(shadowColor);
-            int green = Color.green(shadowColor);
-            int blue = Color.blue(shadowColor);
-            shadowColor = Color.argb(254, red, green, blue);
-        }
+    static ShadowRenderer getWorkerRenderer(ShadowRenderer renderer) {
+        if (renderer == DEFAULT_RENDERER) return WORKER_BOX_BLUR_RENDERER.get();
+        if (renderer == ANALYTIC_RENDERER) return WORKER_ANALYTIC_RENDERER.get();
+        return renderer;
+    }
+
+    private void updateShadowPadding() {
+        int[] padding = ShadowSpec.computeContentPadding(shadowBlurRadius, shadowOffsetX, shadowOffsetY,
+                shadowPaddingLeft, shadowPaddingTop, shadowPaddingRight, shadowPaddingBottom, shadowLayers);
+        setPadding(padding[0], padding[1], padding[2], padding[3]);
     }
 
     /*--------------------------------------------------------------------------------------------*/
@@ -118,9 +208,19 @@ public class ShadowLayout extends FrameLayout {
     @Override
     protected void onSizeChanged(int w, int h, int oldw, int oldh) {
         super.onSizeChanged(w, h, oldw, oldh);
-        if (w > 0 && h > 0 && (getBackground() == null || invalidateShadowOnSizeChanged || forceInvalidateShadow)) {
+        if (w <= 0 || h <= 0) return;
+
+        if (getBackground() == null || forceInvalidateShadow) {
+            int trigger = forceInvalidateShadow ? ShadowStats.TRIGGER_INVALIDATE : ShadowStats.TRIGGER_SIZE_CHANGED;
             forceInvalidateShadow = false;
-            setBackgroundCompat(w, h);
+            resizeScheduler.cancel();
+            setBackgroundCompat(w, h, trigger);
+        } else if (invalidateShadowOnSizeChanged && !isNinePatchShadow()) {
+            if (coalesceShadowResize) {
+                resizeScheduler.requestSize(w, h);
+            } else {
+                setBackgroundCompat(w, h, ShadowStats.TRIGGER_SIZE_CHANGED);
+            }
         }
     }
 
@@ -129,13 +229,42 @@ public class ShadowLayout extends FrameLayout {
         super.onLayout(changed, left, top, right, bottom);
         if (forceInvalidateShadow) {
             forceInvalidateShadow = false;
-            setBackgroundCompat(right - left, bottom - top);
+            resizeScheduler.cancel();
+            setBackgroundCompat(right - left, bottom - top, ShadowStats.TRIGGER_INVALIDATE);
+        }
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        if (getBackground() == null && getWidth() > 0 && getHeight() > 0) {
+            setBackgroundCompat(getWidth(), getHeight(), ShadowStats.TRIGGER_ATTACH);
+        }
+    }
+
+    /**
+     * Shadow bitmaps are handed back on detach, shared ones to {@link ShadowBitmapCache} so they
+     * can be evicted while this view is not shown, and owned ones to {@link ShadowBitmapPool}.
+     * They will be acquired or rendered again on attach, and async rendering or resizing in
+     * flight is dropped together with the placeholder waiting for it.
+     */
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        renderQueue.cancel();
+        resizeScheduler.cancel();
+        if (shadowBitmap != null || getBackground() instanceof ShadowDrawable) {
+            releaseShadowBitmap();
+            setBackgroundDrawableCompat(null);
         }
     }
 
     /*-------------------------------------------------*/
 
-    private void setBackgroundCompat(int w, int h) {
+    /**
+     * @param trigger what caused this render, one of the TRIGGER constants of {@link ShadowStats}.
+     */
+    private void setBackgroundCompat(int w, int h, int trigger) {
 
         /**
          * Cause {@link Paint#setShadowLayer(float, float, float, int)} can not be previewed in xml
@@ -145,8 +274,74 @@ public class ShadowLayout extends FrameLayout {
             return;
         }
 
-        Bitmap bitmap = createShadowBitmap(w, h, shadowCornerRadius, shadowBlurRadius, shadowColor);
-        BitmapDrawable drawable = new BitmapDrawable(getResources(), bitmap);
+        int scale = ShadowRenderScale.FULL;
+        int[] ring = null;
+        if (isNinePatchShadow()) {
+            w = h = getNinePatchCornerSize() * 2 + 1;
+        } else {
+            float blurRadius = shadowLayers != null ? ShadowLayer.getMinBlurRadius(shadowLayers) : shadowBlurRadius;
+            scale = ShadowRenderScale.resolve(shadowRenderScale, blurRadius);
+            w = ShadowRenderScale.scaleSize(w, scale);
+            h = ShadowRenderScale.scaleSize(h, scale);
+            ring = getHollowRing(w, h, scale, reusedRing);
+
+            if (!asyncShadow && reuseShadowBitmap(w, h, scale, ring, trigger)) return;
+            if (ring != null) ring = ring.clone(); // 缓存key、异步渲染和新的背景会持有它
+        }
+
+        ShadowBitmapCache.Key key = sharedShadowCache ? createCacheKey(w, h, scale, ring) : null;
+        Bitmap bitmap = key != null ? ShadowBitmapCache.getInstance().acquire(key) : null;
+        ShadowBitmapCache.Key diskKey = bitmap == null ? getDiskCacheKey(key, w, h, scale, ring) : null;
+        if (bitmap != null) {
+            renderQueue.cancel();
+            setShadowBitmap(bitmap, key, w, h, ring);
+        } else if (asyncShadow) {
+            showShadowPlaceholder();
+            renderShadowAsync(w, h, scale, ring, key, diskKey, trigger);
+        } else {
+            bitmap = createShadowBitmap(shadowRenderer, isQuadrantShadow(), w, h, scale, shadowCornerRadius,
+                    shadowBlurRadius, shadowLayers, ring, diskKey, trigger);
+            setShadowBitmap(key != null ? ShadowBitmapCache.getInstance().put(key, bitmap) : bitmap, key, w, h, ring);
+        }
+    }
+
+    /**
+     * Render the shadow of the size into {@link ShadowBitmapCache} without taking it, so a layout
+     * of the same spec looks it up when laid out at the size. Called by {@link ShadowPrewarmer},
+     * maybe on a background thread.
+     *
+     * @return true if the shadow is rendered, false if it is not shared or has been cached.
+     */
+    boolean prewarmShadow(int w, int h) {
+        if (!sharedShadowCache || w <= 0 || h <= 0) return false;
+
+        int scale = ShadowRenderScale.FULL;
+        int[] ring = null;
+        if (isNinePatchShadow()) {
+            w = h = getNinePatchCornerSize() * 2 + 1;
+        } else {
+            float blurRadius = shadowLayers != null ? ShadowLayer.getMinBlurRadius(shadowLayers) : shadowBlurRadius;
+            scale = ShadowRenderScale.resolve(shadowRenderScale, blurRadius);
+            w = ShadowRenderScale.scaleSize(w, scale);
+            h = ShadowRenderScale.scaleSize(h, scale);
+            ring = getHollowRing(w, h, scale, new int[4]);
+        }
+
+        ShadowBitmapCache cache = ShadowBitmapCache.getInstance();
+        ShadowBitmapCache.Key key = createCacheKey(w, h, scale, ring);
+        if (cache.contains(key)) return false;
+
+        ShadowRenderer renderer = Looper.myLooper() == Looper.getMainLooper()
+                ? shadowRenderer : getWorkerRenderer(shadowRenderer);
+        Bitmap bitmap = createShadowBitmap(renderer, isQuadrantShadow(), w, h, scale, shadowCornerRadius,
+                shadowBlurRadius, shadowLayers, ring, getDiskCacheKey(key, w, h, scale, ring),
+                ShadowStats.TRIGGER_PREWARM);
+        cache.put(key, bitmap);
+        cache.release(key);
+        return true;
+    }
+
+    private void setBackgroundDrawableCompat(Drawable drawable) {
         if (Build.VERSION.SDK_INT <= Build.VERSION_CODES.JELLY_BEAN) {
             setBackgroundDrawable(drawable);
         } else {
@@ -154,30 +349,422 @@ public class ShadowLayout extends FrameLayout {
         }
     }
 
-    private Bitmap createShadowBitmap(int shadowWidth, int shadowHeight,
-                                      float cornerRadius, float shadowRadius, int shadowColor) {
+    /**
+     * Draw the new size into the current bitmap in place and keep the current drawable, if the
+     * bitmap is owned by this layout and its allocation is large enough for the new size.
+     */
+    private boolean reuseShadowBitmap(int w, int h, int scale, int[] ring, int trigger) {
+        if (shadowBitmap == null || shadowCacheKey != null || sharedShadowCache) return false;
+
+        Drawable background = getBackground();
+        if (getShadowDrawableBitmap(background) != shadowBitmap) return false;
+
+        boolean quadrant = isQuadrantShadow();
+        if ((background instanceof QuadrantShadowDrawable) != quadrant) return false;
+        if ((background instanceof HollowShadowDrawable) != (ring != null)) return false;
+
+        int bitmapWidth = w;
+        int bitmapHeight = h;
+        if (ring != null) {
+            bitmapWidth = HollowShadowDrawable.getRingWidth(w, h, ring);
+            bitmapHeight = HollowShadowDrawable.getRingHeight(ring);
+        } else if (quadrant) {
+            bitmapWidth = QuadrantShadowDrawable.getQuadrantSize(w);
+            bitmapHeight = QuadrantShadowDrawable.getQuadrantSize(h);
+        }
+        if (!ShadowBitmapPool.reconfigure(shadowBitmap, bitmapWidth, bitmapHeight, SHADOW_BITMAP_CONFIG)) {
+            return false;
+        }
+
+        long start = ShadowStats.getInstance().startRender();
+        drawShadowBitmap(shadowRenderer, shadowBitmap, w, h, scale, shadowCornerRadius, shadowBlurRadius,
+                shadowLayers, ring);
+        ShadowStats.getInstance().onShadowRendered(trigger, start, w, h);
+        if (ring != null) {
+            ((HollowShadowDrawable) background).setFullSize(w, h, ring);
+        } else if (quadrant) {
+            ((QuadrantShadowDrawable) background).setFullSize(w, h);
+        }
+        background.invalidateSelf();
+        return true;
+    }
+
+    /**
+     * Before the first async shadow arrives, the shadow is drawn by the gradients of
+     * {@link ShadowDrawable}, which renders nothing and only approximates the blur. Layers do not
+     * fit a single gradient, so a layered shadow has no placeholder.
+     */
+    private void showShadowPlaceholder() {
+        if (shadowLayers != null) return;
+
+        Drawable background = getBackground();
+        if (background instanceof ShadowDrawable) {
+            ((ShadowDrawable) background).setShadow(shadowCornerRadius, shadowBlurRadius, shadowColor);
+        } else if (background == null) {
+            setBackgroundDrawableCompat(new ShadowDrawable(shadowCornerRadius, shadowBlurRadius, shadowColor));
+        }
+    }
+
+    /**
+     * Render the shadow on {@link ShadowRenderQueue}, the current background stays as a
+     * placeholder and is stretched to the new size until the new shadow arrives. Everything the
+     * render depends on is captured here, setters may change the fields on the main thread in
+     * the meantime.
+     */
+    private void renderShadowAsync(final int w, final int h, final int scale, final int[] ring,
+                                   final ShadowBitmapCache.Key key, final ShadowBitmapCache.Key diskKey,
+                                   final int trigger) {
+        final ShadowRenderer renderer = shadowRenderer;
+        final boolean quadrant = isQuadrantShadow();
+        final float cornerRadius = shadowCornerRadius;
+        final float blurRadius = shadowBlurRadius;
+        final ShadowLayer[] layers = shadowLayers;
+        renderQueue.submit(new ShadowRenderQueue.Renderer() {
+            @Override
+            public Bitmap render() {
+                return createShadowBitmap(getWorkerRenderer(renderer), quadrant, w, h, scale,
+                        cornerRadius, blurRadius, layers, ring, diskKey, trigger);
+            }
+        }, new ShadowRenderQueue.Callback() {
+            @Override
+            public void onRendered(Bitmap bitmap) {
+                setShadowBitmap(key != null ? ShadowBitmapCache.getInstance().put(key, bitmap) : bitmap, key, w, h, ring);
+            }
+        });
+    }
+
+    /**
+     * Take the bitmap as background. The old bitmap is released after the new one is held, so
+     * re-rendering with the same key never evicts the cache entry in between.
+     *
+     * @param w    the full width the bitmap is rendered for, larger than a quadrant bitmap.
+     * @param ring thicknesses of the bands if the bitmap is the ring of a hollow shadow.
+     */
+    private void setShadowBitmap(Bitmap bitmap, ShadowBitmapCache.Key key, int w, int h, int[] ring) {
+        releaseShadowBitmap();
+        shadowBitmap = bitmap;
+        shadowCacheKey = key;
+
+        Drawable drawable;
+        if (isNinePatchShadow()) {
+            NinePatchShadowDrawable ninePatch = new NinePatchShadowDrawable(bitmap, getNinePatchCornerSize());
+            if (hollowShadow) {
+                ninePatch.setHoleInsets(getHoleInset(getPaddingLeft()), getHoleInset(getPaddingTop()),
+                        getHoleInset(getPaddingRight()), getHoleInset(getPaddingBottom()));
+            }
+            drawable = ninePatch;
+        } else if (ring != null) {
+            drawable = new HollowShadowDrawable(bitmap, w, h, ring);
+        } else if (isQuadrantShadow()) {
+            drawable = new QuadrantShadowDrawable(bitmap, w, h);
+        } else {
+            drawable = new BitmapDrawable(getResources(), bitmap);
+        }
+        tintShadowDrawable(drawable);
+        setBackgroundDrawableCompat(drawable);
+    }
+
+    /**
+     * Shadow bitmaps are {@link Bitmap.Config#ALPHA_8} masks, which are drawn with the color of
+     * the paint, so a new color only needs the drawable to be tinted again.
+     */
+    private void tintShadowDrawable(Drawable drawable) {
+        if (drawable instanceof NinePatchShadowDrawable) {
+            ((NinePatchShadowDrawable) drawable).setColor(shadowColor);
+        } else if (drawable instanceof QuadrantShadowDrawable) {
+            ((QuadrantShadowDrawable) drawable).setColor(shadowColor);
+        } else if (drawable instanceof HollowShadowDrawable) {
+            ((HollowShadowDrawable) drawable).setColor(shadowColor);
+        } else if (drawable instanceof BitmapDrawable) {
+            ((BitmapDrawable) drawable).getPaint().setColor(shadowColor);
+            drawable.invalidateSelf();
+        } else if (drawable instanceof ShadowDrawable) {
+            ((ShadowDrawable) drawable).setShadow(shadowCornerRadius, shadowBlurRadius, shadowColor);
+        }
+    }
+
+    private ShadowBitmapCache.Key createCacheKey(int w, int h, int scale, int[] ring) {
+        return newMaskKey(shadowRenderer, w, h)
+                .setShadow(shadowCornerRadius, shadowBlurRadius)
+                .setOffset(shadowOffsetX, shadowOffsetY)
+                .setRenderScale(scale)
+                .setQuadrant(isQuadrantShadow())
+                .setLayers(shadowLayers)
+                .setRing(ring)
+                .build();
+    }
+
+    /**
+     * The key of a mask rendered by the renderer, shared by layouts and nine patch tiles so that
+     * the same shadow meets in {@link ShadowBitmapCache}. The shadow of the default renderer is
+     * keyed by this class.
+     */
+    static ShadowBitmapCache.Key.Builder newMaskKey(ShadowRenderer renderer, int w, int h) {
+        Class<?> rendererClass = renderer != null ? renderer.getClass() : ShadowLayout.class;
+        return newMaskKey(rendererClass, MASK_COLOR, w, h)
+                .setRendererId(SdfShadowRenderer.getCacheId(renderer));
+    }
+
+    /**
+     * @param maskColor the color the mask is rendered with, masks of different layouts render
+     *                  with different colors.
+     */
+    static ShadowBitmapCache.Key.Builder newMaskKey(Class<?> renderer, int maskColor, int w, int h) {
+        return new ShadowBitmapCache.Key.Builder(renderer, w, h)
+                .setColor(maskColor)
+                .setConfig(SHADOW_BITMAP_CONFIG);
+    }
+
+    /**
+     * Only the first shadow of a layout is looked up on disk, which is what a cold start renders,
+     * sizes in the middle of a resize are not worth the disk.
+     *
+     * @return the key to load or store the shadow in {@link ShadowDiskCache}, or null.
+     */
+    private ShadowBitmapCache.Key getDiskCacheKey(ShadowBitmapCache.Key key, int w, int h, int scale, int[] ring) {
+        if (shadowBitmap != null || ShadowDiskCache.getInstance() == null) return null;
+        return key != null ? key : createCacheKey(w, h, scale, ring);
+    }
+
+    private static Bitmap getShadowDrawableBitmap(Drawable drawable) {
+        if (drawable instanceof BitmapDrawable) return ((BitmapDrawable) drawable).getBitmap();
+        if (drawable instanceof QuadrantShadowDrawable) return ((QuadrantShadowDrawable) drawable).getBitmap();
+        if (drawable instanceof HollowShadowDrawable) return ((HollowShadowDrawable) drawable).getBitmap();
+        return null;
+    }
+
+    /**
+     * The hole is the content inset by the corner radius, which the rounded corners of the
+     * content never leave, so the shadow in it is always covered.
+     *
+     * @param ring receives the thicknesses.
+     * @return thicknesses of the left, top, right and bottom bands in pixels of the bitmap, or null
+     * if the shadow is not hollow or too small to have a hole.
+     */
+    private int[] getHollowRing(int w, int h, int scale, int[] ring) {
+        if (!hollowShadow) return null;
+
+        ring[0] = divideCeil(getHoleInset(getPaddingLeft()), scale);
+        ring[1] = divideCeil(getHoleInset(getPaddingTop()), scale);
+        ring[2] = divideCeil(getHoleInset(getPaddingRight()), scale);
+        ring[3] = divideCeil(getHoleInset(getPaddingBottom()), scale);
+        return HollowShadowDrawable.hasHole(w, h, ring) ? ring : null;
+    }
+
+    private int getHoleInset(int padding) {
+        return Math.max(0, (int) Math.ceil(padding + shadowCornerRadius));
+    }
+
+    private static int divideCeil(int value, int divisor) {
+        return (value + divisor - 1) / divisor;
+    }
+
+    /**
+     * A nine patch tile is small already, so it is never split into quadrants. Layers may have
+     * different offsets, so a layered shadow is neither symmetric nor in a single tile.
+     */
+    private boolean isQuadrantShadow() {
+        return quadrantShadow && !ninePatchShadow && shadowLayers == null && !hollowShadow;
+    }
+
+    /**
+     * A nine patch only stretches a round rect, shapes of {@link SdfShadowRenderer} are rendered
+     * in full.
+     */
+    private boolean isNinePatchShadow() {
+        return ninePatchShadow && shadowLayers == null && !(shadowRenderer instanceof SdfShadowRenderer);
+    }
+
+    private void releaseShadowBitmap() {
+        if (shadowCacheKey != null) {
+            ShadowBitmapCache.getInstance().release(shadowCacheKey);
+            shadowCacheKey = null;
+        } else if (shadowBitmap != null) {
+            ShadowBitmapPool.getInstance().put(shadowBitmap);
+        }
+        shadowBitmap = null;
+    }
+
+    /**
+     * Shared with tiles of decorations and animated drawables, so the same shadow shares a tile.
+     */
+    private int getNinePatchCornerSize() {
+        return NinePatchShadowDrawable.getCornerSize(shadowCornerRadius, shadowBlurRadius);
+    }
+
+    /**
+     * @param renderer the engine renders the mask, or null to render by Paint.
+     * @param quadrant true to render only the top left quadrant.
+     * @param ring     thicknesses of the bands of a hollow shadow, or null for a full bitmap.
+     * @param diskKey  the key to load the bitmap from {@link ShadowDiskCache} instead of
+     *                 rendering it, or null.
+     */
+    private Bitmap createShadowBitmap(ShadowRenderer renderer, boolean quadrant,
+                                      int shadowWidth, int shadowHeight, int scale,
+                                      float cornerRadius, float shadowRadius, ShadowLayer[] layers,
+                                      int[] ring, ShadowBitmapCache.Key diskKey, int trigger) {
+        long start = ShadowStats.getInstance().startRender();
+
+        int bitmapWidth = shadowWidth;
+        int bitmapHeight = shadowHeight;
+        if (ring != null) {
+            bitmapWidth = HollowShadowDrawable.getRingWidth(shadowWidth, shadowHeight, ring);
+            bitmapHeight = HollowShadowDrawable.getRingHeight(ring);
+        } else if (quadrant) {
+            bitmapWidth = QuadrantShadowDrawable.getQuadrantSize(shadowWidth);
+            bitmapHeight = QuadrantShadowDrawable.getQuadrantSize(shadowHeight);
+        }
+
+        Bitmap output = ShadowBitmapPool.getInstance().get(bitmapWidth, bitmapHeight, SHADOW_BITMAP_CONFIG);
+        ShadowDiskCache diskCache = diskKey != null ? ShadowDiskCache.getInstance() : null;
+        if (diskCache != null && diskCache.get(diskKey, output)) return output;
+
+        drawShadowBitmap(renderer, output, shadowWidth, shadowHeight, scale, cornerRadius, shadowRadius, layers, ring);
+        ShadowStats.getInstance().onShadowRendered(trigger, start, shadowWidth, shadowHeight);
+        if (diskCache != null) diskCache.put(diskKey, output);
+        return output;
+    }
+
+    /**
+     * Radii are given at full resolution and scaled down here, the geometry is divided by the
+     * scale while the blur radius keeps sigma in proportion, see
+     * {@link ShadowRenderScale#scaleBlurRadius(float, int)}. Only the alpha is rendered, the color
+     * is applied by the drawable.
+     * <p>
+     * The output may be smaller than the shadow, e.g. a quadrant, then only its top left part is
+     * rendered. The mask is rendered with a margin as far as the blur reaches, so the part is
+     * identical to the same part of a full render. A ring is cut from a full render band by band.
+     *
+     * @param layers if not null, the layers are rendered instead of the single shadow.
+     * @param ring   thicknesses of the bands if the output is a ring of a hollow shadow.
+     */
+    private void drawShadowBitmap(ShadowRenderer renderer, Bitmap output,
+                                  final int shadowWidth, final int shadowHeight,
+                                  final int scale, final float cornerRadius, final float shadowRadius,
+                                  final ShadowLayer[] layers, int[] ring) {
+        if (renderer != null) {
+            ShadowMask mask;
+            if (ring != null) {
+                mask = ShadowMask.obtain(shadowWidth, shadowHeight);
+            } else {
+                int extent = QuadrantShadowDrawable.getBlurExtent(ShadowRenderScale.scaleBlurRadius(shadowRadius, scale));
+                mask = ShadowMask.obtain(
+                        Math.min(shadowWidth, output.getWidth() + extent),
+                        Math.min(shadowHeight, output.getHeight() + extent));
+            }
+            renderShadowMask(renderer, mask, shadowWidth, shadowHeight, scale, cornerRadius, shadowRadius, layers);
 
-        Bitmap output = Bitmap.createBitmap(shadowWidth, shadowHeight, Bitmap.Config.ARGB_4444);
-        Canvas canvas = new Canvas(output);
+            if (ring != null) {
+                ShadowMask ringMask = ShadowMask.obtain(output.getWidth(), output.getHeight());
+                HollowShadowDrawable.packRing(mask, ringMask, ring);
+                mask.recycle();
+                mask = ringMask;
+            } else {
+                mask.crop(output.getWidth(), output.getHeight());
+            }
+            copyMaskToBitmap(mask, output);
+            mask.recycle();
+            return;
+        }
 
-        RectF shadowRect = new RectF(
-                shadowRadius,
-                shadowRadius,
-                shadowWidth - shadowRadius,
-                shadowHeight - shadowRadius);
+        synchronized (paintLock) {
+            renderCanvas.setBitmap(output);
+            if (ring == null) {
+                drawShadowWithPaint(renderCanvas, shadowWidth, shadowHeight, scale, cornerRadius, shadowRadius, layers);
+            } else {
+                ringRenderer.draw(renderCanvas, shadowWidth, shadowHeight, ring, new HollowShadowDrawable.Painter() {
+                    @Override
+                    public void draw(Canvas canvas) {
+                        drawShadowWithPaint(canvas, shadowWidth, shadowHeight, scale, cornerRadius, shadowRadius, layers);
+                    }
+                });
+            }
+            renderCanvas.setBitmap(null);
+        }
+    }
 
-        Paint shadowPaint = new Paint();
+    /**
+     * Render the full geometry of the shadow into the mask, the mask may only cover its top left
+     * part.
+     */
+    static void renderShadowMask(ShadowRenderer renderer, ShadowMask mask,
+                                 int shadowWidth, int shadowHeight, int scale,
+                                 float cornerRadius, float shadowRadius, ShadowLayer[] layers) {
+        if (layers != null) {
+            ShadowLayer.render(renderer, mask, layers, cornerRadius, scale);
+            return;
+        }
+
+        float blurRadius = ShadowRenderScale.scaleBlurRadius(shadowRadius, scale);
+        cornerRadius /= scale;
+        shadowRadius /= scale;
+        renderer.render(mask, shadowRadius, shadowRadius,
+                shadowWidth - shadowRadius, shadowHeight - shadowRadius, cornerRadius, blurRadius);
+    }
+
+    /**
+     * Draw the shadow by {@link Paint#setShadowLayer(float, float, float, int)}, layers are drawn
+     * one over another. Called with the paint lock held, the paint and rects are reused.
+     */
+    private void drawShadowWithPaint(Canvas canvas, int shadowWidth, int shadowHeight, int scale,
+                                     float cornerRadius, float shadowRadius, ShadowLayer[] layers) {
         shadowPaint.setAntiAlias(true);
 //        shadowPaint.setColor(Color.BLACK);
 //        shadowPaint.setStyle(Paint.Style.STROKE);
 //        shadowPaint.setStrokeWidth(2);
         shadowPaint.setColor(Color.TRANSPARENT);
         shadowPaint.setStyle(Paint.Style.FILL);
-        shadowPaint.setShadowLayer(shadowRadius, 0, 0, shadowColor);
 
-        canvas.drawRoundRect(shadowRect, cornerRadius, cornerRadius, shadowPaint);
+        if (layers == null) {
+            float blurRadius = ShadowRenderScale.scaleBlurRadius(shadowRadius, scale);
+            cornerRadius /= scale;
+            shadowRadius /= scale;
 
-        return output;
+            shadowRect.set(
+                    shadowRadius,
+                    shadowRadius,
+                    shadowWidth - shadowRadius,
+                    shadowHeight - shadowRadius);
+
+            shadowPaint.setShadowLayer(blurRadius, 0, 0, MASK_COLOR);
+            canvas.drawRoundRect(shadowRect, cornerRadius, cornerRadius, shadowPaint);
+            return;
+        }
+
+        for (ShadowLayer layer : layers) {
+            ShadowLayer.getLayerRect(layers, layer, shadowWidth, shadowHeight, scale, layerRect);
+            shadowRect.set(layerRect[0], layerRect[1], layerRect[2], layerRect[3]);
+            float layerCornerRadius = layer.getCornerRadius(cornerRadius) / scale;
+
+            int alpha = Math.min(Color.alpha(MASK_COLOR), Color.alpha(layer.getColor()));
+            shadowPaint.setShadowLayer(ShadowRenderScale.scaleBlurRadius(layer.getBlurRadius(), scale),
+                    0, 0, Color.argb(alpha, 0, 0, 0));
+            canvas.drawRoundRect(shadowRect, layerCornerRadius, layerCornerRadius, shadowPaint);
+        }
+    }
+
+    /**
+     * The mask and an {@link Bitmap.Config#ALPHA_8} bitmap both keep a byte per pixel in rows, so
+     * the mask is copied as is, or row by row if rows of the bitmap are padded.
+     */
+    static void copyMaskToBitmap(ShadowMask mask, Bitmap output) {
+        int width = mask.getWidth();
+        int height = mask.getHeight();
+        byte[] buffer = mask.getBuffer();
+
+        if (output.getRowBytes() == width) {
+            output.copyPixelsFromBuffer(mask.getPixels());
+            return;
+        }
+
+        int[] row = new int[width];
+        for (int y = 0; y < height; y++) {
+            int offset = y * width;
+            for (int x = 0; x < width; x++) {
+                row[x] = (buffer[offset + x] & 0xFF) << 24;
+            }
+            output.setPixels(row, 0, width, 0, y, width, 1);
+        }
     }
 
     /*--------------------------------------------------------------------------------------------*/
@@ -194,6 +781,299 @@ public class ShadowLayout extends FrameLayout {
 
     /*--------------------------------------------------------------------------------------------*/
 
+    /**
+     * @param renderer the engine renders the shadow mask, or null to render by
+     *                 {@link Paint#setShadowLayer(float, float, float, int)}.
+     */
+    public void setShadowRenderer(ShadowRenderer renderer) {
+        if (shadowRenderer == renderer) return;
+
+        shadowRenderer = renderer;
+        onShadowChanged(CHANGE_GEOMETRY);
+    }
+
+    public ShadowRenderer getShadowRenderer() {
+        return shadowRenderer;
+    }
+
+    /**
+     * Render the shadow at a reduced resolution and stretch it back with bilinear filtering, not
+     * used by nine patch mode whose tile is small already.
+     *
+     * @param renderScale one of {@link ShadowRenderScale#FULL}, {@link ShadowRenderScale#HALF},
+     *                    {@link ShadowRenderScale#QUARTER}, or {@link ShadowRenderScale#AUTO} to
+     *                    pick one from blur radius.
+     */
+    public void setShadowRenderScale(int renderScale) {
+        if (!ShadowRenderScale.isValid(renderScale)) {
+            throw new IllegalArgumentException("Invalid render scale: " + renderScale);
+        }
+        if (shadowRenderScale == renderScale) return;
+
+        shadowRenderScale = renderScale;
+        onShadowChanged(CHANGE_GEOMETRY);
+    }
+
+    public int getShadowRenderScale() {
+        return shadowRenderScale;
+    }
+
+    /**
+     * Coalesce re-rendering on size changes by {@link #getShadowResizeScheduler()}, useful when the
+     * layout is animated, only works while invalidate on size changed is on.
+     */
+    public void setShadowResizeCoalesced(boolean coalesced) {
+        if (coalesceShadowResize == coalesced) return;
+
+        coalesceShadowResize = coalesced;
+        if (!coalesced && resizeScheduler.isPending()) {
+            resizeScheduler.cancel();
+            invalidateShadow();
+        }
+    }
+
+    public boolean isShadowResizeCoalesced() {
+        return coalesceShadowResize;
+    }
+
+    /**
+     * Configure interval, bucket size and settle time of coalesced resizing.
+     */
+    public ShadowResizeScheduler getShadowResizeScheduler() {
+        return resizeScheduler;
+    }
+
+    /**
+     * Change the shadow color without rendering again, the mask is only tinted with the new color.
+     */
+    public void setShadowColor(int color) {
+        if (shadowColor == color) return;
+
+        shadowColor = color;
+        onShadowChanged(CHANGE_TINT);
+    }
+
+    public int getShadowColor() {
+        return shadowColor;
+    }
+
+    /**
+     * Render the shadow again with the new corner radius.
+     */
+    public void setShadowCornerRadius(float cornerRadius) {
+        if (shadowCornerRadius == cornerRadius) return;
+
+        shadowCornerRadius = cornerRadius;
+        onShadowChanged(CHANGE_GEOMETRY);
+    }
+
+    public float getShadowCornerRadius() {
+        return shadowCornerRadius;
+    }
+
+    /**
+     * Render the shadow again with the new blur radius, the padding grows or shrinks with it.
+     */
+    public void setShadowBlurRadius(float blurRadius) {
+        if (shadowBlurRadius == blurRadius) return;
+
+        shadowBlurRadius = blurRadius;
+        onShadowChanged(CHANGE_PADDING | CHANGE_GEOMETRY);
+    }
+
+    public float getShadowBlurRadius() {
+        return shadowBlurRadius;
+    }
+
+    /**
+     * The shadow fills the layout and the offset only moves the content, so only the padding is
+     * updated, unless a hollow shadow has to move its hole.
+     */
+    public void setShadowOffset(float offsetX, float offsetY) {
+        if (shadowOffsetX == offsetX && shadowOffsetY == offsetY) return;
+
+        shadowOffsetX = offsetX;
+        shadowOffsetY = offsetY;
+        onShadowChanged(CHANGE_PADDING);
+    }
+
+    public float getShadowOffsetX() {
+        return shadowOffsetX;
+    }
+
+    public float getShadowOffsetY() {
+        return shadowOffsetY;
+    }
+
+    /**
+     * Only the padding is updated, the same as {@link #setShadowOffset(float, float)}.
+     */
+    public void setShadowPadding(float left, float top, float right, float bottom) {
+        if (shadowPaddingLeft == left && shadowPaddingTop == top
+                && shadowPaddingRight == right && shadowPaddingBottom == bottom) {
+            return;
+        }
+
+        shadowPaddingLeft = left;
+        shadowPaddingTop = top;
+        shadowPaddingRight = right;
+        shadowPaddingBottom = bottom;
+        onShadowChanged(CHANGE_PADDING);
+    }
+
+    public float getShadowPaddingLeft() {
+        return shadowPaddingLeft;
+    }
+
+    public float getShadowPaddingTop() {
+        return shadowPaddingTop;
+    }
+
+    public float getShadowPaddingRight() {
+        return shadowPaddingRight;
+    }
+
+    public float getShadowPaddingBottom() {
+        return shadowPaddingBottom;
+    }
+
+    public void setShadowInvalidateOnSizeChanged(boolean invalidate) {
+        invalidateShadowOnSizeChanged = invalidate;
+    }
+
+    public boolean isShadowInvalidateOnSizeChanged() {
+        return invalidateShadowOnSizeChanged;
+    }
+
+    public void setShadowNinePatch(boolean ninePatch) {
+        if (ninePatchShadow == ninePatch) return;
+
+        ninePatchShadow = ninePatch;
+        onShadowChanged(CHANGE_GEOMETRY);
+    }
+
+    public boolean isShadowNinePatch() {
+        return ninePatchShadow;
+    }
+
+    public void setShadowSharedCache(boolean sharedCache) {
+        if (sharedShadowCache == sharedCache) return;
+
+        sharedShadowCache = sharedCache;
+        onShadowChanged(CHANGE_GEOMETRY);
+    }
+
+    public boolean isShadowSharedCache() {
+        return sharedShadowCache;
+    }
+
+    /**
+     * Takes effect from the next render, the current shadow is kept.
+     */
+    public void setShadowAsync(boolean async) {
+        asyncShadow = async;
+    }
+
+    public boolean isShadowAsync() {
+        return asyncShadow;
+    }
+
+    public void setShadowQuadrant(boolean quadrant) {
+        if (quadrantShadow == quadrant) return;
+
+        quadrantShadow = quadrant;
+        onShadowChanged(CHANGE_GEOMETRY);
+    }
+
+    public boolean isShadowQuadrant() {
+        return quadrantShadow;
+    }
+
+    public void setShadowHollow(boolean hollow) {
+        if (hollowShadow == hollow) return;
+
+        hollowShadow = hollow;
+        onShadowChanged(CHANGE_GEOMETRY);
+    }
+
+    public boolean isShadowHollow() {
+        return hollowShadow;
+    }
+
+    /**
+     * Start a batch of changes, setters only record what they change until the matching
+     * {@link #endShadowEdit()}, then the padding is updated and the shadow is rendered at most
+     * once. Edits can be nested, only the outermost end applies them.
+     */
+    public void beginShadowEdit() {
+        shadowEditDepth++;
+    }
+
+    public void endShadowEdit() {
+        if (shadowEditDepth == 0) throw new IllegalStateException("endShadowEdit without beginShadowEdit");
+        if (--shadowEditDepth > 0) return;
+
+        int changes = pendingShadowChanges;
+        pendingShadowChanges = 0;
+        onShadowChanged(changes);
+    }
+
+    /**
+     * Apply changes in the cheapest way, or record them while in an edit. A tint only tints the
+     * cached mask, a padding change only updates the padding unless the hole of a hollow shadow
+     * depends on it, and only a geometry change renders the shadow again. A render in flight is
+     * dropped on a geometry change, its bitmap may be of another mode or size.
+     */
+    private void onShadowChanged(int changes) {
+        if (shadowEditDepth > 0) {
+            pendingShadowChanges |= changes;
+            return;
+        }
+
+        if ((changes & CHANGE_PADDING) != 0) {
+            updateShadowPadding();
+            if (hollowShadow) changes |= CHANGE_GEOMETRY;
+        }
+        if ((changes & CHANGE_TINT) != 0 && getBackground() != null) {
+            tintShadowDrawable(getBackground());
+        }
+        if ((changes & CHANGE_GEOMETRY) != 0) {
+            renderQueue.cancel();
+            invalidateShadow();
+        }
+    }
+
+    /**
+     * Replace the single shadow by layers composited into one mask, e.g. a key shadow and an
+     * ambient shadow, the padding is updated so that every layer fits. Nine patch and quadrant
+     * modes are not used for layers.
+     *
+     * @param layers null or empty to go back to the single shadow.
+     */
+    public void setShadowLayers(ShadowLayer... layers) {
+        if (layers != null && layers.length == 0) layers = null;
+        if (Arrays.equals(shadowLayers, layers)) return;
+
+        shadowLayers = layers != null ? layers.clone() : null;
+        onShadowChanged(CHANGE_PADDING | CHANGE_GEOMETRY);
+    }
+
+    /**
+     * @return a copy of the layers, or null if the single shadow is used.
+     */
+    public ShadowLayer[] getShadowLayers() {
+        return shadowLayers != null ? shadowLayers.clone() : null;
+    }
+
+    /**
+     * Replace all attributes by the spec, e.g. when a recycled layout is bound to another style,
+     * the shadow is rendered again.
+     */
+    public void setShadowSpec(ShadowSpec spec) {
+        applyShadowSpec(spec);
+        onShadowChanged(CHANGE_GEOMETRY);
+    }
+
     public void invalidateShadow() {
         forceInvalidateShadow = true;
         requestLayout();
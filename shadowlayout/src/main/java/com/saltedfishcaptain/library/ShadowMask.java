@@ -0,0 +1,219 @@
+/*
+ * Copyright (c) 2017 SaltedFish Captain
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.saltedfishcaptain.library;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Description:
+ * The alpha mask of a shadow, one byte per pixel in rows, 0 is transparent and 255 is the full
+ * shadow color. It has no Android dependency so renderers can be tested and benchmarked on JVM.
+ * <p>
+ * Attention:
+ * The buffer may be larger than width * height when the mask is reused for a smaller size.
+ * <p>
+ */
+
+public class ShadowMask {
+    private static final int MAX_POOLED_BYTES = 512 * 1024;
+    private static final int MAX_POOLED_COUNT = 2; // 多层阴影渲染时同时需要两个
+
+    private static final ShadowMask[] pooledMasks = new ShadowMask[MAX_POOLED_COUNT]; // 只缓存不太大的mask，避免常驻内存过多
+    private static int pooledCount;
+
+    private int width;
+    private int height;
+    private byte[] alpha = new byte[0];
+    private ByteBuffer pixels; // 包装alpha，每次拷贝到Bitmap时复用，不再分配
+
+    public ShadowMask(int width, int height) {
+        reset(width, height);
+    }
+
+    /**
+     * @return a cleared mask, reused from the last {@link #recycle()} if possible.
+     */
+    public static ShadowMask obtain(int width, int height) {
+        ShadowMask mask = null;
+        synchronized (ShadowMask.class) {
+            if (pooledCount > 0) {
+                mask = pooledMasks[--pooledCount];
+                pooledMasks[pooledCount] = null;
+            }
+        }
+
+        if (mask == null) return new ShadowMask(width, height);
+
+        mask.reset(width, height);
+        return mask;
+    }
+
+    public void recycle() {
+        if (alpha.length > MAX_POOLED_BYTES) return;
+
+        synchronized (ShadowMask.class) {
+            if (pooledCount < MAX_POOLED_COUNT) {
+                pooledMasks[pooledCount++] = this;
+            }
+        }
+    }
+
+    /**
+     * Drop the pooled masks, e.g. on memory pressure.
+     */
+    static void clearPool() {
+        synchronized (ShadowMask.class) {
+            while (pooledCount > 0) {
+                pooledMasks[--pooledCount] = null;
+            }
+        }
+    }
+
+    /**
+     * Resize and clear the mask, the buffer is only allocated again if it is not large enough.
+     */
+    public void reset(int width, int height) {
+        this.width = width;
+        this.height = height;
+
+        int size = width * height;
+        if (alpha.length < size) {
+            alpha = new byte[size];
+        } else {
+            Arrays.fill(alpha, 0, size, (byte) 0);
+        }
+    }
+
+    /**
+     * Fill an anti-aliased round rect with full alpha, the coverage of a pixel is estimated from
+     * the signed distance between its center and the edge.
+     */
+    public void fillRoundRect(float left, float top, float right, float bottom, float cornerRadius) {
+        if (right <= left || bottom <= top) return;
+
+        float halfWidth = (right - left) / 2;
+        float halfHeight = (bottom - top) / 2;
+        float centerX = left + halfWidth;
+        float centerY = top + halfHeight;
+        float radius = Math.max(0, Math.min(cornerRadius, Math.min(halfWidth, halfHeight)));
+
+        int startX = Math.max(0, (int) Math.floor(left));
+        int endX = Math.min(width, (int) Math.ceil(right));
+        int startY = Math.max(0, (int) Math.floor(top));
+        int endY = Math.min(height, (int) Math.ceil(bottom));
+
+        for (int y = startY; y < endY; y++) {
+            float dy = Math.abs(y + 0.5f - centerY) - (halfHeight - radius);
+            int offset = y * width;
+
+            for (int x = startX; x < endX; x++) {
+                float dx = Math.abs(x + 0.5f - centerX) - (halfWidth - radius);
+
+                float distance;
+                if (dx > 0 && dy > 0) {
+                    distance = (float) Math.sqrt(dx * dx + dy * dy) - radius;
+                } else {
+                    distance = Math.max(dx, dy) - radius;
+                }
+
+                float coverage = 0.5f - distance;
+                if (coverage >= 1) {
+                    alpha[offset + x] = (byte) 255;
+                } else if (coverage > 0) {
+                    alpha[offset + x] = (byte) (coverage * 255 + 0.5f);
+                }
+            }
+        }
+    }
+
+    /**
+     * Keep only the top left part of the mask, rows are moved forward in place so the buffer stays
+     * packed and can be copied into a bitmap at once.
+     */
+    public void crop(int width, int height) {
+        width = Math.min(width, this.width);
+        height = Math.min(height, this.height);
+
+        if (width < this.width) {
+            for (int y = 1; y < height; y++) {
+                System.arraycopy(alpha, y * this.width, alpha, y * width, width);
+            }
+        }
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * Draw another mask of the same size over this one with source over, the other mask is
+     * multiplied by the opacity from 0 to 255 first.
+     */
+    public void composite(ShadowMask source, int opacity) {
+        if (source.width != width || source.height != height) {
+            throw new IllegalArgumentException("Mask size mismatch: " + source.width + "x" + source.height
+                    + " to " + width + "x" + height);
+        }
+
+        byte[] sourceAlpha = source.alpha;
+        int size = width * height;
+        for (int i = 0; i < size; i++) {
+            int src = (sourceAlpha[i] & 0xFF) * opacity;
+            if (src == 0) continue;
+
+            int dst = alpha[i] & 0xFF;
+            alpha[i] = (byte) (dst + (src * (255 - dst) + 32512) / 65025);
+        }
+    }
+
+    /*--------------------------------------------------------------------------------------------*/
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * The backing buffer, pixel (x, y) is at {@code y * getWidth() + x}.
+     */
+    public byte[] getBuffer() {
+        return alpha;
+    }
+
+    /**
+     * @return the pixels of the current size in a buffer wrapping {@link #getBuffer()}, ready to be
+     * read from the start.
+     */
+    ByteBuffer getPixels() {
+        if (pixels == null || pixels.array() != alpha) {
+            pixels = ByteBuffer.wrap(alpha);
+        }
+        pixels.clear();
+        pixels.limit(width * height);
+        return pixels;
+    }
+
+    public int getAlpha(int x, int y) {
+        return alpha[y * width + x] & 0xFF;
+    }
+
+    public void setAlpha(int x, int y, int value) {
+        alpha[y * width + x] = (byte) value;
+    }
+}
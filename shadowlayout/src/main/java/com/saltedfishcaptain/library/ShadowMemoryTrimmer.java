@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2017 SaltedFish Captain
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.saltedfishcaptain.library;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+
+/**
+ * Description:
+ * Give shadow memory back when the system asks by {@link ComponentCallbacks2#onTrimMemory(int)}.
+ * Bitmaps held by layouts are released on detach already, so what is left to drop are cached
+ * shadows no layout is showing, pooled bitmaps and pooled masks. The lower the memory, the more is
+ * dropped, and everything unused is dropped once the UI is hidden.
+ * <p>
+ * Attention:
+ * Nothing is trimmed until {@link #install(Context)} is called, usually in
+ * {@link android.app.Application#onCreate()}, or call {@link #trimMemory(int)} from callbacks of
+ * your own. Shadows in use are never dropped, layouts render dropped shadows again when needed.
+ * <p>
+ */
+
+public class ShadowMemoryTrimmer implements ComponentCallbacks2 {
+    private static ShadowMemoryTrimmer instance;
+
+    /**
+     * Register the trimmer on the application, calling it again does nothing.
+     */
+    public static synchronized void install(Context context) {
+        if (instance != null) return;
+
+        instance = new ShadowMemoryTrimmer();
+        context.getApplicationContext().registerComponentCallbacks(instance);
+    }
+
+    ShadowMemoryTrimmer() {
+    }
+
+    /**
+     * Drop part of the pool while running low, and everything not in use when memory is critical
+     * or the UI is hidden. Cached shadows are evicted into the pool first, so the pool is trimmed
+     * after the cache.
+     *
+     * @param level one of the TRIM_MEMORY constants of {@link ComponentCallbacks2}.
+     */
+    public static void trimMemory(int level) {
+        ShadowBitmapCache cache = ShadowBitmapCache.getInstance();
+        cache.trimToSize((long) (cache.getMaxBytes() * getCacheRatio(level)));
+
+        ShadowBitmapPool pool = ShadowBitmapPool.getInstance();
+        pool.trimToSize((long) (pool.getMaxBytes() * getPoolRatio(level)));
+
+        if (level >= TRIM_MEMORY_RUNNING_CRITICAL) {
+            ShadowMask.clearPool();
+        }
+    }
+
+    /**
+     * @return the part of its budget the cache keeps at the level.
+     */
+    static float getCacheRatio(int level) {
+        if (level >= TRIM_MEMORY_RUNNING_CRITICAL) return 0;
+        if (level >= TRIM_MEMORY_RUNNING_LOW) return 0.5f;
+        return 1;
+    }
+
+    /**
+     * @return the part of its budget the pool keeps at the level, the pool only saves allocations
+     * so it is given up earlier than the cache.
+     */
+    static float getPoolRatio(int level) {
+        if (level >= TRIM_MEMORY_RUNNING_LOW) return 0;
+        if (level >= TRIM_MEMORY_RUNNING_MODERATE) return 0.5f;
+        return 1;
+    }
+
+    /*--------------------------------------------------------------------------------------------*/
+
+    @Override
+    public void onTrimMemory(int level) {
+        trimMemory(level);
+    }
+
+    @Override
+    public void onLowMemory() {
+        trimMemory(TRIM_MEMORY_COMPLETE);
+    }
+
+    @Override
+    public void onConfigurationChanged(Configuration newConfig) {
+    }
+}
@@ -0,0 +1,254 @@
+/*
+ * Copyright (c) 2017 SaltedFish Captain
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.saltedfishcaptain.library;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.MessageQueue;
+import android.os.SystemClock;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * Description:
+ * Render shadows of an upcoming screen into {@link ShadowBitmapCache} before its layouts are laid
+ * out, so their first frame only looks the shadows up. Entries are rendered in main thread idle
+ * time by {@link #startOnIdle()}, at most {@link #setIdleBudgetMillis(long)} in an idle slice, or
+ * on an executor by {@link #startInBackground(Executor)}. Either way {@link #cancel()} stops it
+ * before the next entry.
+ * <p>
+ * Attention:
+ * Only specs with shared cache are rendered, other layouts never look the cache up, so their
+ * entries are skipped. Create and start it on the main thread, a layout is created for each
+ * spec to render exactly what it would render. A started prewarmer can not be started again.
+ * <p>
+ */
+
+public class ShadowPrewarmer {
+    public static final long DEFAULT_IDLE_BUDGET_MILLIS = 4;
+
+    private final List<Entry> entries;
+    private final List<Object> layouts; // 和entries一一对应，同一个spec共用一个布局
+
+    private long idleBudgetMillis = DEFAULT_IDLE_BUDGET_MILLIS; // 一次空闲最多渲染这么久，至少渲染一个
+    private boolean started;
+    private volatile boolean cancelled;
+    private volatile int nextIndex;
+    private volatile int renderedCount;
+
+    private MessageQueue idleQueue;
+    private Handler idleHandler;
+    private final MessageQueue.IdleHandler idleCallback = new MessageQueue.IdleHandler() {
+        @Override
+        public boolean queueIdle() {
+            return onIdle();
+        }
+    };
+    // 空闲回调只在消息队列从忙变闲时调用，还有剩余时发一个空消息来等待下一次空闲
+    private final Runnable wakeUp = new Runnable() {
+        @Override
+        public void run() {
+        }
+    };
+
+    public ShadowPrewarmer(Context context, List<Entry> entries) {
+        this.entries = new ArrayList<>(entries);
+        this.layouts = new ArrayList<>(entries.size());
+
+        HashMap<ShadowSpec, ShadowLayout> shadowLayouts = new HashMap<>();
+        HashMap<ShadowSpec, SuperShadowLayout> superShadowLayouts = new HashMap<>();
+        for (Entry entry : this.entries) {
+            if (entry.superShadow) {
+                SuperShadowLayout layout = superShadowLayouts.get(entry.spec);
+                if (layout == null) {
+                    layout = new SuperShadowLayout(context, entry.spec);
+                    superShadowLayouts.put(entry.spec, layout);
+                }
+                layouts.add(layout);
+            } else {
+                ShadowLayout layout = shadowLayouts.get(entry.spec);
+                if (layout == null) {
+                    layout = new ShadowLayout(context, entry.spec);
+                    shadowLayouts.put(entry.spec, layout);
+                }
+                layouts.add(layout);
+            }
+        }
+    }
+
+    /*--------------------------------------------------------------------------------------------*/
+
+    /**
+     * Render entries whenever the main thread is idle, a slice ends after the idle budget and the
+     * rest waits for the next idle time, so frames and input in between are not held up.
+     */
+    public void startOnIdle() {
+        checkNotStarted();
+        idleQueue = Looper.myQueue();
+        idleHandler = new Handler(Looper.getMainLooper());
+        idleQueue.addIdleHandler(idleCallback);
+    }
+
+    /**
+     * Render all entries one by one in a single task on the executor.
+     */
+    public void startInBackground(Executor executor) {
+        checkNotStarted();
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                while (!cancelled && prewarmNext()) {
+                    // 每个条目之间检查是否已经取消
+                }
+            }
+        });
+    }
+
+    /**
+     * Render on the executor of {@link ShadowRenderQueue}.
+     */
+    public void startInBackground() {
+        startInBackground(ShadowRenderQueue.getExecutor());
+    }
+
+    /**
+     * Stop before the next entry, the entry in progress is finished and cached.
+     */
+    public void cancel() {
+        cancelled = true;
+        if (idleQueue != null) {
+            idleQueue.removeIdleHandler(idleCallback);
+            idleHandler.removeCallbacks(wakeUp);
+        }
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * @return true if every entry has been handled, rendered or skipped.
+     */
+    public boolean isFinished() {
+        return nextIndex >= entries.size();
+    }
+
+    /**
+     * @return the count of shadows really rendered, skipped entries and cached shadows are not
+     * counted.
+     */
+    public int getRenderedCount() {
+        return renderedCount;
+    }
+
+    public void setIdleBudgetMillis(long idleBudgetMillis) {
+        this.idleBudgetMillis = Math.max(0, idleBudgetMillis);
+    }
+
+    public long getIdleBudgetMillis() {
+        return idleBudgetMillis;
+    }
+
+    /*--------------------------------------------------------------------------------------------*/
+
+    private void checkNotStarted() {
+        if (started) throw new IllegalStateException("ShadowPrewarmer has been started");
+        started = true;
+    }
+
+    /**
+     * @return true to keep the idle handler while entries remain.
+     */
+    boolean onIdle() {
+        long deadline = SystemClock.uptimeMillis() + idleBudgetMillis;
+        do {
+            if (cancelled || !prewarmNext()) return false;
+        } while (SystemClock.uptimeMillis() < deadline);
+
+        if (isFinished()) return false;
+        idleHandler.post(wakeUp);
+        return true;
+    }
+
+    /**
+     * @return false if there is no entry left.
+     */
+    private boolean prewarmNext() {
+        int index = nextIndex;
+        if (index >= entries.size()) return false;
+        nextIndex = index + 1;
+
+        Entry entry = entries.get(index);
+        Object layout = layouts.get(index);
+        boolean rendered = entry.superShadow
+                ? ((SuperShadowLayout) layout).prewarmShadow(entry.width, entry.height)
+                : ((ShadowLayout) layout).prewarmShadow(entry.width, entry.height);
+        if (rendered) renderedCount++;
+        return true;
+    }
+
+    /*--------------------------------------------------------------------------------------------*/
+
+    /**
+     * A shadow to render, the size is the size the layout will be laid out at.
+     */
+    public static final class Entry {
+        private final ShadowSpec spec;
+        private final int width;
+        private final int height;
+        private final boolean superShadow;
+
+        /**
+         * An entry for {@link ShadowLayout}.
+         */
+        public Entry(ShadowSpec spec, int width, int height) {
+            this(spec, width, height, false);
+        }
+
+        /**
+         * @param superShadow true for {@link SuperShadowLayout}, whose shadows differ from
+         *                    {@link ShadowLayout} of the same spec.
+         */
+        public Entry(ShadowSpec spec, int width, int height, boolean superShadow) {
+            if (spec == null) throw new IllegalArgumentException("Spec must not be null");
+            this.spec = spec;
+            this.width = width;
+            this.height = height;
+            this.superShadow = superShadow;
+        }
+
+        public ShadowSpec getSpec() {
+            return spec;
+        }
+
+        public int getWidth() {
+            return width;
+        }
+
+        public int getHeight() {
+            return height;
+        }
+
+        public boolean isSuperShadow() {
+            return superShadow;
+        }
+    }
+}
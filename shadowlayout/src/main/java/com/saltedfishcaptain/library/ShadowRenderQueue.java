@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 2017 SaltedFish Captain
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.saltedfishcaptain.library;
+
+import android.graphics.Bitmap;
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Description:
+ * Render shadow bitmaps of one layout on a background executor and deliver them back on the main
+ * thread. Every submit cancels the job in flight, and a result is dropped into
+ * {@link ShadowBitmapPool} if another job has been submitted or cancelled after it, so results of
+ * stale sizes never reach the layout.
+ * <p>
+ * Attention:
+ * The executor is shared by all layouts, replace it by {@link #setExecutor(Executor)} before any
+ * layout is created, a direct executor makes rendering synchronous which is useful in tests.
+ * <p>
+ */
+
+public class ShadowRenderQueue {
+    private static final int MAX_THREAD_COUNT = Math.max(1, Math.min(2, Runtime.getRuntime().availableProcessors() - 1));
+    private static final long KEEP_ALIVE_SECONDS = 30;
+
+    private static Executor executor;
+    private static Handler mainHandler;
+
+    private final AtomicInteger generation = new AtomicInteger(); // 每次提交或取消都会加一，用来丢弃过期的结果
+    private FutureTask<Void> pendingTask;
+
+    public static synchronized void setExecutor(Executor executor) {
+        ShadowRenderQueue.executor = executor;
+    }
+
+    public static synchronized Executor getExecutor() {
+        if (executor == null) {
+            executor = createDefaultExecutor();
+        }
+        return executor;
+    }
+
+    private static Executor createDefaultExecutor() {
+        ThreadPoolExecutor threadPool = new ThreadPoolExecutor(MAX_THREAD_COUNT, MAX_THREAD_COUNT,
+                KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                new ThreadFactory() {
+                    private final AtomicInteger count = new AtomicInteger();
+
+                    @Override
+                    public Thread newThread(Runnable runnable) {
+                        Thread thread = new Thread(runnable, "ShadowRender #" + count.incrementAndGet());
+                        thread.setDaemon(true);
+                        thread.setPriority(Thread.MIN_PRIORITY);
+                        return thread;
+                    }
+                });
+        threadPool.allowCoreThreadTimeOut(true);
+        return threadPool;
+    }
+
+    private static synchronized Handler getMainHandler() {
+        if (mainHandler == null) {
+            mainHandler = new Handler(Looper.getMainLooper());
+        }
+        return mainHandler;
+    }
+
+    /*--------------------------------------------------------------------------------------------*/
+
+    /**
+     * Must be called on the main thread.
+     */
+    public void submit(final Renderer renderer, final Callback callback) {
+        cancel();
+
+        final int expectedGeneration = generation.get();
+        FutureTask<Void> task = new FutureTask<>(new Runnable() {
+            @Override
+            public void run() {
+                if (expectedGeneration != generation.get()) return;
+
+                Bitmap bitmap = renderer.render();
+                deliver(expectedGeneration, bitmap, callback);
+            }
+        }, null);
+
+        pendingTask = task;
+        getExecutor().execute(task);
+    }
+
+    /**
+     * Cancel the job in flight, its result will be dropped even if it is rendering already.
+     */
+    public void cancel() {
+        generation.incrementAndGet();
+        if (pendingTask != null) {
+            pendingTask.cancel(false);
+            pendingTask = null;
+        }
+    }
+
+    public boolean isPending() {
+        return pendingTask != null;
+    }
+
+    private void deliver(final int expectedGeneration, final Bitmap bitmap, final Callback callback) {
+        Runnable delivery = new Runnable() {
+            @Override
+            public void run() {
+                if (expectedGeneration != generation.get()) {
+                    ShadowBitmapPool.getInstance().put(bitmap);
+                    return;
+                }
+
+                pendingTask = null;
+                callback.onRendered(bitmap);
+            }
+        };
+
+        if (Looper.myLooper() == Looper.getMainLooper()) {
+            delivery.run();
+        } else {
+            getMainHandler().post(delivery);
+        }
+    }
+
+    /*--------------------------------------------------------------------------------------------*/
+
+    public interface Renderer {
+        /**
+         * Called on a background thread, must not touch the view.
+         */
+        Bitmap render();
+    }
+
+    public interface Callback {
+        /**
+         * Called on the main thread, only for the latest job.
+         */
+        void onRendered(Bitmap bitmap);
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2017 SaltedFish Captain
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.saltedfishcaptain.library;
+
+/**
+ * Description:
+ * Scales of downsampled shadow rendering. A blurred shadow has no sharp detail, so it can be
+ * rendered into a bitmap of 1/2 or 1/4 size and stretched back with bilinear filtering, which
+ * costs 1/4 or 1/16 of the memory and rendering time.
+ * <p>
+ * Attention:
+ * A scale is the divisor of the size, {@link #AUTO} picks one from the blur radius, so the blur
+ * still spans enough pixels in the small bitmap to hide the filtering.
+ * <p>
+ */
+
+public final class ShadowRenderScale {
+    public static final int AUTO = 0;
+    public static final int FULL = 1;
+    public static final int HALF = 2;
+    public static final int QUARTER = 4;
+
+    static final float MIN_SCALED_BLUR_RADIUS = 4; // 缩小后的模糊半径不少于这么多像素，否则拉伸后边缘会明显发虚
+
+    private ShadowRenderScale() {
+    }
+
+    public static boolean isValid(int renderScale) {
+        return renderScale == AUTO || renderScale == FULL || renderScale == HALF || renderScale == QUARTER;
+    }
+
+    /**
+     * @return the divisor to render with, {@link #AUTO} is resolved by the blur radius in pixels.
+     */
+    public static int resolve(int renderScale, float blurRadius) {
+        if (renderScale != AUTO) return renderScale;
+
+        if (blurRadius >= MIN_SCALED_BLUR_RADIUS * QUARTER) return QUARTER;
+        if (blurRadius >= MIN_SCALED_BLUR_RADIUS * HALF) return HALF;
+        return FULL;
+    }
+
+    /**
+     * A blur radius is converted to sigma as {@code 0.57735 * radius + 0.5} by Skia and
+     * {@link BoxBlurShadowRenderer}, which is not linear, so the radius for a downsampled mask is
+     * chosen to keep sigma in proportion rather than divided directly.
+     */
+    public static float scaleBlurRadius(float blurRadius, int scale) {
+        if (scale <= FULL || blurRadius <= 0) return blurRadius;
+
+        float sigma = BoxBlurShadowRenderer.convertRadiusToSigma(blurRadius) / scale;
+        return Math.max(0, (sigma - 0.5f) / 0.57735f);
+    }
+
+    /**
+     * @return the size of the downsampled bitmap, rounded to the nearest pixel and at least 1.
+     */
+    public static int scaleSize(int size, int scale) {
+        if (scale <= FULL) return size;
+        return Math.max(1, (size + scale / 2) / scale);
+    }
+}
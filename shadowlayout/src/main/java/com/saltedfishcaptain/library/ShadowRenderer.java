@@ -0,0 +1,39 @@
+/*
+ * Copyright (c) 2017 SaltedFish Captain
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.saltedfishcaptain.library;
+
+/**
+ * Description:
+ * An engine renders the alpha mask of a blurred round rect shadow.
+ * <p>
+ * Attention:
+ * Renderers may be called from the background threads of {@link ShadowRenderQueue}, so they must
+ * be thread safe, and must not depend on Android classes.
+ * <p>
+ */
+
+public interface ShadowRenderer {
+
+    /**
+     * Render the shadow of the round rect into the mask, the mask has been cleared already.
+     *
+     * @param blurRadius the same meaning as the radius of
+     *                   {@link android.graphics.Paint#setShadowLayer(float, float, float, int)}
+     */
+    void render(ShadowMask mask, float left, float top, float right, float bottom,
+                float cornerRadius, float blurRadius);
+}
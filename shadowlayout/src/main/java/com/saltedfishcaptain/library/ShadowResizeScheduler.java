@@ -0,0 +1,197 @@
+/*
+ * Copyright (c) 2017 SaltedFish Captain
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.saltedfishcaptain.library;
+
+import android.os.SystemClock;
+import android.view.Choreographer;
+
+/**
+ * Description:
+ * Coalesce size changes of one layout for animations. Sizes are checked once a frame by
+ * {@link Choreographer}, while the size keeps changing the shadow is rendered at most once per
+ * interval and only when the size falls into another bucket, the last shadow is stretched in
+ * between. When the size has not changed for the settle time, the exact size is rendered once.
+ * <p>
+ * Attention:
+ * Must be used on the main thread. The clock can be replaced by {@link #setClock(Clock)} in
+ * tests, and frames can be driven by {@link #doFrame()} directly.
+ * <p>
+ */
+
+public class ShadowResizeScheduler {
+    public static final long DEFAULT_SETTLE_MILLIS = 100;
+
+    private static final Clock SYSTEM_CLOCK = new Clock() {
+        @Override
+        public long uptimeMillis() {
+            return SystemClock.uptimeMillis();
+        }
+    };
+
+    private final Callback callback;
+    private Clock clock = SYSTEM_CLOCK;
+    private long intervalMillis; // 两次渲染之间的最小间隔，0表示每帧最多渲染一次
+    private int bucketSize = 1; // 尺寸变化过程中向下取整到这个值的倍数，落在同一个区间内就不重新渲染
+    private long settleMillis = DEFAULT_SETTLE_MILLIS; // 尺寸保持不变这么久之后，按精确尺寸渲染一次
+
+    private int pendingWidth; // 最新的精确尺寸
+    private int pendingHeight;
+    private int renderedWidth; // 最后一次渲染的尺寸，0表示还没有通过这里渲染过
+    private int renderedHeight;
+    private long lastChangeTime;
+    private long lastRenderTime;
+    private boolean frameScheduled;
+
+    private final Choreographer.FrameCallback frameCallback = new Choreographer.FrameCallback() {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            ShadowResizeScheduler.this.doFrame();
+        }
+    };
+
+    public ShadowResizeScheduler(Callback callback) {
+        this.callback = callback;
+    }
+
+    /**
+     * Round the size down to a multiple of the bucket, sizes smaller than a bucket are kept as is.
+     */
+    public static int toBucketSize(int size, int bucketSize) {
+        if (bucketSize <= 1) return size;
+
+        int bucket = size - size % bucketSize;
+        return bucket > 0 ? bucket : size;
+    }
+
+    /*--------------------------------------------------------------------------------------------*/
+
+    /**
+     * Record the new size, it will be rendered in a later frame.
+     */
+    public void requestSize(int width, int height) {
+        pendingWidth = width;
+        pendingHeight = height;
+        lastChangeTime = clock.uptimeMillis();
+
+        if (!frameScheduled) {
+            frameScheduled = true;
+            scheduleFrame();
+        }
+    }
+
+    /**
+     * Drop the pending size and forget the rendered one, called when the layout renders by
+     * itself or is detached.
+     */
+    public void cancel() {
+        if (frameScheduled) {
+            frameScheduled = false;
+            unscheduleFrame();
+        }
+        renderedWidth = 0;
+        renderedHeight = 0;
+    }
+
+    public boolean isPending() {
+        return frameScheduled;
+    }
+
+    /**
+     * Called once a frame while a size is pending.
+     */
+    void doFrame() {
+        if (!frameScheduled) return;
+        frameScheduled = false;
+
+        long now = clock.uptimeMillis();
+        if (now - lastChangeTime >= settleMillis) {
+            if (pendingWidth != renderedWidth || pendingHeight != renderedHeight) {
+                render(pendingWidth, pendingHeight, now);
+            }
+            return;
+        }
+
+        if (renderedWidth == 0 || now - lastRenderTime >= intervalMillis) {
+            int width = toBucketSize(pendingWidth, bucketSize);
+            int height = toBucketSize(pendingHeight, bucketSize);
+            if (width != renderedWidth || height != renderedHeight) {
+                render(width, height, now);
+            }
+        }
+
+        frameScheduled = true;
+        scheduleFrame();
+    }
+
+    private void render(int width, int height, long now) {
+        renderedWidth = width;
+        renderedHeight = height;
+        lastRenderTime = now;
+        callback.onRenderSize(width, height);
+    }
+
+    void scheduleFrame() {
+        Choreographer.getInstance().postFrameCallback(frameCallback);
+    }
+
+    void unscheduleFrame() {
+        Choreographer.getInstance().removeFrameCallback(frameCallback);
+    }
+
+    /*--------------------------------------------------------------------------------------------*/
+
+    public void setClock(Clock clock) {
+        this.clock = clock != null ? clock : SYSTEM_CLOCK;
+    }
+
+    public void setIntervalMillis(long intervalMillis) {
+        this.intervalMillis = Math.max(0, intervalMillis);
+    }
+
+    public long getIntervalMillis() {
+        return intervalMillis;
+    }
+
+    public void setBucketSize(int bucketSize) {
+        this.bucketSize = Math.max(1, bucketSize);
+    }
+
+    public int getBucketSize() {
+        return bucketSize;
+    }
+
+    public void setSettleMillis(long settleMillis) {
+        this.settleMillis = Math.max(0, settleMillis);
+    }
+
+    public long getSettleMillis() {
+        return settleMillis;
+    }
+
+    /*--------------------------------------------------------------------------------------------*/
+
+    public interface Clock {
+        long uptimeMillis();
+    }
+
+    public interface Callback {
+        /**
+         * Called on the main thread with a bucket size while resizing, or the exact size at last.
+         */
+        void onRenderSize(int width, int height);
+    }
+}
@@ -0,0 +1,605 @@
+/*
+ * Copyright (c) 2017 SaltedFish Captain
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.saltedfishcaptain.library;
+
+import android.content.Context;
+import android.content.res.Configuration;
+import android.content.res.Resources;
+import android.content.res.TypedArray;
+import android.util.AttributeSet;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Description:
+ * The immutable attributes of a {@link ShadowLayout} or {@link SuperShadowLayout}, with the
+ * padding of the content derived once. Specs read from a style are interned per style and
+ * configuration, so layouts inflated with the same style share one spec and skip resolving
+ * attributes. Only specs of the latest configuration are kept, a configuration change drops the
+ * others. Layouts created in code get a spec from {@link Builder}, or the default one.
+ * <p>
+ * Attention:
+ * A view which sets any shadow attribute directly in xml gets its own spec. Interned specs
+ * resolve theme attributes with the theme of the first context, so a shared style should not
+ * refer to theme attributes which differ between themes. Layers only work for
+ * {@link ShadowLayout}, and direct draw only for {@link SuperShadowLayout}.
+ * <p>
+ */
+
+public final class ShadowSpec {
+    public static final int RENDERER_BOX_BLUR = 0;
+    public static final int RENDERER_PAINT = 1;
+    public static final int RENDERER_ANALYTIC = 2;
+
+    private static final HashMap<InternKey, ShadowSpec> internedSpecs = new HashMap<>();
+    private static Configuration internedConfiguration; // internedSpecs里所有spec的配置，配置变化时清空
+
+    private final float cornerRadius; // 以下尺寸单位都是px
+    private final float blurRadius;
+    private final int color;
+    private final float offsetX;
+    private final float offsetY;
+    private final float paddingLeft; // 阴影区域四边的缩进
+    private final float paddingTop;
+    private final float paddingRight;
+    private final float paddingBottom;
+    private final ShadowLayer[] layers;
+
+    private final boolean invalidateOnSizeChanged;
+    private final boolean ninePatch;
+    private final boolean sharedCache;
+    private final boolean async;
+    private final boolean quadrant;
+    private final boolean hollow;
+    private final boolean directDraw;
+    private final int renderScale;
+    private final int renderer;
+    private final boolean resizeCoalesced;
+    private final int resizeIntervalMillis;
+    private final int resizeBucketSize;
+
+    private final int[] contentPadding; // 预先算好的内容区域的左上右下padding
+
+    private ShadowSpec(Builder builder) {
+        cornerRadius = builder.cornerRadius;
+        blurRadius = builder.blurRadius;
+        color = builder.color;
+        offsetX = builder.offsetX;
+        offsetY = builder.offsetY;
+        paddingLeft = builder.paddingLeft;
+        paddingTop = builder.paddingTop;
+        paddingRight = builder.paddingRight;
+        paddingBottom = builder.paddingBottom;
+        layers = builder.layers;
+        invalidateOnSizeChanged = builder.invalidateOnSizeChanged;
+        ninePatch = builder.ninePatch;
+        sharedCache = builder.sharedCache;
+        async = builder.async;
+        quadrant = builder.quadrant;
+        hollow = builder.hollow;
+        directDraw = builder.directDraw;
+        renderScale = builder.renderScale;
+        renderer = builder.renderer;
+        resizeCoalesced = builder.resizeCoalesced;
+        resizeIntervalMillis = builder.resizeIntervalMillis;
+        resizeBucketSize = builder.resizeBucketSize;
+
+        contentPadding = computeContentPadding(blurRadius, offsetX, offsetY,
+                paddingLeft, paddingTop, paddingRight, paddingBottom, layers);
+    }
+
+    /*--------------------------------------------------------------------------------------------*/
+
+    /**
+     * The spec of a layout inflated with the attributes, shared with other layouts if it only
+     * has a style, or the default spec if there are no attributes.
+     */
+    public static ShadowSpec obtain(Context context, AttributeSet attrs) {
+        if (attrs == null) return getDefault(context);
+
+        int style = attrs.getStyleAttribute();
+        if (style != 0 && !hasShadowAttributes(attrs)) return fromStyle(context, style, attrs);
+
+        TypedArray attr = context.obtainStyledAttributes(attrs, R.styleable.ShadowLayout, 0, 0);
+        try {
+            return read(context.getResources(), attr);
+        } finally {
+            attr.recycle();
+        }
+    }
+
+    /**
+     * @return the interned spec of the style, resolved as the style of a view without default
+     * style, the same as a layout inflated with only the style.
+     */
+    public static ShadowSpec fromStyle(Context context, int styleRes) {
+        return fromStyle(context, styleRes, null);
+    }
+
+    /**
+     * @param attrs attributes of a view which only has the style, or null.
+     */
+    private static ShadowSpec fromStyle(Context context, int styleRes, AttributeSet attrs) {
+        InternKey key = new InternKey(styleRes, context.getResources().getConfiguration());
+        synchronized (internedSpecs) {
+            ShadowSpec spec = internedSpecs.get(key);
+            if (spec != null) return spec;
+        }
+
+        TypedArray attr = attrs != null
+                ? context.obtainStyledAttributes(attrs, R.styleable.ShadowLayout, 0, 0)
+                : context.obtainStyledAttributes(null, R.styleable.ShadowLayout, 0, styleRes);
+        ShadowSpec spec;
+        try {
+            spec = read(context.getResources(), attr);
+        } finally {
+            attr.recycle();
+        }
+
+        return intern(key, spec);
+    }
+
+    /**
+     * @return the interned spec with default attributes.
+     */
+    public static ShadowSpec getDefault(Context context) {
+        InternKey key = new InternKey(0, context.getResources().getConfiguration());
+        synchronized (internedSpecs) {
+            ShadowSpec spec = internedSpecs.get(key);
+            if (spec != null) return spec;
+        }
+
+        return intern(key, new Builder(context).build());
+    }
+
+    /**
+     * Specs of an older configuration are never looked up again after a configuration change,
+     * so they are dropped when a spec of a new configuration is interned.
+     *
+     * @return the spec interned by others in the meantime, or the given one.
+     */
+    private static ShadowSpec intern(InternKey key, ShadowSpec spec) {
+        synchronized (internedSpecs) {
+            ShadowSpec interned = internedSpecs.get(key);
+            if (interned != null) return interned;
+
+            if (!key.hasConfiguration(internedConfiguration)) {
+                internedSpecs.clear();
+                internedConfiguration = key.copyConfiguration();
+            }
+            internedSpecs.put(new InternKey(key.styleRes, internedConfiguration), spec);
+            return spec;
+        }
+    }
+
+    /**
+     * Attribute ids in a styleable array are sorted, so each attribute of the view is searched.
+     */
+    private static boolean hasShadowAttributes(AttributeSet attrs) {
+        for (int i = 0, count = attrs.getAttributeCount(); i < count; i++) {
+            if (Arrays.binarySearch(R.styleable.ShadowLayout, attrs.getAttributeNameResource(i)) >= 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static ShadowSpec read(Resources resources, TypedArray attr) {
+        Builder builder = new Builder(resources);
+        builder.cornerRadius = attr.getDimension(R.styleable.ShadowLayout_shadow_corner_radius, builder.cornerRadius);
+        builder.blurRadius = attr.getDimension(R.styleable.ShadowLayout_shadow_blur_radius, builder.blurRadius);
+        builder.color = attr.getColor(R.styleable.ShadowLayout_shadow_color, builder.color);
+        builder.offsetX = attr.getDimension(R.styleable.ShadowLayout_shadow_offset_x, 0);
+        builder.offsetY = attr.getDimension(R.styleable.ShadowLayout_shadow_offset_y, 0);
+        builder.paddingLeft = attr.getDimension(R.styleable.ShadowLayout_shadow_padding_left, 0);
+        builder.paddingRight = attr.getDimension(R.styleable.ShadowLayout_shadow_padding_right, 0);
+        builder.paddingTop = attr.getDimension(R.styleable.ShadowLayout_shadow_padding_top, 0);
+        builder.paddingBottom = attr.getDimension(R.styleable.ShadowLayout_shadow_padding_bottom, 0);
+        builder.invalidateOnSizeChanged = attr.getBoolean(R.styleable.ShadowLayout_invalidate_shadow_on_size_changed, true);
+        builder.ninePatch = attr.getBoolean(R.styleable.ShadowLayout_shadow_nine_patch, false);
+        builder.sharedCache = attr.getBoolean(R.styleable.ShadowLayout_shadow_shared_cache, false);
+        builder.async = attr.getBoolean(R.styleable.ShadowLayout_shadow_async, false);
+        builder.quadrant = attr.getBoolean(R.styleable.ShadowLayout_shadow_quadrant, false);
+        builder.hollow = attr.getBoolean(R.styleable.ShadowLayout_shadow_hollow, false);
+        builder.directDraw = attr.getBoolean(R.styleable.ShadowLayout_shadow_direct_draw, false);
+        builder.renderScale = attr.getInt(R.styleable.ShadowLayout_shadow_render_scale, ShadowRenderScale.FULL);
+        builder.renderer = attr.getInt(R.styleable.ShadowLayout_shadow_renderer, RENDERER_BOX_BLUR);
+        builder.resizeCoalesced = attr.getBoolean(R.styleable.ShadowLayout_shadow_resize_coalesce, false);
+        builder.resizeIntervalMillis = attr.getInt(R.styleable.ShadowLayout_shadow_resize_interval, 0);
+        builder.resizeBucketSize = attr.getDimensionPixelSize(R.styleable.ShadowLayout_shadow_resize_bucket, 1);
+
+        String layers = attr.getString(R.styleable.ShadowLayout_shadow_layers);
+        if (layers != null) {
+            builder.setLayers(ShadowLayer.parse(layers, resources.getDisplayMetrics().density));
+            if (!attr.hasValue(R.styleable.ShadowLayout_shadow_color) && builder.layers != null) {
+                builder.color = getLayersColor(builder.layers);
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * The content is padded so that the shadow fits in the bounds, a layered shadow reaches as far
+     * as its widest layer on each side.
+     *
+     * @return the left, top, right and bottom padding.
+     */
+    static int[] computeContentPadding(float blurRadius, float offsetX, float offsetY,
+                                       float paddingLeft, float paddingTop, float paddingRight,
+                                       float paddingBottom, ShadowLayer[] layers) {
+        float extentLeft = blurRadius - offsetX;
+        float extentRight = blurRadius + offsetX;
+        float extentTop = blurRadius - offsetY;
+        float extentBottom = blurRadius + offsetY;
+        if (layers != null) {
+            extentLeft = ShadowLayer.getExtentLeft(layers);
+            extentRight = ShadowLayer.getExtentRight(layers);
+            extentTop = ShadowLayer.getExtentTop(layers);
+            extentBottom = ShadowLayer.getExtentBottom(layers);
+        }
+
+        return new int[]{
+                (int) (extentLeft - paddingLeft),
+                (int) (extentTop - paddingTop),
+                (int) (extentRight - paddingRight),
+                (int) (extentBottom - paddingBottom)};
+    }
+
+    /**
+     * Layers share the rgb of the first layer, their alpha is rendered into the mask already.
+     */
+    static int getLayersColor(ShadowLayer[] layers) {
+        return layers[0].getColor() | 0xFF000000;
+    }
+
+    /*--------------------------------------------------------------------------------------------*/
+
+    public float getCornerRadius() {
+        return cornerRadius;
+    }
+
+    public float getBlurRadius() {
+        return blurRadius;
+    }
+
+    public int getColor() {
+        return color;
+    }
+
+    public float getOffsetX() {
+        return offsetX;
+    }
+
+    public float getOffsetY() {
+        return offsetY;
+    }
+
+    public float getPaddingLeft() {
+        return paddingLeft;
+    }
+
+    public float getPaddingTop() {
+        return paddingTop;
+    }
+
+    public float getPaddingRight() {
+        return paddingRight;
+    }
+
+    public float getPaddingBottom() {
+        return paddingBottom;
+    }
+
+    /**
+     * @return a copy of the layers, or null for a single shadow.
+     */
+    public ShadowLayer[] getLayers() {
+        return layers != null ? layers.clone() : null;
+    }
+
+    /**
+     * The layers without copying, layouts never modify them.
+     */
+    ShadowLayer[] getLayersInternal() {
+        return layers;
+    }
+
+    public boolean isInvalidateOnSizeChanged() {
+        return invalidateOnSizeChanged;
+    }
+
+    public boolean isNinePatch() {
+        return ninePatch;
+    }
+
+    public boolean isSharedCache() {
+        return sharedCache;
+    }
+
+    public boolean isAsync() {
+        return async;
+    }
+
+    public boolean isQuadrant() {
+        return quadrant;
+    }
+
+    public boolean isHollow() {
+        return hollow;
+    }
+
+    public boolean isDirectDraw() {
+        return directDraw;
+    }
+
+    public int getRenderScale() {
+        return renderScale;
+    }
+
+    /**
+     * @return {@link #RENDERER_BOX_BLUR}, {@link #RENDERER_PAINT} or {@link #RENDERER_ANALYTIC}.
+     */
+    public int getRenderer() {
+        return renderer;
+    }
+
+    public boolean isResizeCoalesced() {
+        return resizeCoalesced;
+    }
+
+    public int getResizeIntervalMillis() {
+        return resizeIntervalMillis;
+    }
+
+    public int getResizeBucketSize() {
+        return resizeBucketSize;
+    }
+
+    public int getContentPaddingLeft() {
+        return contentPadding[0];
+    }
+
+    public int getContentPaddingTop() {
+        return contentPadding[1];
+    }
+
+    public int getContentPaddingRight() {
+        return contentPadding[2];
+    }
+
+    public int getContentPaddingBottom() {
+        return contentPadding[3];
+    }
+
+    /*--------------------------------------------------------------------------------------------*/
+
+    private static final class InternKey {
+        private final int styleRes;
+        private final Configuration configuration; // 尺寸和颜色会随密度、夜间模式等配置变化
+
+        InternKey(int styleRes, Configuration configuration) {
+            this.styleRes = styleRes;
+            this.configuration = configuration;
+        }
+
+        /**
+         * Keys for lookup refer to the live configuration, interned keys share one copy of it.
+         */
+        Configuration copyConfiguration() {
+            return configuration != null ? new Configuration(configuration) : null;
+        }
+
+        boolean hasConfiguration(Configuration other) {
+            return configuration != null ? configuration.equals(other) : other == null;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof InternKey)) return false;
+
+            InternKey key = (InternKey) o;
+            return styleRes == key.styleRes
+                    && (configuration != null ? configuration.equals(key.configuration) : key.configuration == null);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * styleRes + (configuration != null ? configuration.hashCode() : 0);
+        }
+    }
+
+    /**
+     * Build a spec in code, it starts with the default attributes of xml. Sizes are in pixels.
+     */
+    public static final class Builder {
+        private float cornerRadius;
+        private float blurRadius;
+        private int color;
+        private float offsetX;
+        private float offsetY;
+        private float paddingLeft;
+        private float paddingTop;
+        private float paddingRight;
+        private float paddingBottom;
+        private ShadowLayer[] layers;
+
+        private boolean invalidateOnSizeChanged = true;
+        private boolean ninePatch;
+        private boolean sharedCache;
+        private boolean async;
+        private boolean quadrant;
+        private boolean hollow;
+        private boolean directDraw;
+        private int renderScale = ShadowRenderScale.FULL;
+        private int renderer = RENDERER_BOX_BLUR;
+        private boolean resizeCoalesced;
+        private int resizeIntervalMillis;
+        private int resizeBucketSize = 1;
+
+        public Builder(Context context) {
+            this(context.getResources());
+        }
+
+        Builder(Resources resources) {
+            cornerRadius = resources.getDimension(R.dimen.shadow_layout_default_corner_radius);
+            blurRadius = resources.getDimension(R.dimen.shadow_layout_default_shadow_radius);
+            color = resources.getColor(R.color.shadow_layout_default_shadow_color);
+        }
+
+        /**
+         * Start with the attributes of another spec.
+         */
+        public Builder(ShadowSpec spec) {
+            cornerRadius = spec.cornerRadius;
+            blurRadius = spec.blurRadius;
+            color = spec.color;
+            offsetX = spec.offsetX;
+            offsetY = spec.offsetY;
+            paddingLeft = spec.paddingLeft;
+            paddingTop = spec.paddingTop;
+            paddingRight = spec.paddingRight;
+            paddingBottom = spec.paddingBottom;
+            layers = spec.layers;
+            invalidateOnSizeChanged = spec.invalidateOnSizeChanged;
+            ninePatch = spec.ninePatch;
+            sharedCache = spec.sharedCache;
+            async = spec.async;
+            quadrant = spec.quadrant;
+            hollow = spec.hollow;
+            directDraw = spec.directDraw;
+            renderScale = spec.renderScale;
+            renderer = spec.renderer;
+            resizeCoalesced = spec.resizeCoalesced;
+            resizeIntervalMillis = spec.resizeIntervalMillis;
+            resizeBucketSize = spec.resizeBucketSize;
+        }
+
+        public Builder setCornerRadius(float cornerRadius) {
+            this.cornerRadius = cornerRadius;
+            return this;
+        }
+
+        public Builder setBlurRadius(float blurRadius) {
+            this.blurRadius = blurRadius;
+            return this;
+        }
+
+        public Builder setColor(int color) {
+            this.color = color;
+            return this;
+        }
+
+        public Builder setOffset(float offsetX, float offsetY) {
+            this.offsetX = offsetX;
+            this.offsetY = offsetY;
+            return this;
+        }
+
+        public Builder setPadding(float left, float top, float right, float bottom) {
+            this.paddingLeft = left;
+            this.paddingTop = top;
+            this.paddingRight = right;
+            this.paddingBottom = bottom;
+            return this;
+        }
+
+        /**
+         * @param layers null or empty for a single shadow.
+         */
+        public Builder setLayers(ShadowLayer... layers) {
+            this.layers = layers != null && layers.length > 0 ? layers.clone() : null;
+            return this;
+        }
+
+        public Builder setInvalidateOnSizeChanged(boolean invalidateOnSizeChanged) {
+            this.invalidateOnSizeChanged = invalidateOnSizeChanged;
+            return this;
+        }
+
+        public Builder setNinePatch(boolean ninePatch) {
+            this.ninePatch = ninePatch;
+            return this;
+        }
+
+        public Builder setSharedCache(boolean sharedCache) {
+            this.sharedCache = sharedCache;
+            return this;
+        }
+
+        public Builder setAsync(boolean async) {
+            this.async = async;
+            return this;
+        }
+
+        public Builder setQuadrant(boolean quadrant) {
+            this.quadrant = quadrant;
+            return this;
+        }
+
+        public Builder setHollow(boolean hollow) {
+            this.hollow = hollow;
+            return this;
+        }
+
+        public Builder setDirectDraw(boolean directDraw) {
+            this.directDraw = directDraw;
+            return this;
+        }
+
+        public Builder setRenderScale(int renderScale) {
+            if (!ShadowRenderScale.isValid(renderScale)) {
+                throw new IllegalArgumentException("Invalid render scale: " + renderScale);
+            }
+            this.renderScale = renderScale;
+            return this;
+        }
+
+        /**
+         * @param renderer {@link #RENDERER_BOX_BLUR}, {@link #RENDERER_PAINT} or
+         *                 {@link #RENDERER_ANALYTIC}.
+         */
+        public Builder setRenderer(int renderer) {
+            if (renderer != RENDERER_BOX_BLUR && renderer != RENDERER_PAINT
+                    && renderer != RENDERER_ANALYTIC) {
+                throw new IllegalArgumentException("Invalid renderer: " + renderer);
+            }
+            this.renderer = renderer;
+            return this;
+        }
+
+        public Builder setResizeCoalesced(boolean resizeCoalesced) {
+            this.resizeCoalesced = resizeCoalesced;
+            return this;
+        }
+
+        public Builder setResizeIntervalMillis(int resizeIntervalMillis) {
+            this.resizeIntervalMillis = resizeIntervalMillis;
+            return this;
+        }
+
+        public Builder setResizeBucketSize(int resizeBucketSize) {
+            this.resizeBucketSize = resizeBucketSize;
+            return this;
+        }
+
+        public ShadowSpec build() {
+            return new ShadowSpec(this);
+        }
+    }
+}
@@ -0,0 +1,238 @@
+/*
+ * Copyright (c) 2017 SaltedFish Captain
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.saltedfishcaptain.library;
+
+/**
+ * Description:
+ * Process-wide metrics of shadow rendering: bitmaps created, bytes of bitmaps held by layouts,
+ * {@link ShadowBitmapCache} and {@link ShadowBitmapPool}, renders counted by what triggered them,
+ * a histogram of render durations, and hit ratios of the cache and the pool. Install a
+ * {@link Listener} to forward every render and allocation to your own telemetry.
+ * <p>
+ * Attention:
+ * Renders are not recorded until {@link #setEnabled(boolean)} or {@link #setListener(Listener)}
+ * turns it on, disabled stats cost a volatile read per render. Bitmap allocations are always
+ * counted, they are rare and far more expensive than counting. Listeners are called on the thread
+ * which renders, which is a background thread for async shadows.
+ * <p>
+ */
+
+public final class ShadowStats {
+    public static final int TRIGGER_SIZE_CHANGED = 0; // onSizeChanged，包括第一次测量
+    public static final int TRIGGER_INVALIDATE = 1; // invalidateShadow或属性修改后的强制刷新，由onSizeChanged或onLayout执行
+    public static final int TRIGGER_RESIZE = 2; // 合并后延迟执行的尺寸变化
+    public static final int TRIGGER_ATTACH = 3; // 重新attach后恢复阴影
+    public static final int TRIGGER_PREWARM = 4; // ShadowPrewarmer提前渲染到共享缓存
+    public static final int TRIGGER_TILE = 5; // ShadowItemDecoration等九宫格图块的首次渲染
+    static final int TRIGGER_COUNT = 6;
+
+    /**
+     * Upper bounds in milliseconds of histogram buckets, the last bucket counts everything longer.
+     */
+    private static final int[] DURATION_BUCKET_MILLIS = {1, 2, 4, 8, 16, 32};
+
+    private static final ShadowStats INSTANCE = new ShadowStats();
+
+    private volatile boolean enabled;
+    private volatile Listener listener;
+
+    private int bitmapCreatedCount;
+    private long createdBytes;
+    private long droppedBytes;
+    private final int[] renderCounts = new int[TRIGGER_COUNT];
+    private final int[] durationCounts = new int[DURATION_BUCKET_MILLIS.length + 1];
+    private long totalRenderNanos;
+
+    public static ShadowStats getInstance() {
+        return INSTANCE;
+    }
+
+    ShadowStats() {
+    }
+
+    /*--------------------------------------------------------------------------------------------*/
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * @return true if stats are recorded, by {@link #setEnabled(boolean)} or by a listener.
+     */
+    public boolean isEnabled() {
+        return enabled || listener != null;
+    }
+
+    /**
+     * @param listener null removes the listener, stats stay enabled if they were set so.
+     */
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    public Listener getListener() {
+        return listener;
+    }
+
+    /**
+     * Clear all counters, bytes held are kept since the bitmaps are still there.
+     */
+    public synchronized void reset() {
+        bitmapCreatedCount = 0;
+        for (int i = 0; i < TRIGGER_COUNT; i++) {
+            renderCounts[i] = 0;
+        }
+        for (int i = 0; i < durationCounts.length; i++) {
+            durationCounts[i] = 0;
+        }
+        totalRenderNanos = 0;
+    }
+
+    /*--------------------------------------------------------------------------------------------*/
+
+    /**
+     * @return the start time of a render, or 0 if stats are disabled, which is passed to
+     * {@link #onShadowRendered(int, long, int, int)} later.
+     */
+    long startRender() {
+        return isEnabled() ? System.nanoTime() : 0;
+    }
+
+    void onShadowRendered(int trigger, long startNanos, int width, int height) {
+        if (startNanos == 0) return;
+
+        long durationNanos = System.nanoTime() - startNanos;
+        synchronized (this) {
+            renderCounts[trigger]++;
+            durationCounts[getDurationBucket(durationNanos)]++;
+            totalRenderNanos += durationNanos;
+        }
+
+        Listener listener = this.listener;
+        if (listener != null) {
+            listener.onShadowRendered(trigger, width, height, durationNanos);
+        }
+    }
+
+    /**
+     * Tracked even if stats are disabled, otherwise bitmaps created before enabling would make
+     * bytes held negative when they are dropped.
+     */
+    void onBitmapCreated(int bytes) {
+        synchronized (this) {
+            bitmapCreatedCount++;
+            createdBytes += bytes;
+        }
+
+        Listener listener = this.listener;
+        if (listener != null) {
+            listener.onBitmapCreated(bytes);
+        }
+    }
+
+    synchronized void onBitmapDropped(int bytes) {
+        droppedBytes += bytes;
+    }
+
+    private static int getDurationBucket(long durationNanos) {
+        long millis = durationNanos / 1000000;
+        for (int i = 0; i < DURATION_BUCKET_MILLIS.length; i++) {
+            if (millis < DURATION_BUCKET_MILLIS[i]) return i;
+        }
+        return DURATION_BUCKET_MILLIS.length;
+    }
+
+    /*--------------------------------------------------------------------------------------------*/
+
+    public synchronized int getBitmapCreatedCount() {
+        return bitmapCreatedCount;
+    }
+
+    /**
+     * @return bytes of all bitmaps created and not dropped yet, either drawn by layouts, cached or
+     * pooled.
+     */
+    public synchronized long getHeldBytes() {
+        return createdBytes - droppedBytes;
+    }
+
+    /**
+     * @param trigger one of the TRIGGER constants.
+     */
+    public synchronized int getRenderCount(int trigger) {
+        return renderCounts[trigger];
+    }
+
+    public synchronized int getRenderCount() {
+        int count = 0;
+        for (int renderCount : renderCounts) {
+            count += renderCount;
+        }
+        return count;
+    }
+
+    public synchronized long getTotalRenderNanos() {
+        return totalRenderNanos;
+    }
+
+    /**
+     * @return upper bounds in milliseconds of the buckets of {@link #getDurationHistogram()}.
+     */
+    public static int[] getDurationBucketMillis() {
+        return DURATION_BUCKET_MILLIS.clone();
+    }
+
+    /**
+     * @return render counts by duration, bucket i counts renders shorter than
+     * {@link #getDurationBucketMillis()}[i] and not in a former bucket, the last one counts the
+     * rest, so it has one more bucket than the bounds.
+     */
+    public synchronized int[] getDurationHistogram() {
+        return durationCounts.clone();
+    }
+
+    public float getCacheHitRatio() {
+        ShadowBitmapCache cache = ShadowBitmapCache.getInstance();
+        return getRatio(cache.getHitCount(), cache.getMissCount());
+    }
+
+    public float getPoolHitRatio() {
+        ShadowBitmapPool pool = ShadowBitmapPool.getInstance();
+        return getRatio(pool.getHitCount(), pool.getMissCount());
+    }
+
+    private static float getRatio(int hitCount, int missCount) {
+        int count = hitCount + missCount;
+        return count > 0 ? (float) hitCount / count : 0;
+    }
+
+    /*--------------------------------------------------------------------------------------------*/
+
+    public interface Listener {
+        /**
+         * A shadow is rendered into a bitmap, which is not called for cache hits.
+         *
+         * @param width the size rendered, which is downsampled or the nine patch tile if so.
+         */
+        void onShadowRendered(int trigger, int width, int height, long durationNanos);
+
+        /**
+         * A new bitmap is allocated since none in the pool fits.
+         */
+        void onBitmapCreated(int bytes);
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2017 SaltedFish Captain
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.saltedfishcaptain.library;
+
+import android.animation.ValueAnimator;
+import android.graphics.Color;
+
+/**
+ * Description:
+ * Interpolate the shadow of an {@link AnimatedShadowDrawable} between two states, blur radius and
+ * offset linearly, and the color with its alpha channel by channel, e.g.
+ * {@code animator.addUpdateListener(new ShadowTransition(drawable).setStart(...).setEnd(...))}.
+ * Nothing is allocated per frame.
+ * <p>
+ * Attention:
+ * Fractions are not clamped, so an overshooting interpolator overshoots the shadow as well, blur
+ * radii are then clamped to the keyframes by the drawable. Call
+ * {@link AnimatedShadowDrawable#prewarm()} before starting the animator, or the first frames may
+ * have no shadow while tiles are rendered.
+ * <p>
+ */
+
+public class ShadowTransition implements ValueAnimator.AnimatorUpdateListener {
+    private final AnimatedShadowDrawable drawable;
+
+    private float startBlurRadius; // 起始状态
+    private float startOffsetX;
+    private float startOffsetY;
+    private int startColor;
+    private float endBlurRadius; // 结束状态
+    private float endOffsetX;
+    private float endOffsetY;
+    private int endColor;
+
+    /**
+     * Both states start as the current state of the drawable.
+     */
+    public ShadowTransition(AnimatedShadowDrawable drawable) {
+        this.drawable = drawable;
+        setStart(drawable.getBlurRadius(), drawable.getOffsetX(), drawable.getOffsetY(), drawable.getColor());
+        setEnd(drawable.getBlurRadius(), drawable.getOffsetX(), drawable.getOffsetY(), drawable.getColor());
+    }
+
+    public ShadowTransition setStart(float blurRadius, float offsetX, float offsetY, int color) {
+        startBlurRadius = blurRadius;
+        startOffsetX = offsetX;
+        startOffsetY = offsetY;
+        startColor = color;
+        return this;
+    }
+
+    public ShadowTransition setEnd(float blurRadius, float offsetX, float offsetY, int color) {
+        endBlurRadius = blurRadius;
+        endOffsetX = offsetX;
+        endOffsetY = offsetY;
+        endColor = color;
+        return this;
+    }
+
+    /**
+     * Apply the state at the fraction to the drawable, 0 is the start and 1 is the end.
+     */
+    public void setFraction(float fraction) {
+        drawable.setShadow(
+                lerp(startBlurRadius, endBlurRadius, fraction),
+                lerp(startOffsetX, endOffsetX, fraction),
+                lerp(startOffsetY, endOffsetY, fraction),
+                lerpColor(startColor, endColor, fraction));
+    }
+
+    @Override
+    public void onAnimationUpdate(ValueAnimator animation) {
+        setFraction(animation.getAnimatedFraction());
+    }
+
+    public AnimatedShadowDrawable getDrawable() {
+        return drawable;
+    }
+
+    /*--------------------------------------------------------------------------------------------*/
+
+    private static float lerp(float start, float end, float fraction) {
+        return start + (end - start) * fraction;
+    }
+
+    static int lerpColor(int start, int end, float fraction) {
+        return Color.argb(
+                lerpChannel(Color.alpha(start), Color.alpha(end), fraction),
+                lerpChannel(Color.red(start), Color.red(end), fraction),
+                lerpChannel(Color.green(start), Color.green(end), fraction),
+                lerpChannel(Color.blue(start), Color.blue(end), fraction));
+    }
+
+    private static int lerpChannel(int start, int end, float fraction) {
+        return Math.max(0, Math.min(255, Math.round(start + (end - start) * fraction)));
+    }
+}
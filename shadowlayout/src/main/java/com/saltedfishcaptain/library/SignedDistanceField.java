@@ -0,0 +1,324 @@
+/*
+ * Copyright (c) 2017 SaltedFish Captain
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.saltedfishcaptain.library;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.RectF;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Description:
+ * A small signed distance field of an arbitrary shape, built once by an exact euclidean distance
+ * transform, from which shadows of any size and blur radius are evaluated per pixel. A pixel at
+ * distance d from the outline gets the coverage of a gaussian blurred half plane,
+ * {@code erfc(d / (sigma * sqrt(2))) / 2}, so a new size or blur radius costs an evaluation of
+ * the field instead of a fresh blur.
+ * <p>
+ * Attention:
+ * The half plane is exact along straight edges and smooth curves, convex corners sharper than the
+ * blur come out a little heavier than a real gaussian blur. The shape is stretched with the size,
+ * distances are scaled by the mean of both scales, so keep the aspect ratio of the shape for
+ * exact distances. Only {@link #fromPath(Path, int)} depends on Android classes.
+ * <p>
+ */
+
+public final class SignedDistanceField {
+    static final int MARGIN = 2; // 形状四周留出的像素，场外的距离由边缘外推
+    private static final float INFINITY = 1e20f;
+    private static final float SQRT_2 = 1.41421356f;
+
+    private final int width;
+    private final int height;
+    private final float[] distances; // 像素中心到轮廓的距离，单位是场的像素，内部为负
+    private final float shapeWidth; // 形状在场中的尺寸，左上角位于(MARGIN, MARGIN)
+    private final float shapeHeight;
+    private String cacheId;
+
+    private SignedDistanceField(int width, int height, float[] distances, float shapeWidth, float shapeHeight) {
+        this.width = width;
+        this.height = height;
+        this.distances = distances;
+        this.shapeWidth = shapeWidth;
+        this.shapeHeight = shapeHeight;
+    }
+
+    /**
+     * Build the field of a shape given by its coverage, the shape fills the bounds of the mask
+     * and pixels with at least half coverage are inside.
+     */
+    public static SignedDistanceField fromMask(ShadowMask coverage) {
+        return fromMask(coverage, coverage.getWidth(), coverage.getHeight());
+    }
+
+    /**
+     * @param shapeWidth the exact width of the shape in pixels of the mask, which may end in the
+     *                   middle of the last column.
+     */
+    static SignedDistanceField fromMask(ShadowMask coverage, float shapeWidth, float shapeHeight) {
+        int maskWidth = coverage.getWidth();
+        int maskHeight = coverage.getHeight();
+        int width = maskWidth + MARGIN * 2;
+        int height = maskHeight + MARGIN * 2;
+        int size = width * height;
+
+        boolean[] inside = new boolean[size];
+        for (int y = 0; y < maskHeight; y++) {
+            for (int x = 0; x < maskWidth; x++) {
+                inside[(y + MARGIN) * width + x + MARGIN] = coverage.getAlpha(x, y) >= 128;
+            }
+        }
+
+        float[] toInside = new float[size];
+        float[] toOutside = new float[size];
+        for (int i = 0; i < size; i++) {
+            toInside[i] = inside[i] ? 0 : INFINITY;
+            toOutside[i] = inside[i] ? INFINITY : 0;
+        }
+        transform(toInside, width, height);
+        transform(toOutside, width, height);
+
+        // 相邻的内外像素中心相距1，轮廓在它们中间，所以各减去半个像素
+        float[] distances = new float[size];
+        for (int i = 0; i < size; i++) {
+            distances[i] = inside[i]
+                    ? 0.5f - (float) Math.sqrt(toOutside[i])
+                    : (float) Math.sqrt(toInside[i]) - 0.5f;
+        }
+        return new SignedDistanceField(width, height, distances, shapeWidth, shapeHeight);
+    }
+
+    /**
+     * Rasterize the path with anti-aliasing, scaled to fit its longer side into the resolution,
+     * and build the field of it. 64 pixels are plenty for smooth shapes, since blurred shadows
+     * never show details finer than the blur.
+     */
+    public static SignedDistanceField fromPath(Path path, int resolution) {
+        RectF bounds = new RectF();
+        path.computeBounds(bounds, true);
+        float longSide = Math.max(bounds.width(), bounds.height());
+        if (longSide <= 0) throw new IllegalArgumentException("Path is empty");
+
+        float scale = resolution / longSide;
+        float shapeWidth = bounds.width() * scale;
+        float shapeHeight = bounds.height() * scale;
+        int maskWidth = Math.max(1, (int) Math.ceil(shapeWidth));
+        int maskHeight = Math.max(1, (int) Math.ceil(shapeHeight));
+
+        Bitmap bitmap = Bitmap.createBitmap(maskWidth, maskHeight, Bitmap.Config.ALPHA_8);
+        Canvas canvas = new Canvas(bitmap);
+        canvas.scale(scale, scale);
+        canvas.translate(-bounds.left, -bounds.top);
+        canvas.drawPath(path, new Paint(Paint.ANTI_ALIAS_FLAG));
+
+        ByteBuffer pixels = ByteBuffer.allocate(bitmap.getByteCount());
+        bitmap.copyPixelsToBuffer(pixels);
+        int rowBytes = bitmap.getRowBytes();
+        bitmap.recycle();
+
+        ShadowMask coverage = new ShadowMask(maskWidth, maskHeight);
+        byte[] rows = pixels.array();
+        for (int y = 0; y < maskHeight; y++) {
+            System.arraycopy(rows, y * rowBytes, coverage.getBuffer(), y * maskWidth, maskWidth);
+        }
+        return fromMask(coverage, shapeWidth, shapeHeight);
+    }
+
+    /*--------------------------------------------------------------------------------------------*/
+
+    /**
+     * Squared euclidean distance transform in place, by the lower envelope of parabolas of
+     * Felzenszwalb and Huttenlocher, once along columns and once along rows, linear in pixels.
+     */
+    static void transform(float[] grid, int width, int height) {
+        int length = Math.max(width, height);
+        float[] line = new float[length];
+        float[] result = new float[length];
+        int[] vertices = new int[length];
+        float[] bounds = new float[length + 1];
+
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                line[y] = grid[y * width + x];
+            }
+            transformLine(line, height, result, vertices, bounds);
+            for (int y = 0; y < height; y++) {
+                grid[y * width + x] = result[y];
+            }
+        }
+
+        for (int y = 0; y < height; y++) {
+            System.arraycopy(grid, y * width, line, 0, width);
+            transformLine(line, width, result, vertices, bounds);
+            System.arraycopy(result, 0, grid, y * width, width);
+        }
+    }
+
+    private static void transformLine(float[] f, int n, float[] d, int[] v, float[] z) {
+        int k = 0;
+        v[0] = 0;
+        z[0] = -INFINITY;
+        z[1] = INFINITY;
+
+        for (int q = 1; q < n; q++) {
+            float s = intersect(f, q, v[k]);
+            while (s <= z[k]) {
+                k--;
+                s = intersect(f, q, v[k]);
+            }
+            k++;
+            v[k] = q;
+            z[k] = s;
+            z[k + 1] = INFINITY;
+        }
+
+        k = 0;
+        for (int q = 0; q < n; q++) {
+            while (z[k + 1] < q) {
+                k++;
+            }
+            float dq = q - v[k];
+            d[q] = dq * dq + f[v[k]];
+        }
+    }
+
+    private static float intersect(float[] f, int q, int p) {
+        return ((f[q] + q * q) - (f[p] + p * p)) / (2f * q - 2f * p);
+    }
+
+    /*--------------------------------------------------------------------------------------------*/
+
+    /**
+     * Render the shadow of the shape stretched over the rect into the mask, the mask has been
+     * cleared already.
+     *
+     * @param blurRadius the same meaning as the radius of
+     *                   {@link android.graphics.Paint#setShadowLayer(float, float, float, int)}
+     */
+    public void render(ShadowMask mask, float left, float top, float right, float bottom, float blurRadius) {
+        if (right <= left || bottom <= top) return;
+
+        float scaleX = (right - left) / shapeWidth; // 每个场像素对应的蒙版像素数
+        float scaleY = (bottom - top) / shapeHeight;
+        float distanceScale = (scaleX + scaleY) / 2;
+        float sigma = BoxBlurShadowRenderer.convertRadiusToSigma(blurRadius);
+        float reach = sigma > 0 ? sigma * 4 : 1; // 超过这个距离的外部像素是透明的
+
+        int maskWidth = mask.getWidth();
+        int maskHeight = mask.getHeight();
+        byte[] buffer = mask.getBuffer();
+        for (int y = 0; y < maskHeight; y++) {
+            float fieldY = (y + 0.5f - top) / scaleY + MARGIN;
+            int offset = y * maskWidth;
+
+            for (int x = 0; x < maskWidth; x++) {
+                float fieldX = (x + 0.5f - left) / scaleX + MARGIN;
+                float distance = sampleDistance(fieldX, fieldY) * distanceScale;
+                if (distance >= reach) continue;
+
+                buffer[offset + x] = (byte) (getCoverage(distance, sigma) * 255 + 0.5f);
+            }
+        }
+    }
+
+    /**
+     * Bilinear sample at a point in the field, a point outside is clamped to the field and the
+     * distance to the clamped point is added, which stays an upper bound of the real distance.
+     */
+    float sampleDistance(float x, float y) {
+        float clampedX = Math.max(0.5f, Math.min(width - 0.5f, x));
+        float clampedY = Math.max(0.5f, Math.min(height - 0.5f, y));
+
+        float u = clampedX - 0.5f;
+        float v = clampedY - 0.5f;
+        int x0 = Math.min((int) u, width - 2); // 场至少有两倍MARGIN宽
+        int y0 = Math.min((int) v, height - 2);
+        int x1 = x0 + 1;
+        int y1 = y0 + 1;
+        float fx = u - x0;
+        float fy = v - y0;
+
+        float top = distances[y0 * width + x0] * (1 - fx) + distances[y0 * width + x1] * fx;
+        float bottom = distances[y1 * width + x0] * (1 - fx) + distances[y1 * width + x1] * fx;
+        float distance = top * (1 - fy) + bottom * fy;
+
+        if (clampedX != x || clampedY != y) {
+            float dx = x - clampedX;
+            float dy = y - clampedY;
+            distance += (float) Math.sqrt(dx * dx + dy * dy);
+        }
+        return distance;
+    }
+
+    /**
+     * Coverage of a gaussian blurred half plane at the signed distance from its edge, or of an
+     * anti-aliased edge without blur.
+     */
+    static float getCoverage(float distance, float sigma) {
+        if (sigma <= 0) return Math.max(0, Math.min(1, 0.5f - distance));
+        return erfc(distance / (sigma * SQRT_2)) / 2;
+    }
+
+    /**
+     * Abramowitz and Stegun 7.1.26, the absolute error is below 1.5e-7.
+     */
+    static float erfc(float x) {
+        float z = Math.abs(x);
+        float t = 1 / (1 + 0.3275911f * z);
+        float poly = t * (0.254829592f + t * (-0.284496736f + t * (1.421413741f
+                + t * (-1.453152027f + t * 1.061405429f))));
+        float value = poly * (float) Math.exp(-z * z);
+        return x >= 0 ? value : 2 - value;
+    }
+
+    /*--------------------------------------------------------------------------------------------*/
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Signed distance at the center of a pixel of the field, negative inside.
+     */
+    public float getDistance(int x, int y) {
+        return distances[y * width + x];
+    }
+
+    /**
+     * A name derived from the content of the field, the same shape gets the same name in every
+     * run, so shadows of it can be shared in {@link ShadowBitmapCache} and {@link ShadowDiskCache}.
+     */
+    public synchronized String getCacheId() {
+        if (cacheId == null) {
+            long hash = 0xcbf29ce484222325L; // FNV-1a
+            for (float distance : distances) {
+                hash = (hash ^ Float.floatToIntBits(distance)) * 0x100000001b3L;
+            }
+            hash = (hash ^ Float.floatToIntBits(shapeWidth)) * 0x100000001b3L;
+            hash = (hash ^ Float.floatToIntBits(shapeHeight)) * 0x100000001b3L;
+            cacheId = "sdf-" + width + "x" + height + "-" + Long.toHexString(hash);
+        }
+        return cacheId;
+    }
+}
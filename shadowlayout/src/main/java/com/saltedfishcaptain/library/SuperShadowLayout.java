@@ -17,24 +17,15 @@
 package com.saltedfishcaptain.library;
 
 import android.content.Context;
-import android.content.res.TypedArray;
 import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Color;
-import android.graphics.LinearGradient;
-import android.graphics.Paint;
-import android.graphics.Path;
-import android.graphics.RadialGradient;
-import android.graphics.RectF;
-import android.graphics.Shader;
 import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.Drawable;
 import android.os.Build;
 import android.util.AttributeSet;
 import android.widget.FrameLayout;
 
-import static android.R.attr.bitmap;
-import static android.R.attr.radius;
-
 /**
  * Description:
  * <p>
@@ -44,6 +35,15 @@ import static android.R.attr.radius;
  */
 
 public class SuperShadowLayout extends FrameLayout {
+    private static final Bitmap.Config SHADOW_BITMAP_CONFIG = Bitmap.Config.ALPHA_8;
+    private static final int MASK_COLOR = Color.BLACK; // 渲染成Bitmap时只需要透明度，颜色在绘制时再染上
+    private static final int EVEN_BUCKET_SIZE = 2; // 渲染尺寸总是偶数，中心对称的阴影不会有半像素偏差
+
+    // 属性修改的影响，批量修改时合并起来只处理一次
+    private static final int CHANGE_TINT = 1; // 只需要给蒙版重新着色，直接绘制模式下重建渐变
+    private static final int CHANGE_PADDING = 1 << 1; // 只需要重新计算内容的padding
+    private static final int CHANGE_GEOMETRY = 1 << 2; // 阴影形状变了，需要重新渲染
+
     private int shadowColor; // 阴影颜色
     private float shadowCornerRadius; // 阴影实体边缘的圆角半径
     private float shadowBlurRadius; // 投影半径，对应PS阴影设置中的大小，是阴影渐变区的半径，上下左右都会增加区域，0会导致没有阴影
@@ -55,18 +55,56 @@ public class SuperShadowLayout extends FrameLayout {
     private float shadowPaddingBottom; // 阴影区域下方的缩进
 
     private boolean invalidateShadowOnSizeChanged; // size改变很快但改变得很小，对阴影的精确性要求不高但对性能要求较高时，可以把这个设置为false，并且手动调用invalidateShadow来刷新shadow
+    private boolean ninePatchShadow; // 九宫格模式，只渲染四角和中间1px的边缘，size改变时直接拉伸，不会重新渲染阴影
+    private boolean sharedShadowCache; // 与其他阴影参数完全相同的布局共享同一个阴影Bitmap，适合列表中大量相同的卡片
+    private boolean asyncShadow; // 在后台线程渲染阴影，渲染完成前继续拉伸显示旧的阴影，适合一次加载大量卡片的页面
+    private boolean quadrantShadow; // 只渲染和保存左上角四分之一的阴影，绘制时镜像到其他三个角，内存和渲染量都是四分之一
+    private boolean hollowShadow; // 空心模式，被内容盖住的中间区域既不保存也不绘制，减少内存和过度绘制
+    private int shadowRenderScale = ShadowRenderScale.FULL; // 渲染分辨率的缩小倍数，模糊的阴影缩小渲染后再双线性拉伸回原尺寸，看不出差别
+    private boolean coalesceShadowResize; // 动画中size每帧都在变时，合并重新渲染，中间拉伸旧的阴影，停止变化后再按精确size渲染一次
+    private boolean directDrawShadow; // 不使用Bitmap，每次绘制时直接用渐变画出阴影，可以硬件加速，size改变时不需要重新渲染
     private boolean forceInvalidateShadow = false;
-
-    private Path mCornerShadowPath;
-    private Paint mCornerShadowPaint;
-    private Paint mEdgeShadowPaint;
-    private Paint roundRectPaint;
+    private int shadowEditDepth; // beginShadowEdit的嵌套层数，大于0时修改先累积起来
+    private int pendingShadowChanges; // 批量修改中累积的CHANGE标志
+
+    private ShadowBitmapCache.Key shadowCacheKey; // 当前持有引用的共享缓存key
+    private Bitmap shadowBitmap; // 当前背景使用的阴影Bitmap，开启共享缓存时来自缓存，否则由自己独占，size改变时可以原地复用
+    private final ShadowRenderQueue renderQueue = new ShadowRenderQueue();
+    private final ShadowResizeScheduler resizeScheduler = new ShadowResizeScheduler(
+            new ShadowResizeScheduler.Callback() {
+                @Override
+                public void onRenderSize(int width, int height) {
+                    setBackgroundCompat(width, height, ShadowStats.TRIGGER_RESIZE);
+                }
+            });
+
+    private final Object renderLock = new Object(); // 渲染用的Drawable是共用的，异步渲染时需要串行
+    private ShadowDrawable shadowDrawable; // 阴影的几何形状和渐变，直接绘制模式下作为背景，否则用黑色来渲染Bitmap的透明度
+    private final Canvas renderCanvas = new Canvas(); // 渲染Bitmap时复用
+    private final HollowShadowDrawable.RingRenderer ringRenderer = new HollowShadowDrawable.RingRenderer();
+    private int ringRenderScale = ShadowRenderScale.FULL; // 分段渲染环形Bitmap时当前的缩小倍数
+    private final int[] reusedRing = new int[4]; // size改变时先在这里计算环形的厚度，复用Bitmap重新渲染时不用分配
+    private final HollowShadowDrawable.Painter ringPainter = new HollowShadowDrawable.Painter() {
+        @Override
+        public void draw(Canvas canvas) {
+            canvas.scale(1f / ringRenderScale, 1f / ringRenderScale);
+            shadowDrawable.draw(canvas);
+        }
+    };
 
     public SuperShadowLayout(Context context) {
         super(context);
         initView(context, null);
     }
 
+    /**
+     * Create a layout in code with a spec, e.g. built by {@link ShadowSpec.Builder}.
+     */
+    public SuperShadowLayout(Context context, ShadowSpec spec) {
+        super(context);
+        applyShadowSpec(spec);
+    }
+
     public SuperShadowLayout(Context context, AttributeSet attrs) {
         super(context, attrs);
         initView(context, attrs);
@@ -78,55 +116,50 @@ public class SuperShadowLayout extends FrameLayout {
     }
 
     private void initView(Context context, AttributeSet attrs) {
-        initAttributes(context, attrs);
-
-        int paddingLeft = (int) (shadowBlurRadius - shadowOffsetX - shadowPaddingLeft);
-        int paddingRight = (int) (shadowBlurRadius + shadowOffsetX - shadowPaddingRight);
-
-        int paddingTop = (int) (shadowBlurRadius - shadowOffsetY - shadowPaddingTop);
-        int paddingBottom = (int) (shadowBlurRadius + shadowOffsetY - shadowPaddingBottom);
-
-        setPadding(paddingLeft, paddingTop, paddingRight, paddingBottom);
-
-        initPaint();
+        applyShadowSpec(ShadowSpec.obtain(context, attrs));
     }
 
-    private void initAttributes(Context context, AttributeSet attrs) {
-        if (attrs == null) return;
-
-        TypedArray attr = context.obtainStyledAttributes(attrs, R.styleable.ShadowLayout, 0, 0);
-
-        shadowCornerRadius = attr.getDimension(R.styleable.ShadowLayout_shadow_corner_radius,
-                getResources().getDimension(R.dimen.shadow_layout_default_corner_radius));
-        shadowBlurRadius = attr.getDimension(R.styleable.ShadowLayout_shadow_blur_radius,
-                getResources().getDimension(R.dimen.shadow_layout_default_shadow_radius));
-        shadowColor = attr.getColor(R.styleable.ShadowLayout_shadow_color,
-                getResources().getColor(R.color.shadow_layout_default_shadow_color));
-        shadowOffsetX = attr.getDimension(R.styleable.ShadowLayout_shadow_offset_x, 0);
-        shadowOffsetY = attr.getDimension(R.styleable.ShadowLayout_shadow_offset_y, 0);
-        shadowPaddingLeft = attr.getDimension(R.styleable.ShadowLayout_shadow_padding_left, 0);
-        shadowPaddingRight = attr.getDimension(R.styleable.ShadowLayout_shadow_padding_right, 0);
-        shadowPaddingTop = attr.getDimension(R.styleable.ShadowLayout_shadow_padding_top, 0);
-        shadowPaddingBottom = attr.getDimension(R.styleable.ShadowLayout_shadow_padding_bottom, 0);
-        invalidateShadowOnSizeChanged = attr.getBoolean(R.styleable.ShadowLayout_invalidate_shadow_on_size_changed, true);
+    /**
+     * Layouts inflated with the same style share the spec, so attributes are only resolved and
+     * padding only computed once. Layers of the spec are not supported here.
+     */
+    private void applyShadowSpec(ShadowSpec spec) {
+        shadowCornerRadius = spec.getCornerRadius();
+        shadowBlurRadius = spec.getBlurRadius();
+        shadowColor = spec.getColor();
+        shadowOffsetX = spec.getOffsetX();
+        shadowOffsetY = spec.getOffsetY();
+        shadowPaddingLeft = spec.getPaddingLeft();
+        shadowPaddingRight = spec.getPaddingRight();
+        shadowPaddingTop = spec.getPaddingTop();
+        shadowPaddingBottom = spec.getPaddingBottom();
+        invalidateShadowOnSizeChanged = spec.isInvalidateOnSizeChanged();
+        ninePatchShadow = spec.isNinePatch();
+        sharedShadowCache = spec.isSharedCache();
+        asyncShadow = spec.isAsync();
+        quadrantShadow = spec.isQuadrant();
+        hollowShadow = spec.isHollow();
+        shadowRenderScale = spec.getRenderScale();
+        coalesceShadowResize = spec.isResizeCoalesced();
+        resizeScheduler.setIntervalMillis(spec.getResizeIntervalMillis());
+        resizeScheduler.setBucketSize(spec.getResizeBucketSize());
+        directDrawShadow = spec.isDirectDraw();
+
+        if (spec.getLayersInternal() == null) {
+            setPadding(spec.getContentPaddingLeft(), spec.getContentPaddingTop(),
+                    spec.getContentPaddingRight(), spec.getContentPaddingBottom());
+        } else {
+            updateShadowPadding();
+        }
 
-        attr.recycle();
+        shadowDrawable = new ShadowDrawable(shadowCornerRadius, shadowBlurRadius,
+                directDrawShadow ? shadowColor : MASK_COLOR);
     }
 
-    private void initPaint() {
-        roundRectPaint = new Paint();
-        mCornerShadowPaint = new Paint();
-        mEdgeShadowPaint = new Paint();
-
-        roundRectPaint = new Paint(Paint.ANTI_ALIAS_FLAG | Paint.DITHER_FLAG);
-        roundRectPaint.setColor(shadowColor);
-//        roundRectPaint.setStrokeWidth(5);
-
-        mCornerShadowPaint = new Paint(Paint.ANTI_ALIAS_FLAG | Paint.DITHER_FLAG);
-        mCornerShadowPaint.setStyle(Paint.Style.FILL);
-
-        mEdgeShadowPaint = new Paint(mCornerShadowPaint);
-        mEdgeShadowPaint.setAntiAlias(false);
+    private void updateShadowPadding() {
+        int[] padding = ShadowSpec.computeContentPadding(shadowBlurRadius, shadowOffsetX, shadowOffsetY,
+                shadowPaddingLeft, shadowPaddingTop, shadowPaddingRight, shadowPaddingBottom, null);
+        setPadding(padding[0], padding[1], padding[2], padding[3]);
     }
 
     /*--------------------------------------------------------------------------------------------*/
@@ -134,9 +167,19 @@ public class SuperShadowLayout extends FrameLayout {
     @Override
     protected void onSizeChanged(int w, int h, int oldw, int oldh) {
         super.onSizeChanged(w, h, oldw, oldh);
-        if (w > 0 && h > 0 && (getBackground() == null || invalidateShadowOnSizeChanged || forceInvalidateShadow)) {
+        if (w <= 0 || h <= 0) return;
+
+        if (getBackground() == null || forceInvalidateShadow) {
+            int trigger = forceInvalidateShadow ? ShadowStats.TRIGGER_INVALIDATE : ShadowStats.TRIGGER_SIZE_CHANGED;
             forceInvalidateShadow = false;
-            setBackgroundCompat(w, h);
+            resizeScheduler.cancel();
+            setBackgroundCompat(w, h, trigger);
+        } else if (invalidateShadowOnSizeChanged && !ninePatchShadow && !directDrawShadow) {
+            if (coalesceShadowResize) {
+                resizeScheduler.requestSize(w, h);
+            } else {
+                setBackgroundCompat(w, h, ShadowStats.TRIGGER_SIZE_CHANGED);
+            }
         }
     }
 
@@ -145,13 +188,55 @@ public class SuperShadowLayout extends FrameLayout {
         super.onLayout(changed, left, top, right, bottom);
         if (forceInvalidateShadow) {
             forceInvalidateShadow = false;
-            setBackgroundCompat(right - left, bottom - top);
+            resizeScheduler.cancel();
+            setBackgroundCompat(right - left, bottom - top, ShadowStats.TRIGGER_INVALIDATE);
+        }
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        if (getBackground() == null && getWidth() > 0 && getHeight() > 0) {
+            setBackgroundCompat(getWidth(), getHeight(), ShadowStats.TRIGGER_ATTACH);
+        }
+    }
+
+    /**
+     * Shadow bitmaps are handed back on detach, shared ones to {@link ShadowBitmapCache} so they
+     * can be evicted while this view is not shown, and owned ones to {@link ShadowBitmapPool}.
+     * They will be acquired or rendered again on attach, and async rendering or resizing in
+     * flight is dropped together with the placeholder waiting for it.
+     */
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        renderQueue.cancel();
+        resizeScheduler.cancel();
+        if (shadowBitmap != null || isShadowPlaceholder(getBackground())) {
+            releaseShadowBitmap();
+            setBackgroundDrawableCompat(null);
         }
     }
 
     /*-------------------------------------------------*/
 
-    private void setBackgroundCompat(int w, int h) {
+    /**
+     * @param trigger what caused this render, one of the TRIGGER constants of {@link ShadowStats}.
+     */
+    private void setBackgroundCompat(int w, int h, int trigger) {
+        // ShadowDrawable draws by its bounds without any bitmap, it can be previewed in xml too
+        if (directDrawShadow) {
+            renderQueue.cancel();
+            releaseShadowBitmap();
+            if (hollowShadow) {
+                shadowDrawable.setHoleInsets(getHoleInset(getPaddingLeft()), getHoleInset(getPaddingTop()),
+                        getHoleInset(getPaddingRight()), getHoleInset(getPaddingBottom()));
+            }
+            if (getBackground() != shadowDrawable) {
+                setBackgroundDrawableCompat(shadowDrawable);
+            }
+            return;
+        }
 
         /**
          * Cause {@link Paint#setShadowLayer(float, float, float, int)} can not be previewed in xml
@@ -161,11 +246,69 @@ public class SuperShadowLayout extends FrameLayout {
             return;
         }
 
-        w= toSmallEvenNum(w);
-        h= toSmallEvenNum(h);
+        int scale = ShadowRenderScale.FULL;
+        int[] ring = null;
+        if (ninePatchShadow) {
+            w = h = getNinePatchCornerSize() * 2 + 2;
+        } else {
+            scale = ShadowRenderScale.resolve(shadowRenderScale, shadowBlurRadius);
+            w = ShadowResizeScheduler.toBucketSize(ShadowRenderScale.scaleSize(w, scale), EVEN_BUCKET_SIZE);
+            h = ShadowResizeScheduler.toBucketSize(ShadowRenderScale.scaleSize(h, scale), EVEN_BUCKET_SIZE);
+            ring = getHollowRing(w, h, scale, reusedRing);
+
+            if (!asyncShadow && reuseShadowBitmap(w, h, scale, ring, trigger)) return;
+            if (ring != null) ring = ring.clone(); // 缓存key、异步渲染和新的背景会持有它
+        }
+
+        ShadowBitmapCache.Key key = sharedShadowCache ? createCacheKey(w, h, scale, ring) : null;
+        Bitmap bitmap = key != null ? ShadowBitmapCache.getInstance().acquire(key) : null;
+        ShadowBitmapCache.Key diskKey = bitmap == null ? getDiskCacheKey(key, w, h, scale, ring) : null;
+        if (bitmap != null) {
+            renderQueue.cancel();
+            setShadowBitmap(bitmap, key, w, h, ring);
+        } else if (asyncShadow) {
+            showShadowPlaceholder();
+            renderShadowAsync(w, h, scale, ring, key, diskKey, trigger);
+        } else {
+            bitmap = createShadowBitmap(isQuadrantShadow(), w, h, scale, ring, diskKey, trigger);
+            setShadowBitmap(key != null ? ShadowBitmapCache.getInstance().put(key, bitmap) : bitmap, key, w, h, ring);
+        }
+    }
+
+    /**
+     * Render the shadow of the size into {@link ShadowBitmapCache} without taking it, so a layout
+     * of the same spec looks it up when laid out at the size. Called by {@link ShadowPrewarmer},
+     * maybe on a background thread.
+     *
+     * @return true if the shadow is rendered, false if it is drawn directly, not shared or has
+     * been cached.
+     */
+    boolean prewarmShadow(int w, int h) {
+        if (directDrawShadow || !sharedShadowCache || w <= 0 || h <= 0) return false;
+
+        int scale = ShadowRenderScale.FULL;
+        int[] ring = null;
+        if (ninePatchShadow) {
+            w = h = getNinePatchCornerSize() * 2 + 2;
+        } else {
+            scale = ShadowRenderScale.resolve(shadowRenderScale, shadowBlurRadius);
+            w = ShadowResizeScheduler.toBucketSize(ShadowRenderScale.scaleSize(w, scale), EVEN_BUCKET_SIZE);
+            h = ShadowResizeScheduler.toBucketSize(ShadowRenderScale.scaleSize(h, scale), EVEN_BUCKET_SIZE);
+            ring = getHollowRing(w, h, scale, new int[4]);
+        }
+
+        ShadowBitmapCache cache = ShadowBitmapCache.getInstance();
+        ShadowBitmapCache.Key key = createCacheKey(w, h, scale, ring);
+        if (cache.contains(key)) return false;
+
+        Bitmap bitmap = createShadowBitmap(isQuadrantShadow(), w, h, scale, ring, getDiskCacheKey(key, w, h, scale, ring),
+                ShadowStats.TRIGGER_PREWARM);
+        cache.put(key, bitmap);
+        cache.release(key);
+        return true;
+    }
 
-        Bitmap bitmap = createShadowBitmap(w, h);
-        BitmapDrawable drawable = new BitmapDrawable(getResources(), bitmap);
+    private void setBackgroundDrawableCompat(Drawable drawable) {
         if (Build.VERSION.SDK_INT <= Build.VERSION_CODES.JELLY_BEAN) {
             setBackgroundDrawable(drawable);
         } else {
@@ -173,151 +316,266 @@ public class SuperShadowLayout extends FrameLayout {
         }
     }
 
-    private int toSmallEvenNum(int num) {
-        if (num % 2 != 0) {
-            return num - 1;
+    /**
+     * Draw the new size into the current bitmap in place and keep the current drawable, if the
+     * bitmap is owned by this layout and its allocation is large enough for the new size.
+     */
+    private boolean reuseShadowBitmap(int w, int h, int scale, int[] ring, int trigger) {
+        if (shadowBitmap == null || shadowCacheKey != null || sharedShadowCache) return false;
+
+        Drawable background = getBackground();
+        if (getShadowDrawableBitmap(background) != shadowBitmap) return false;
+
+        boolean quadrant = isQuadrantShadow();
+        if ((background instanceof QuadrantShadowDrawable) != quadrant) return false;
+        if ((background instanceof HollowShadowDrawable) != (ring != null)) return false;
+
+        int bitmapWidth = w;
+        int bitmapHeight = h;
+        if (ring != null) {
+            bitmapWidth = HollowShadowDrawable.getRingWidth(w, h, ring);
+            bitmapHeight = HollowShadowDrawable.getRingHeight(ring);
+        } else if (quadrant) {
+            bitmapWidth = QuadrantShadowDrawable.getQuadrantSize(w);
+            bitmapHeight = QuadrantShadowDrawable.getQuadrantSize(h);
         }
-        return num;
+        if (!ShadowBitmapPool.reconfigure(shadowBitmap, bitmapWidth, bitmapHeight, SHADOW_BITMAP_CONFIG)) {
+            return false;
+        }
+
+        long start = ShadowStats.getInstance().startRender();
+        drawShadowBitmap(shadowBitmap, w, h, scale, ring);
+        ShadowStats.getInstance().onShadowRendered(trigger, start, w, h);
+        if (ring != null) {
+            ((HollowShadowDrawable) background).setFullSize(w, h, ring);
+        } else if (quadrant) {
+            ((QuadrantShadowDrawable) background).setFullSize(w, h);
+        }
+        background.invalidateSelf();
+        return true;
     }
 
-    private Bitmap createShadowBitmap(int shadowWidth, int shadowHeight) {
+    /**
+     * Before the first async shadow arrives, the shadow is drawn directly by a
+     * {@link ShadowDrawable} of the shadow color, which renders nothing. The drawable used for
+     * rendering is not shown, it is drawn by the render in flight.
+     */
+    private void showShadowPlaceholder() {
+        Drawable background = getBackground();
+        if (isShadowPlaceholder(background)) {
+            ((ShadowDrawable) background).setShadow(shadowCornerRadius, shadowBlurRadius, shadowColor);
+        } else if (background == null) {
+            setBackgroundDrawableCompat(new ShadowDrawable(shadowCornerRadius, shadowBlurRadius, shadowColor));
+        }
+    }
 
-        Bitmap output = Bitmap.createBitmap(shadowWidth, shadowHeight, Bitmap.Config.ARGB_8888);
-        Canvas canvas = new Canvas(output);
+    private boolean isShadowPlaceholder(Drawable drawable) {
+        return drawable instanceof ShadowDrawable && drawable != shadowDrawable;
+    }
 
-        RectF innerShadowRect = new RectF(
-                shadowBlurRadius,
-                shadowBlurRadius,
-                shadowWidth - shadowBlurRadius,
-                shadowHeight - shadowBlurRadius);
+    /**
+     * Render the shadow on {@link ShadowRenderQueue}, the current background stays as a
+     * placeholder and is stretched to the new size until the new shadow arrives. The geometry is
+     * read from the drawable under the render lock, the mode is captured here.
+     */
+    private void renderShadowAsync(final int w, final int h, final int scale, final int[] ring,
+                                   final ShadowBitmapCache.Key key, final ShadowBitmapCache.Key diskKey,
+                                   final int trigger) {
+        final boolean quadrant = isQuadrantShadow();
+        renderQueue.submit(new ShadowRenderQueue.Renderer() {
+            @Override
+            public Bitmap render() {
+                return createShadowBitmap(quadrant, w, h, scale, ring, diskKey, trigger);
+            }
+        }, new ShadowRenderQueue.Callback() {
+            @Override
+            public void onRendered(Bitmap bitmap) {
+                setShadowBitmap(key != null ? ShadowBitmapCache.getInstance().put(key, bitmap) : bitmap, key, w, h, ring);
+            }
+        });
+    }
+
+    /**
+     * Take the bitmap as background. The old bitmap is released after the new one is held, so
+     * re-rendering with the same key never evicts the cache entry in between.
+     *
+     * @param w    the full width the bitmap is rendered for, larger than a quadrant bitmap.
+     * @param ring thicknesses of the bands if the bitmap is the ring of a hollow shadow.
+     */
+    private void setShadowBitmap(Bitmap bitmap, ShadowBitmapCache.Key key, int w, int h, int[] ring) {
+        releaseShadowBitmap();
+        shadowBitmap = bitmap;
+        shadowCacheKey = key;
+
+        Drawable drawable;
+        if (ninePatchShadow) {
+            NinePatchShadowDrawable ninePatch = new NinePatchShadowDrawable(bitmap, getNinePatchCornerSize());
+            if (hollowShadow) {
+                ninePatch.setHoleInsets(getHoleInset(getPaddingLeft()), getHoleInset(getPaddingTop()),
+                        getHoleInset(getPaddingRight()), getHoleInset(getPaddingBottom()));
+            }
+            drawable = ninePatch;
+        } else if (ring != null) {
+            drawable = new HollowShadowDrawable(bitmap, w, h, ring);
+        } else if (isQuadrantShadow()) {
+            drawable = new QuadrantShadowDrawable(bitmap, w, h);
+        } else {
+            drawable = new BitmapDrawable(getResources(), bitmap);
+        }
+        tintShadowDrawable(drawable);
+        setBackgroundDrawableCompat(drawable);
+    }
 
-        buildShadowCorners();
+    /**
+     * Shadow bitmaps are {@link Bitmap.Config#ALPHA_8} masks, which are drawn with the color of
+     * the paint, so a new color only needs the drawable to be tinted again.
+     */
+    private void tintShadowDrawable(Drawable drawable) {
+        if (drawable instanceof NinePatchShadowDrawable) {
+            ((NinePatchShadowDrawable) drawable).setColor(shadowColor);
+        } else if (drawable instanceof QuadrantShadowDrawable) {
+            ((QuadrantShadowDrawable) drawable).setColor(shadowColor);
+        } else if (drawable instanceof HollowShadowDrawable) {
+            ((HollowShadowDrawable) drawable).setColor(shadowColor);
+        } else if (drawable instanceof BitmapDrawable) {
+            ((BitmapDrawable) drawable).getPaint().setColor(shadowColor);
+            drawable.invalidateSelf();
+        } else if (isShadowPlaceholder(drawable)) {
+            ((ShadowDrawable) drawable).setShadow(shadowCornerRadius, shadowBlurRadius, shadowColor);
+        }
+    }
 
+    private ShadowBitmapCache.Key createCacheKey(int w, int h, int scale, int[] ring) {
+        return ShadowLayout.newMaskKey(SuperShadowLayout.class, MASK_COLOR, w, h)
+                .setShadow(shadowCornerRadius, shadowBlurRadius)
+                .setOffset(shadowOffsetX, shadowOffsetY)
+                .setRenderScale(scale)
+                .setQuadrant(isQuadrantShadow())
+                .setRing(ring)
+                .build();
+    }
 
-        canvas.translate(shadowWidth / 2, shadowHeight / 2); // ?
-//        canvas.translate(shadowWidth/2+shadowBlurRadius,shadowHeight/2+shadowBlurRadius); // ?
+    /**
+     * Only the first shadow of a layout is looked up on disk, which is what a cold start renders,
+     * sizes in the middle of a resize are not worth the disk.
+     *
+     * @return the key to load or store the shadow in {@link ShadowDiskCache}, or null.
+     */
+    private ShadowBitmapCache.Key getDiskCacheKey(ShadowBitmapCache.Key key, int w, int h, int scale, int[] ring) {
+        if (shadowBitmap != null || ShadowDiskCache.getInstance() == null) return null;
+        return key != null ? key : createCacheKey(w, h, scale, ring);
+    }
 
-        drawShadow(canvas, innerShadowRect);
+    private static Bitmap getShadowDrawableBitmap(Drawable drawable) {
+        if (drawable instanceof BitmapDrawable) return ((BitmapDrawable) drawable).getBitmap();
+        if (drawable instanceof QuadrantShadowDrawable) return ((QuadrantShadowDrawable) drawable).getBitmap();
+        if (drawable instanceof HollowShadowDrawable) return ((HollowShadowDrawable) drawable).getBitmap();
+        return null;
+    }
 
-        canvas.translate(-shadowWidth / 2, -shadowHeight / 2);
+    /**
+     * The hole is the content inset by the corner radius, which the rounded corners of the
+     * content never leave, so the shadow in it is always covered.
+     *
+     * @param ring receives the thicknesses.
+     * @return thicknesses of the left, top, right and bottom bands in pixels of the bitmap, or null
+     * if the shadow is not hollow or too small to have a hole.
+     */
+    private int[] getHollowRing(int w, int h, int scale, int[] ring) {
+        if (!hollowShadow) return null;
+
+        ring[0] = divideCeil(getHoleInset(getPaddingLeft()), scale);
+        ring[1] = divideCeil(getHoleInset(getPaddingTop()), scale);
+        ring[2] = divideCeil(getHoleInset(getPaddingRight()), scale);
+        ring[3] = divideCeil(getHoleInset(getPaddingBottom()), scale);
+        return HollowShadowDrawable.hasHole(w, h, ring) ? ring : null;
+    }
 
-        canvas.drawRoundRect(innerShadowRect, shadowCornerRadius, shadowCornerRadius, roundRectPaint);
+    private int getHoleInset(int padding) {
+        return Math.max(0, (int) Math.ceil(padding + shadowCornerRadius));
+    }
 
-        return output;
+    private static int divideCeil(int value, int divisor) {
+        return (value + divisor - 1) / divisor;
     }
 
-    /*--------------------------------------------------------------------------------------------*/
+    /**
+     * A nine patch tile is small already, so it is never split into quadrants.
+     */
+    private boolean isQuadrantShadow() {
+        return quadrantShadow && !ninePatchShadow && !hollowShadow;
+    }
 
-    private void buildShadowCorners() {
-        mCornerShadowPath = new Path();
-
-        RectF innerBounds = new RectF(-shadowCornerRadius, -shadowCornerRadius, shadowCornerRadius, shadowCornerRadius);
-        RectF outerBounds = new RectF(innerBounds);
-        outerBounds.inset(-shadowBlurRadius, -shadowBlurRadius);
-
-        mCornerShadowPath.setFillType(Path.FillType.EVEN_ODD);
-
-        mCornerShadowPath.moveTo(-shadowCornerRadius, 0);
-        mCornerShadowPath.rLineTo(-shadowBlurRadius, 0);
-        mCornerShadowPath.arcTo(outerBounds, 180f, 90f, false); // outer arc
-        mCornerShadowPath.arcTo(innerBounds, 270f, -90f, false); // inner arc
-        mCornerShadowPath.close();
-
-        int mShadowEndColor = transparentColor(shadowColor);
-        float startRatio = shadowCornerRadius / (shadowCornerRadius + shadowBlurRadius);
-        mCornerShadowPaint.setShader(new RadialGradient(0, 0, shadowCornerRadius + shadowBlurRadius,
-                new int[]{shadowColor, shadowColor, mShadowEndColor},
-                new float[]{0f, startRatio, 1f}, Shader.TileMode.CLAMP));
-
-
-        mEdgeShadowPaint.setShader(new LinearGradient(0, -shadowCornerRadius + shadowBlurRadius, 0,
-                -shadowCornerRadius - shadowBlurRadius,
-                new int[]{shadowColor, shadowColor, mShadowEndColor},
-                new float[]{0f, .5f, 1f}, Shader.TileMode.CLAMP));
-        mEdgeShadowPaint.setAntiAlias(false);
-    }
-
-    private int transparentColor(int color) {
-        int red = Color.red(color);
-        int green = Color.green(color);
-        int blue = Color.blue(color);
-        return Color.argb(0, red, green, blue);
-    }
-
-    private void drawShadow(Canvas canvas, RectF innerShadowRect) {
-        float horizontalEdgesLength = innerShadowRect.width() - 2 * shadowCornerRadius;
-        float verticalEdgesLength = innerShadowRect.height() - 2 * shadowCornerRadius;
-
-        final boolean drawHorizontalEdges = horizontalEdgesLength > 0;
-        final boolean drawVerticalEdges = verticalEdgesLength > 0;
-
-//        float horizontalHalfEdgesLength = (int) (horizontalEdgesLength / 2 + .5f);
-//        float verticalHalfEdgesLength = (int) (verticalEdgesLength / 2 + .5f);
-//
-//        // LT
-//        int saved = canvas.save();
-//        canvas.translate(-horizontalHalfEdgesLength, -verticalHalfEdgesLength);
-//        drawCornerAndRightEdgeShadow(canvas, horizontalHalfEdgesLength * 2, drawHorizontalEdges);
-//        canvas.restoreToCount(saved);
-//
-//        // RB
-//        saved = canvas.save();
-//        canvas.translate(horizontalHalfEdgesLength, verticalHalfEdgesLength);
-//        canvas.rotate(180f);
-//        drawCornerAndRightEdgeShadow(canvas, horizontalHalfEdgesLength * 2, drawHorizontalEdges);
-//        canvas.restoreToCount(saved);
-//
-//        // LB
-//        saved = canvas.save();
-//        canvas.translate(-horizontalHalfEdgesLength, verticalHalfEdgesLength);
-//        canvas.rotate(270f);
-//        drawCornerAndRightEdgeShadow(canvas, verticalHalfEdgesLength * 2, drawVerticalEdges);
-//        canvas.restoreToCount(saved);
-//
-//        // RT
-//        saved = canvas.save();
-//        canvas.translate(horizontalHalfEdgesLength, -verticalHalfEdgesLength);
-//        canvas.rotate(90f);
-//        drawCornerAndRightEdgeShadow(canvas, verticalHalfEdgesLength * 2, drawVerticalEdges);
-//        canvas.restoreToCount(saved);
-
-        float horizontalHalfEdgesLength = horizontalEdgesLength/2;
-        float verticalHalfEdgesLength = verticalEdgesLength/2;
-
-        // LT
-        int saved = canvas.save();
-        canvas.translate(-horizontalHalfEdgesLength, -verticalHalfEdgesLength);
-        drawCornerAndRightEdgeShadow(canvas, horizontalEdgesLength, drawHorizontalEdges);
-        canvas.restoreToCount(saved);
-
-        // RB
-        saved = canvas.save();
-        canvas.translate(horizontalHalfEdgesLength, verticalHalfEdgesLength);
-        canvas.rotate(180f);
-        drawCornerAndRightEdgeShadow(canvas, horizontalEdgesLength, drawHorizontalEdges);
-        canvas.restoreToCount(saved);
-
-        // LB
-        saved = canvas.save();
-        canvas.translate(-horizontalHalfEdgesLength, verticalHalfEdgesLength);
-        canvas.rotate(270f);
-        drawCornerAndRightEdgeShadow(canvas, verticalEdgesLength, drawVerticalEdges);
-        canvas.restoreToCount(saved);
-
-        // RT
-        saved = canvas.save();
-        canvas.translate(horizontalHalfEdgesLength, -verticalHalfEdgesLength);
-        canvas.rotate(90f);
-        drawCornerAndRightEdgeShadow(canvas, verticalEdgesLength, drawVerticalEdges);
-        canvas.restoreToCount(saved);
-    }
-
-    private void drawCornerAndRightEdgeShadow(Canvas canvas, float edgesLength, boolean isDrawEdge) {
-        final float edgeShadowTop = -shadowCornerRadius - shadowBlurRadius;
-
-        canvas.drawPath(mCornerShadowPath, mCornerShadowPaint);
-        if (isDrawEdge) {
-            canvas.drawRect(0, edgeShadowTop, edgesLength, -shadowCornerRadius, mEdgeShadowPaint);
+    private void releaseShadowBitmap() {
+        if (shadowCacheKey != null) {
+            ShadowBitmapCache.getInstance().release(shadowCacheKey);
+            shadowCacheKey = null;
+        } else if (shadowBitmap != null) {
+            ShadowBitmapPool.getInstance().put(shadowBitmap);
+        }
+        shadowBitmap = null;
+    }
+
+    /**
+     * The corner shadow and the inner round rect corner are both inside blur radius plus corner
+     * radius from the edge, the tile keeps an even size to match {@link #EVEN_BUCKET_SIZE}.
+     */
+    private int getNinePatchCornerSize() {
+        return (int) Math.ceil(shadowBlurRadius + shadowCornerRadius);
+    }
+
+    /**
+     * @param quadrant true to render only the top left quadrant.
+     * @param ring     thicknesses of the bands of a hollow shadow, or null for a full bitmap.
+     * @param diskKey  the key to load the bitmap from {@link ShadowDiskCache} instead of
+     *                 rendering it, or null.
+     */
+    private Bitmap createShadowBitmap(boolean quadrant, int shadowWidth, int shadowHeight, int scale,
+                                      int[] ring, ShadowBitmapCache.Key diskKey, int trigger) {
+        long start = ShadowStats.getInstance().startRender();
+
+        int bitmapWidth = shadowWidth;
+        int bitmapHeight = shadowHeight;
+        if (ring != null) {
+            bitmapWidth = HollowShadowDrawable.getRingWidth(shadowWidth, shadowHeight, ring);
+            bitmapHeight = HollowShadowDrawable.getRingHeight(ring);
+        } else if (quadrant) {
+            bitmapWidth = QuadrantShadowDrawable.getQuadrantSize(shadowWidth);
+            bitmapHeight = QuadrantShadowDrawable.getQuadrantSize(shadowHeight);
+        }
+
+        Bitmap output = ShadowBitmapPool.getInstance().get(bitmapWidth, bitmapHeight, SHADOW_BITMAP_CONFIG);
+        ShadowDiskCache diskCache = diskKey != null ? ShadowDiskCache.getInstance() : null;
+        if (diskCache != null && diskCache.get(diskKey, output)) return output;
+
+        drawShadowBitmap(output, shadowWidth, shadowHeight, scale, ring);
+        ShadowStats.getInstance().onShadowRendered(trigger, start, shadowWidth, shadowHeight);
+        if (diskCache != null) diskCache.put(diskKey, output);
+        return output;
+    }
+
+    /**
+     * The canvas is reused and the drawable only updates transforms of corners for a new size, so
+     * the layout allocates nothing of its own here, what the platform canvas allocates to draw
+     * paths and gradients into the bitmap is not measured.
+     * A downsampled bitmap is drawn through a scaled canvas, the drawable keeps its full size, and a
+     * quadrant bitmap clips everything but the top left quadrant of the drawable. A ring is drawn
+     * band by band, each band clipped and transformed to where it is in the full shadow.
+     */
+    private void drawShadowBitmap(Bitmap output, int shadowWidth, int shadowHeight, int scale, int[] ring) {
+        synchronized (renderLock) {
+            renderCanvas.setBitmap(output);
+            shadowDrawable.setBounds(0, 0, shadowWidth * scale, shadowHeight * scale);
+            if (ring != null) {
+                ringRenderScale = scale;
+                ringRenderer.draw(renderCanvas, shadowWidth, shadowHeight, ring, ringPainter);
+            } else {
+                int saved = renderCanvas.save();
+                renderCanvas.scale(1f / scale, 1f / scale);
+                shadowDrawable.draw(renderCanvas);
+                renderCanvas.restoreToCount(saved);
+            }
+            renderCanvas.setBitmap(null);
         }
     }
 
@@ -335,6 +593,287 @@ public class SuperShadowLayout extends FrameLayout {
 
     /*--------------------------------------------------------------------------------------------*/
 
+    /**
+     * Render the shadow at a reduced resolution and stretch it back with bilinear filtering, not
+     * used by nine patch mode or direct draw mode.
+     *
+     * @param renderScale one of {@link ShadowRenderScale#FULL}, {@link ShadowRenderScale#HALF},
+     *                    {@link ShadowRenderScale#QUARTER}, or {@link ShadowRenderScale#AUTO} to
+     *                    pick one from blur radius.
+     */
+    public void setShadowRenderScale(int renderScale) {
+        if (!ShadowRenderScale.isValid(renderScale)) {
+            throw new IllegalArgumentException("Invalid render scale: " + renderScale);
+        }
+        if (shadowRenderScale == renderScale) return;
+
+        shadowRenderScale = renderScale;
+        onShadowChanged(CHANGE_GEOMETRY);
+    }
+
+    public int getShadowRenderScale() {
+        return shadowRenderScale;
+    }
+
+    /**
+     * Coalesce re-rendering on size changes by {@link #getShadowResizeScheduler()}, useful when the
+     * layout is animated, only works while invalidate on size changed is on.
+     */
+    public void setShadowResizeCoalesced(boolean coalesced) {
+        if (coalesceShadowResize == coalesced) return;
+
+        coalesceShadowResize = coalesced;
+        if (!coalesced && resizeScheduler.isPending()) {
+            resizeScheduler.cancel();
+            invalidateShadow();
+        }
+    }
+
+    public boolean isShadowResizeCoalesced() {
+        return coalesceShadowResize;
+    }
+
+    /**
+     * Configure interval, bucket size and settle time of coalesced resizing.
+     */
+    public ShadowResizeScheduler getShadowResizeScheduler() {
+        return resizeScheduler;
+    }
+
+    /**
+     * Change the shadow color without rendering again, the mask is only tinted with the new color,
+     * and in direct draw mode only gradients are rebuilt.
+     */
+    public void setShadowColor(int color) {
+        if (shadowColor == color) return;
+
+        shadowColor = color;
+        onShadowChanged(CHANGE_TINT);
+    }
+
+    public int getShadowColor() {
+        return shadowColor;
+    }
+
+    /**
+     * Render the shadow again with the new corner radius, in direct draw mode only the path and
+     * gradients are rebuilt.
+     */
+    public void setShadowCornerRadius(float cornerRadius) {
+        if (shadowCornerRadius == cornerRadius) return;
+
+        shadowCornerRadius = cornerRadius;
+        onShadowChanged(CHANGE_GEOMETRY);
+    }
+
+    public float getShadowCornerRadius() {
+        return shadowCornerRadius;
+    }
+
+    /**
+     * Render the shadow again with the new blur radius, the padding grows or shrinks with it.
+     */
+    public void setShadowBlurRadius(float blurRadius) {
+        if (shadowBlurRadius == blurRadius) return;
+
+        shadowBlurRadius = blurRadius;
+        onShadowChanged(CHANGE_PADDING | CHANGE_GEOMETRY);
+    }
+
+    public float getShadowBlurRadius() {
+        return shadowBlurRadius;
+    }
+
+    /**
+     * The shadow fills the layout and the offset only moves the content, so only the padding is
+     * updated, unless a hollow shadow has to move its hole.
+     */
+    public void setShadowOffset(float offsetX, float offsetY) {
+        if (shadowOffsetX == offsetX && shadowOffsetY == offsetY) return;
+
+        shadowOffsetX = offsetX;
+        shadowOffsetY = offsetY;
+        onShadowChanged(CHANGE_PADDING);
+    }
+
+    public float getShadowOffsetX() {
+        return shadowOffsetX;
+    }
+
+    public float getShadowOffsetY() {
+        return shadowOffsetY;
+    }
+
+    /**
+     * Only the padding is updated, the same as {@link #setShadowOffset(float, float)}.
+     */
+    public void setShadowPadding(float left, float top, float right, float bottom) {
+        if (shadowPaddingLeft == left && shadowPaddingTop == top
+                && shadowPaddingRight == right && shadowPaddingBottom == bottom) {
+            return;
+        }
+
+        shadowPaddingLeft = left;
+        shadowPaddingTop = top;
+        shadowPaddingRight = right;
+        shadowPaddingBottom = bottom;
+        onShadowChanged(CHANGE_PADDING);
+    }
+
+    public float getShadowPaddingLeft() {
+        return shadowPaddingLeft;
+    }
+
+    public float getShadowPaddingTop() {
+        return shadowPaddingTop;
+    }
+
+    public float getShadowPaddingRight() {
+        return shadowPaddingRight;
+    }
+
+    public float getShadowPaddingBottom() {
+        return shadowPaddingBottom;
+    }
+
+    public void setShadowInvalidateOnSizeChanged(boolean invalidate) {
+        invalidateShadowOnSizeChanged = invalidate;
+    }
+
+    public boolean isShadowInvalidateOnSizeChanged() {
+        return invalidateShadowOnSizeChanged;
+    }
+
+    public void setShadowNinePatch(boolean ninePatch) {
+        if (ninePatchShadow == ninePatch) return;
+
+        ninePatchShadow = ninePatch;
+        onShadowChanged(CHANGE_GEOMETRY);
+    }
+
+    public boolean isShadowNinePatch() {
+        return ninePatchShadow;
+    }
+
+    public void setShadowSharedCache(boolean sharedCache) {
+        if (sharedShadowCache == sharedCache) return;
+
+        sharedShadowCache = sharedCache;
+        onShadowChanged(CHANGE_GEOMETRY);
+    }
+
+    public boolean isShadowSharedCache() {
+        return sharedShadowCache;
+    }
+
+    /**
+     * Takes effect from the next render, the current shadow is kept.
+     */
+    public void setShadowAsync(boolean async) {
+        asyncShadow = async;
+    }
+
+    public boolean isShadowAsync() {
+        return asyncShadow;
+    }
+
+    public void setShadowQuadrant(boolean quadrant) {
+        if (quadrantShadow == quadrant) return;
+
+        quadrantShadow = quadrant;
+        onShadowChanged(CHANGE_GEOMETRY);
+    }
+
+    public boolean isShadowQuadrant() {
+        return quadrantShadow;
+    }
+
+    public void setShadowHollow(boolean hollow) {
+        if (hollowShadow == hollow) return;
+
+        hollowShadow = hollow;
+        onShadowChanged(CHANGE_GEOMETRY);
+    }
+
+    public boolean isShadowHollow() {
+        return hollowShadow;
+    }
+
+    /**
+     * Switch between drawing {@link ShadowDrawable} directly and rendering it into a bitmap.
+     */
+    public void setShadowDirectDraw(boolean directDraw) {
+        if (directDrawShadow == directDraw) return;
+
+        directDrawShadow = directDraw;
+        onShadowChanged(CHANGE_GEOMETRY);
+    }
+
+    public boolean isShadowDirectDraw() {
+        return directDrawShadow;
+    }
+
+    /**
+     * Start a batch of changes, setters only record what they change until the matching
+     * {@link #endShadowEdit()}, then the padding is updated and the shadow is rendered at most
+     * once. Edits can be nested, only the outermost end applies them.
+     */
+    public void beginShadowEdit() {
+        shadowEditDepth++;
+    }
+
+    public void endShadowEdit() {
+        if (shadowEditDepth == 0) throw new IllegalStateException("endShadowEdit without beginShadowEdit");
+        if (--shadowEditDepth > 0) return;
+
+        int changes = pendingShadowChanges;
+        pendingShadowChanges = 0;
+        onShadowChanged(changes);
+    }
+
+    /**
+     * Apply changes in the cheapest way, or record them while in an edit. A tint only tints the
+     * cached mask, a padding change only updates the padding unless the hole of a hollow shadow
+     * depends on it, and only a geometry change renders the shadow again. The drawable is shared
+     * with async renders, so it is only changed after renders in flight are dropped.
+     */
+    private void onShadowChanged(int changes) {
+        if (shadowEditDepth > 0) {
+            pendingShadowChanges |= changes;
+            return;
+        }
+
+        if ((changes & CHANGE_PADDING) != 0) {
+            updateShadowPadding();
+            if (hollowShadow) changes |= CHANGE_GEOMETRY;
+        }
+        if ((changes & CHANGE_TINT) != 0 && !directDrawShadow && getBackground() != null) {
+            tintShadowDrawable(getBackground());
+        }
+        if ((changes & CHANGE_GEOMETRY) != 0) {
+            renderQueue.cancel();
+            synchronized (renderLock) {
+                shadowDrawable.setShadow(shadowCornerRadius, shadowBlurRadius,
+                        directDrawShadow ? shadowColor : MASK_COLOR);
+            }
+            invalidateShadow();
+        } else if ((changes & CHANGE_TINT) != 0 && directDrawShadow) {
+            shadowDrawable.setShadow(shadowCornerRadius, shadowBlurRadius, shadowColor);
+        }
+    }
+
+    /**
+     * Replace all attributes by the spec, e.g. when a recycled layout is bound to another style,
+     * the shadow is rendered again.
+     */
+    public void setShadowSpec(ShadowSpec spec) {
+        renderQueue.cancel();
+        synchronized (renderLock) {
+            applyShadowSpec(spec);
+        }
+        onShadowChanged(CHANGE_GEOMETRY);
+    }
+
     public void invalidateShadow() {
         forceInvalidateShadow = true;
         requestLayout();
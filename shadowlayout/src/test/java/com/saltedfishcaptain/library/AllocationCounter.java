@@ -0,0 +1,68 @@
+package com.saltedfishcaptain.library;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Count bytes allocated by the current thread while a task runs. With stubs only allocations of
+ * the library are counted, under Robolectric those of the platform are counted as well, and the
+ * bookkeeping of Robolectric itself is measured by {@link #countInvalidationBytes(int)}.
+ */
+final class AllocationCounter {
+    private static final int WARM_UPS = 3; // 类加载、编译、缓冲区扩容都在预热中完成
+    private static final int MEASUREMENTS = 5; // 取最小值，排除其他线程触发的偶发分配
+
+    private AllocationCounter() {
+    }
+
+    /**
+     * Run the task a few times to warm up, so allocations of class loading, compiling and growing
+     * buffers are not counted, then count the bytes allocated by running it again. The least of a
+     * few runs is taken, less what counting an empty task allocates.
+     */
+    static long countAllocatedBytes(Runnable task) {
+        return Math.max(0, countLeastBytes(task) - countLeastBytes(new Runnable() {
+            @Override
+            public void run() {
+            }
+        }));
+    }
+
+    /**
+     * A device allocates nothing to invalidate a drawable, but the shadow of Robolectric records
+     * every invalidation through a reflector, which allocates.
+     *
+     * @return bytes allocated by invalidating a drawable the times, the same for a drawable with a
+     * view as callback or without one.
+     */
+    static long countInvalidationBytes(final int count) {
+        final ShadowDrawable drawable = new ShadowDrawable(0, 0, 0);
+        return countAllocatedBytes(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < count; i++) {
+                    drawable.invalidateSelf();
+                }
+            }
+        });
+    }
+
+    private static long countLeastBytes(Runnable task) {
+        for (int i = 0; i < WARM_UPS; i++) {
+            task.run();
+        }
+
+        long least = Long.MAX_VALUE;
+        for (int i = 0; i < MEASUREMENTS; i++) {
+            long before = getAllocatedBytes();
+            task.run();
+            least = Math.min(least, getAllocatedBytes() - before);
+        }
+        return least;
+    }
+
+    private static long getAllocatedBytes() {
+        com.sun.management.ThreadMXBean threadBean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        return threadBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
@@ -0,0 +1,120 @@
+package com.saltedfishcaptain.library;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Check the closed form shadow against a round rect blurred by a brute force gaussian kernel of the
+ * same sigma.
+ */
+public class AnalyticShadowRendererTest {
+    private final AnalyticShadowRenderer renderer = new AnalyticShadowRenderer();
+
+    @Test
+    public void cdf_matchesKnownValues() throws Exception {
+        assertEquals(0.5f, AnalyticShadowRenderer.cdf(0), 1e-6f);
+        assertEquals(0.8413f, AnalyticShadowRenderer.cdf(1), 1e-4f);
+        assertEquals(0.0228f, AnalyticShadowRenderer.cdf(-2), 1e-4f);
+        assertEquals(0, AnalyticShadowRenderer.cdf(-5), 0);
+        assertEquals(1, AnalyticShadowRenderer.cdf(5), 0);
+    }
+
+    @Test
+    public void render_rect_matchesReferenceBlur() throws Exception {
+        assertMatchesReferenceBlur(120, 90, 0, 10);
+    }
+
+    @Test
+    public void render_roundRect_matchesReferenceBlur() throws Exception {
+        assertMatchesReferenceBlur(120, 90, 16, 4);
+        assertMatchesReferenceBlur(120, 90, 16, 12);
+        assertMatchesReferenceBlur(160, 100, 40, 20);
+        assertMatchesReferenceBlur(160, 100, 40, 4);
+    }
+
+    @Test
+    public void render_withoutBlur_isFilledRoundRect() throws Exception {
+        ShadowMask expected = new ShadowMask(40, 30);
+        expected.fillRoundRect(5, 5, 35, 25, 6);
+        ShadowMask actual = new ShadowMask(40, 30);
+        renderer.render(actual, 5, 5, 35, 25, 6, 0);
+
+        for (int i = 0; i < expected.getBuffer().length; i++) {
+            assertEquals(expected.getBuffer()[i], actual.getBuffer()[i]);
+        }
+    }
+
+    private void assertMatchesReferenceBlur(int shapeWidth, int shapeHeight,
+                                            float cornerRadius, float blurRadius) {
+        float sigma = BoxBlurShadowRenderer.convertRadiusToSigma(blurRadius);
+        int margin = (int) Math.ceil(4 * sigma) + 1;
+        int width = shapeWidth + 2 * margin;
+        int height = shapeHeight + 2 * margin;
+
+        ShadowMask actual = new ShadowMask(width, height);
+        renderer.render(actual, margin, margin, margin + shapeWidth, margin + shapeHeight,
+                cornerRadius, blurRadius);
+        float[] expected = blurReference(width, height, margin, shapeWidth, shapeHeight,
+                cornerRadius, sigma);
+
+        for (int i = 0; i < expected.length; i++) {
+            float difference = Math.abs(expected[i] - actual.getAlpha(i % width, i / width));
+            assertTrue("(" + i % width + ", " + i / width + ") differs by " + difference, difference <= 2);
+        }
+    }
+
+    /**
+     * Fill the round rect 4x4 supersampled so the edge is exact, and blur it by a sampled gaussian
+     * kernel separably.
+     */
+    private static float[] blurReference(int width, int height, int margin, int shapeWidth,
+                                         int shapeHeight, float cornerRadius, float sigma) {
+        ShadowMask shape = new ShadowMask(width * 4, height * 4);
+        shape.fillRoundRect(margin * 4, margin * 4, (margin + shapeWidth) * 4,
+                (margin + shapeHeight) * 4, cornerRadius * 4);
+        float[] pixels = new float[width * height];
+        for (int y = 0; y < height * 4; y++) {
+            for (int x = 0; x < width * 4; x++) {
+                pixels[y / 4 * width + x / 4] += shape.getAlpha(x, y) / 16f;
+            }
+        }
+
+        int kernelRadius = (int) Math.ceil(4 * sigma);
+        float[] kernel = new float[2 * kernelRadius + 1];
+        float sum = 0;
+        for (int i = 0; i < kernel.length; i++) {
+            int d = i - kernelRadius;
+            kernel[i] = (float) Math.exp(-d * d / (2 * sigma * sigma));
+            sum += kernel[i];
+        }
+        for (int i = 0; i < kernel.length; i++) {
+            kernel[i] /= sum;
+        }
+
+        float[] rows = new float[pixels.length];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                float value = 0;
+                for (int i = 0; i < kernel.length; i++) {
+                    int sx = x + i - kernelRadius;
+                    if (sx >= 0 && sx < width) value += kernel[i] * pixels[y * width + sx];
+                }
+                rows[y * width + x] = value;
+            }
+        }
+        float[] result = new float[pixels.length];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                float value = 0;
+                for (int i = 0; i < kernel.length; i++) {
+                    int sy = y + i - kernelRadius;
+                    if (sy >= 0 && sy < height) value += kernel[i] * rows[sy * width + x];
+                }
+                result[y * width + x] = value;
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,159 @@
+package com.saltedfishcaptain.library;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Rect;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.GraphicsMode;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Drive a {@link ShadowTransition} frame by frame on the native graphics of Robolectric, over
+ * keyframe tiles prewarmed into {@link ShadowBitmapCache} and drawn into a real bitmap. The
+ * renderer fails once the tiles are prewarmed, which proves no frame rasterizes a new shadow.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 33, manifest = Config.NONE)
+@GraphicsMode(GraphicsMode.Mode.NATIVE)
+public class AnimatedShadowDrawableTest {
+    private static final int FRAMES = 100;
+    private static final int WIDTH = 240;
+    private static final int HEIGHT = 160;
+    private static final int SHAPE_INSET = 24; // 形状四周留出最大模糊半径，阴影都画在Bitmap里
+    private static final int INVALIDATIONS_PER_FRAME = 3; // 新的一帧状态，以及两个图块换了颜色
+
+    @Test
+    public void animate_drawsCachedTilesEveryFrame() throws Exception {
+        PrewarmedRenderer renderer = new PrewarmedRenderer();
+        AnimatedShadowDrawable drawable = newPrewarmedDrawable(renderer);
+        ShadowTransition transition = newTransition(drawable);
+        Bitmap output = Bitmap.createBitmap(WIDTH, HEIGHT, Bitmap.Config.ARGB_8888);
+        CountingCanvas canvas = new CountingCanvas(output);
+
+        for (int i = 0; i < FRAMES; i++) {
+            int drawCount = canvas.drawCount;
+            transition.setFraction(i / (FRAMES - 1f));
+            drawable.draw(canvas);
+
+            assertTrue("frame " + i + " drew no tile", canvas.drawCount > drawCount);
+        }
+        assertTrue(Color.alpha(output.getPixel(SHAPE_INSET, HEIGHT / 2)) > 0);
+        drawable.release();
+    }
+
+    @Test
+    public void animate_allocatesAndRendersNothing() throws Exception {
+        final AnimatedShadowDrawable drawable = newPrewarmedDrawable(new PrewarmedRenderer());
+        final ShadowTransition transition = newTransition(drawable);
+        final Bitmap output = Bitmap.createBitmap(WIDTH, HEIGHT, Bitmap.Config.ARGB_8888);
+        final CountingCanvas canvas = new CountingCanvas(output);
+
+        long allocated = AllocationCounter.countAllocatedBytes(new Runnable() {
+            @Override
+            public void run() {
+                runFrames(transition, drawable, canvas);
+            }
+        });
+
+        assertTrue(canvas.drawCount > 0);
+        long invalidations = AllocationCounter.countInvalidationBytes(FRAMES * INVALIDATIONS_PER_FRAME);
+        assertTrue("allocated " + allocated + " bytes in " + FRAMES + " frames, " + invalidations
+                + " of them to record invalidations", allocated <= invalidations);
+        drawable.release();
+    }
+
+    @Test
+    public void findLowerKeyframe_leavesOneAbove() throws Exception {
+        float[] radii = {2, 8, 24};
+
+        assertEquals(0, AnimatedShadowDrawable.findLowerKeyframe(radii, 0));
+        assertEquals(0, AnimatedShadowDrawable.findLowerKeyframe(radii, 7.9f));
+        assertEquals(1, AnimatedShadowDrawable.findLowerKeyframe(radii, 8));
+        assertEquals(1, AnimatedShadowDrawable.findLowerKeyframe(radii, 24));
+        assertEquals(1, AnimatedShadowDrawable.findLowerKeyframe(radii, 100));
+        assertEquals(0, AnimatedShadowDrawable.findLowerKeyframe(new float[]{8}, 100));
+    }
+
+    @Test
+    public void crossFade_keepsSolidAreaOpacity() throws Exception {
+        float opacity = 0.6f;
+        for (float fraction = 0; fraction <= 1; fraction += 0.125f) {
+            float lower = (1 - fraction) * opacity;
+            float upper = AnimatedShadowDrawable.getUpperOpacity(lower, fraction, opacity);
+
+            assertEquals(opacity, lower + upper * (1 - lower), 1e-6f);
+        }
+        assertEquals(0, AnimatedShadowDrawable.getUpperOpacity(1, 0, 1), 0);
+    }
+
+    @Test
+    public void keyframes_notAscending_throws() throws Exception {
+        try {
+            new AnimatedShadowDrawable(8, 8, 8);
+            fail("Accepted equal keyframes");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    private static void runFrames(ShadowTransition transition, AnimatedShadowDrawable drawable,
+                                  Canvas canvas) {
+        for (int i = 0; i < FRAMES; i++) {
+            transition.setFraction(i / (FRAMES - 1f));
+            drawable.draw(canvas);
+        }
+    }
+
+    private static AnimatedShadowDrawable newPrewarmedDrawable(PrewarmedRenderer renderer) {
+        AnimatedShadowDrawable drawable = new AnimatedShadowDrawable(8, new float[]{2, 8, 24}, renderer, null);
+        drawable.setBounds(0, 0, WIDTH, HEIGHT);
+        drawable.setShapeInsets(SHAPE_INSET, SHAPE_INSET, SHAPE_INSET, SHAPE_INSET);
+        drawable.prewarm();
+        renderer.prewarmed = true;
+        return drawable;
+    }
+
+    private static ShadowTransition newTransition(AnimatedShadowDrawable drawable) {
+        return new ShadowTransition(drawable)
+                .setStart(2, 0, 1, 0x44000000)
+                .setEnd(24, 0, 12, 0x88000000);
+    }
+
+    /**
+     * Render tiles by the box blur until they are prewarmed, its own class keeps its tiles apart
+     * from those of other tests in {@link ShadowBitmapCache}.
+     */
+    private static final class PrewarmedRenderer implements ShadowRenderer {
+        private final ShadowRenderer renderer = new BoxBlurShadowRenderer();
+        private boolean prewarmed;
+
+        @Override
+        public void render(ShadowMask mask, float left, float top, float right, float bottom,
+                           float cornerRadius, float blurRadius) {
+            if (prewarmed) fail("keyframes should never be rendered again");
+            renderer.render(mask, left, top, right, bottom, cornerRadius, blurRadius);
+        }
+    }
+
+    private static final class CountingCanvas extends Canvas {
+        private int drawCount;
+
+        CountingCanvas(Bitmap bitmap) {
+            super(bitmap);
+        }
+
+        @Override
+        public void drawBitmap(Bitmap bitmap, Rect src, Rect dst, Paint paint) {
+            drawCount++;
+            super.drawBitmap(bitmap, src, dst, paint);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.saltedfishcaptain.library;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Pure Java tests of {@link BoxBlurShadowRenderer}, run on the development machine.
+ */
+public class BoxBlurShadowRendererTest {
+    private final BoxBlurShadowRenderer renderer = new BoxBlurShadowRenderer();
+
+    @Test
+    public void render_withoutBlur_fillsRoundRectOnly() throws Exception {
+        ShadowMask mask = new ShadowMask(40, 30);
+        renderer.render(mask, 10, 10, 30, 20, 0, 0);
+
+        assertEquals(255, mask.getAlpha(10, 10));
+        assertEquals(255, mask.getAlpha(29, 19));
+        assertEquals(0, mask.getAlpha(9, 15));
+        assertEquals(0, mask.getAlpha(30, 15));
+        assertEquals(0, mask.getAlpha(20, 20));
+    }
+
+    @Test
+    public void render_isSymmetricOnBothAxes() throws Exception {
+        ShadowMask mask = new ShadowMask(64, 48);
+        renderer.render(mask, 12, 12, 52, 36, 6, 12);
+
+        for (int y = 0; y < 48; y++) {
+            for (int x = 0; x < 64; x++) {
+                int alpha = mask.getAlpha(x, y);
+                assertEquals(alpha, mask.getAlpha(63 - x, y), 1);
+                assertEquals(alpha, mask.getAlpha(x, 47 - y), 1);
+            }
+        }
+    }
+
+    @Test
+    public void render_fallsOffMonotonicallyFromCenter() throws Exception {
+        ShadowMask mask = new ShadowMask(80, 80);
+        renderer.render(mask, 20, 20, 60, 60, 4, 16);
+
+        for (int x = 40; x < 79; x++) {
+            assertTrue(mask.getAlpha(x, 40) >= mask.getAlpha(x + 1, 40));
+        }
+        assertTrue(mask.getAlpha(60, 40) > 0);
+        assertTrue(mask.getAlpha(60, 40) < 255);
+    }
+
+    @Test
+    public void blur_keepsTheMassOfTheShape() throws Exception {
+        ShadowMask sharp = new ShadowMask(100, 100);
+        sharp.fillRoundRect(30, 30, 70, 70, 8);
+
+        ShadowMask blurred = new ShadowMask(100, 100);
+        renderer.render(blurred, 30, 30, 70, 70, 8, 10);
+
+        assertEquals(sum(sharp), sum(blurred), sum(sharp) * 0.02);
+    }
+
+    @Test
+    public void computeBoxRadii_approximatesGaussianVariance() throws Exception {
+        int[] radii = new int[3];
+        for (float sigma = 2; sigma < 40; sigma += 1.5f) {
+            assertTrue(BoxBlurShadowRenderer.computeBoxRadii(sigma, radii));
+
+            float variance = 0;
+            for (int radius : radii) {
+                int width = radius * 2 + 1;
+                variance += (width * width - 1) / 12f;
+            }
+            assertEquals(sigma * sigma, variance, sigma * sigma * 0.15 + 1);
+        }
+
+        assertFalse(BoxBlurShadowRenderer.computeBoxRadii(0, radii));
+    }
+
+    private static long sum(ShadowMask mask) {
+        long sum = 0;
+        for (int y = 0; y < mask.getHeight(); y++) {
+            for (int x = 0; x < mask.getWidth(); x++) {
+                sum += mask.getAlpha(x, y);
+            }
+        }
+        return sum;
+    }
+}
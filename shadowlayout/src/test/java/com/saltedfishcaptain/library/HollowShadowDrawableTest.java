@@ -0,0 +1,91 @@
+package com.saltedfishcaptain.library;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Pack a full render into a ring the way {@link ShadowLayout} does, and map every pixel of the
+ * bands back to the full shadow the way {@link HollowShadowDrawable} draws them.
+ */
+public class HollowShadowDrawableTest {
+    private final BoxBlurShadowRenderer renderer = new BoxBlurShadowRenderer();
+
+    @Test
+    public void ringSize_coversAllBands() throws Exception {
+        int[] insets = {10, 12, 14, 16};
+
+        assertEquals(200, HollowShadowDrawable.getRingWidth(200, 100, insets));
+        assertEquals(52, HollowShadowDrawable.getRingHeight(insets));
+        assertEquals(172, HollowShadowDrawable.getRingWidth(40, 200, insets));
+    }
+
+    @Test
+    public void hasHole_falseWhenBandsMeet() throws Exception {
+        assertTrue(HollowShadowDrawable.hasHole(100, 100, new int[]{10, 10, 10, 10}));
+        assertFalse(HollowShadowDrawable.hasHole(20, 100, new int[]{10, 10, 10, 10}));
+        assertFalse(HollowShadowDrawable.hasHole(100, 20, new int[]{10, 10, 10, 10}));
+    }
+
+    @Test
+    public void bandMatrix_inverseMapsBack() throws Exception {
+        int[] insets = {10, 12, 14, 16};
+        float[] toFull = new float[9];
+        float[] toRing = new float[9];
+
+        for (int band = 0; band < HollowShadowDrawable.BAND_COUNT; band++) {
+            HollowShadowDrawable.getBandMatrixValues(band, 120, 90, insets, true, toFull);
+            HollowShadowDrawable.getBandMatrixValues(band, 120, 90, insets, false, toRing);
+
+            float[] point = map(toRing, map(toFull, new float[]{7, 33}));
+            assertEquals(7, point[0], 0);
+            assertEquals(33, point[1], 0);
+        }
+    }
+
+    @Test
+    public void packedRing_isIdenticalToBandsOfFullRender() throws Exception {
+        assertRingMatchesFullRender(240, 160, new int[]{20, 24, 28, 32}, 8, 16);
+        assertRingMatchesFullRender(61, 300, new int[]{18, 18, 18, 30}, 4, 10);
+    }
+
+    private void assertRingMatchesFullRender(int width, int height, int[] insets,
+                                             float cornerRadius, float blurRadius) {
+        ShadowMask full = new ShadowMask(width, height);
+        renderer.render(full, blurRadius, blurRadius, width - blurRadius, height - blurRadius,
+                cornerRadius, blurRadius);
+        ShadowMask ring = new ShadowMask(HollowShadowDrawable.getRingWidth(width, height, insets),
+                HollowShadowDrawable.getRingHeight(insets));
+        HollowShadowDrawable.packRing(full, ring, insets);
+
+        // Rect不能在单元测试中使用，按照环形Bitmap的排列计算每条边的行
+        int middleHeight = height - insets[1] - insets[3];
+        int[] bandRows = {insets[1], insets[3], insets[0], insets[2]};
+        int[] bandWidths = {width, width, middleHeight, middleHeight};
+        float[] toFull = new float[9];
+        int covered = 0;
+        int top = 0;
+        for (int i = 0; i < HollowShadowDrawable.BAND_COUNT; i++) {
+            HollowShadowDrawable.getBandMatrixValues(i, width, height, insets, true, toFull);
+            for (int y = top; y < top + bandRows[i]; y++) {
+                for (int x = 0; x < bandWidths[i]; x++) {
+                    float[] point = map(toFull, new float[]{x, y});
+                    assertEquals(full.getAlpha((int) point[0], (int) point[1]), ring.getAlpha(x, y));
+                    covered++;
+                }
+            }
+            top += bandRows[i];
+        }
+
+        int hole = (width - insets[0] - insets[2]) * (height - insets[1] - insets[3]);
+        assertEquals(width * height - hole, covered);
+    }
+
+    private static float[] map(float[] values, float[] point) {
+        return new float[]{
+                values[0] * point[0] + values[1] * point[1] + values[2],
+                values[3] * point[0] + values[4] * point[1] + values[5]};
+    }
+}
@@ -0,0 +1,77 @@
+package com.saltedfishcaptain.library;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+/**
+ * Keys and sizes of tiles shared by decorations, animated drawables and nine patch layouts.
+ */
+public class NinePatchShadowDrawableTest {
+    private static final int FULL_WIDTH = 300;
+    private static final int FULL_HEIGHT = 220;
+    // 角半径和模糊半径，包括角半径为0、模糊半径大的情况，中间条带最容易不均匀
+    private static final float[][] SHADOWS = {{0, 4}, {0, 24}, {2, 24}, {8, 24}, {12, 4}, {12, 16}};
+
+    @Test
+    public void createTileKey_withoutRenderer_usesDefaultRendererKey() throws Exception {
+        ShadowBitmapCache.Key key = NinePatchShadowDrawable.createTileKey(null, 8, 12, 0, 4);
+
+        assertEquals(NinePatchShadowDrawable.createTileKey(ShadowLayout.getDefaultRenderer(), 8, 12, 0, 4), key);
+        assertNotEquals(NinePatchShadowDrawable.createTileKey(new AnalyticShadowRenderer(), 8, 12, 0, 4), key);
+    }
+
+    @Test
+    public void createTileKey_sameShadow_equalsNinePatchLayoutKey() throws Exception {
+        int size = NinePatchShadowDrawable.getCornerSize(8, 12) * 2 + 1;
+        ShadowBitmapCache.Key layoutKey = ShadowLayout.newMaskKey(ShadowLayout.getDefaultRenderer(), size, size)
+                .setShadow(8, 12)
+                .setOffset(0, 4)
+                .build();
+
+        assertEquals(layoutKey, NinePatchShadowDrawable.createTileKey(null, 8, 12, 0, 4));
+    }
+
+    @Test
+    public void getCornerSize_stretchedTile_matchesFullRender() throws Exception {
+        ShadowRenderer[] renderers = {new BoxBlurShadowRenderer(), new AnalyticShadowRenderer()};
+        for (ShadowRenderer renderer : renderers) {
+            for (float[] shadow : SHADOWS) {
+                int cornerSize = NinePatchShadowDrawable.getCornerSize(shadow[0], shadow[1]);
+                ShadowMask tile = render(renderer, cornerSize * 2 + 1, cornerSize * 2 + 1, shadow);
+                ShadowMask full = render(renderer, FULL_WIDTH, FULL_HEIGHT, shadow);
+
+                ShadowGoldenTest.assertMaxDifference(full, stretch(tile, cornerSize), 1);
+            }
+        }
+    }
+
+    private static ShadowMask render(ShadowRenderer renderer, int width, int height, float[] shadow) {
+        ShadowMask mask = new ShadowMask(width, height);
+        ShadowLayout.renderShadowMask(renderer, mask, width, height, ShadowRenderScale.FULL, shadow[0], shadow[1], null);
+        return mask;
+    }
+
+    /**
+     * Stretch the tile to the full size the way {@link NinePatchShadowDrawable} draws it, corners
+     * are copied and the middle row and column are repeated.
+     */
+    private static ShadowMask stretch(ShadowMask tile, int cornerSize) {
+        ShadowMask stretched = new ShadowMask(FULL_WIDTH, FULL_HEIGHT);
+        for (int y = 0; y < FULL_HEIGHT; y++) {
+            for (int x = 0; x < FULL_WIDTH; x++) {
+                stretched.setAlpha(x, y, tile.getAlpha(
+                        toTile(x, FULL_WIDTH, tile.getWidth(), cornerSize),
+                        toTile(y, FULL_HEIGHT, tile.getHeight(), cornerSize)));
+            }
+        }
+        return stretched;
+    }
+
+    private static int toTile(int position, int fullSize, int tileSize, int cornerSize) {
+        if (position < cornerSize) return position;
+        if (position >= fullSize - cornerSize) return position - fullSize + tileSize;
+        return cornerSize;
+    }
+}
@@ -0,0 +1,96 @@
+package com.saltedfishcaptain.library;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Render only a quadrant the way {@link ShadowLayout} does, and compare it, mirrored to the
+ * other quadrants like {@link QuadrantShadowDrawable} does, with a full render.
+ */
+public class QuadrantShadowDrawableTest {
+    private final BoxBlurShadowRenderer renderer = new BoxBlurShadowRenderer();
+
+    @Test
+    public void quadrant_isIdenticalToTopLeftOfFullRender() throws Exception {
+        assertQuadrantMatchesFullRender(240, 160, 8, 16);
+        assertQuadrantMatchesFullRender(241, 161, 4, 30);
+        assertQuadrantMatchesFullRender(64, 300, 20, 2);
+    }
+
+    @Test
+    public void mirroredQuadrant_isIdenticalToFullRender() throws Exception {
+        assertMirroredQuadrantMatchesFullRender(240, 160, 8, 16);
+        assertMirroredQuadrantMatchesFullRender(241, 161, 4, 30);
+    }
+
+    @Test
+    public void getQuadrantSize_includesMiddleOfOddSize() throws Exception {
+        assertEquals(60, QuadrantShadowDrawable.getQuadrantSize(120));
+        assertEquals(61, QuadrantShadowDrawable.getQuadrantSize(121));
+        assertEquals(1, QuadrantShadowDrawable.getQuadrantSize(1));
+    }
+
+    @Test
+    public void crop_keepsRowsPacked() throws Exception {
+        ShadowMask mask = new ShadowMask(4, 3);
+        for (int y = 0; y < 3; y++) {
+            for (int x = 0; x < 4; x++) {
+                mask.setAlpha(x, y, y * 4 + x);
+            }
+        }
+
+        mask.crop(2, 2);
+
+        assertEquals(2, mask.getWidth());
+        assertEquals(2, mask.getHeight());
+        byte[] buffer = mask.getBuffer();
+        assertEquals(0, buffer[0]);
+        assertEquals(1, buffer[1]);
+        assertEquals(4, buffer[2]);
+        assertEquals(5, buffer[3]);
+    }
+
+    private void assertQuadrantMatchesFullRender(int width, int height, float cornerRadius, float blurRadius) {
+        ShadowMask full = render(width, height, width, height, cornerRadius, blurRadius);
+        ShadowMask quadrant = renderQuadrant(width, height, cornerRadius, blurRadius);
+
+        for (int y = 0; y < quadrant.getHeight(); y++) {
+            for (int x = 0; x < quadrant.getWidth(); x++) {
+                assertEquals(full.getAlpha(x, y), quadrant.getAlpha(x, y));
+            }
+        }
+    }
+
+    private void assertMirroredQuadrantMatchesFullRender(int width, int height, float cornerRadius, float blurRadius) {
+        ShadowMask full = render(width, height, width, height, cornerRadius, blurRadius);
+        ShadowMask quadrant = renderQuadrant(width, height, cornerRadius, blurRadius);
+
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int alpha = quadrant.getAlpha(Math.min(x, width - 1 - x), Math.min(y, height - 1 - y));
+                assertEquals(full.getAlpha(x, y), alpha);
+            }
+        }
+    }
+
+    private ShadowMask renderQuadrant(int width, int height, float cornerRadius, float blurRadius) {
+        int quadrantWidth = QuadrantShadowDrawable.getQuadrantSize(width);
+        int quadrantHeight = QuadrantShadowDrawable.getQuadrantSize(height);
+        int extent = QuadrantShadowDrawable.getBlurExtent(blurRadius);
+
+        ShadowMask mask = render(width, height,
+                Math.min(width, quadrantWidth + extent), Math.min(height, quadrantHeight + extent),
+                cornerRadius, blurRadius);
+        mask.crop(quadrantWidth, quadrantHeight);
+        return mask;
+    }
+
+    private ShadowMask render(int width, int height, int maskWidth, int maskHeight,
+                              float cornerRadius, float blurRadius) {
+        ShadowMask mask = new ShadowMask(maskWidth, maskHeight);
+        renderer.render(mask, blurRadius, blurRadius, width - blurRadius, height - blurRadius,
+                cornerRadius, blurRadius);
+        return mask;
+    }
+}
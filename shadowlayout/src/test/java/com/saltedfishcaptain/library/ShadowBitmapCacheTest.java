@@ -0,0 +1,157 @@
+package com.saltedfishcaptain.library;
+
+import android.graphics.Bitmap;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Reference counts, the byte budget and counters of a {@link ShadowBitmapCache} of its own, over
+ * real bitmaps of Robolectric so that entries weigh their real bytes. Evicted bitmaps go to the
+ * shared {@link ShadowBitmapPool}, which is cleared around every test.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 33, manifest = Config.NONE)
+public class ShadowBitmapCacheTest {
+    private static final int WIDTH = 96;
+    private static final int HEIGHT = 64;
+    private static final int BYTES = WIDTH * HEIGHT; // ALPHA_8每个像素一个字节
+
+    @Before
+    public void setUp() throws Exception {
+        ShadowBitmapPool.getInstance().clear();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        ShadowBitmapPool.getInstance().clear();
+    }
+
+    @Test
+    public void put_existingKey_returnsCachedBitmapAndPoolsGivenOne() throws Exception {
+        ShadowBitmapCache cache = new ShadowBitmapCache(BYTES * 4);
+        ShadowBitmapCache.Key key = newKey(4);
+        Bitmap cached = newBitmap();
+        Bitmap duplicate = newBitmap();
+
+        assertSame(cached, cache.put(key, cached));
+        assertSame(cached, cache.put(key, duplicate));
+
+        assertEquals(1, cache.getPutCount());
+        assertEquals(1, cache.getEntryCount());
+        assertEquals(BYTES, cache.getCurrentBytes());
+        assertSame(duplicate, ShadowBitmapPool.getInstance().get(WIDTH, HEIGHT, Bitmap.Config.ALPHA_8));
+
+        // 两次put各持有一个引用
+        cache.release(key);
+        cache.clear();
+        assertTrue(cache.contains(key));
+        cache.release(key);
+        cache.clear();
+        assertFalse(cache.contains(key));
+    }
+
+    @Test
+    public void release_atZero_isIgnored() throws Exception {
+        ShadowBitmapCache cache = new ShadowBitmapCache(BYTES * 4);
+        ShadowBitmapCache.Key key = newKey(4);
+        cache.put(key, newBitmap());
+
+        cache.release(key);
+        cache.release(key);
+        cache.acquire(key);
+        cache.clear();
+
+        // 多余的release没有让引用变成负数，acquire之后仍在使用中
+        assertTrue(cache.contains(key));
+        assertEquals(0, cache.getEvictionCount());
+    }
+
+    @Test
+    public void trimToSize_skipsEntriesInUse() throws Exception {
+        ShadowBitmapCache cache = new ShadowBitmapCache(BYTES * 4);
+        ShadowBitmapCache.Key used = newKey(4);
+        ShadowBitmapCache.Key unused = newKey(8);
+        cache.put(used, newBitmap());
+        Bitmap evicted = cache.put(unused, newBitmap());
+        cache.release(unused);
+
+        cache.trimToSize(0);
+
+        assertTrue(cache.contains(used));
+        assertFalse(cache.contains(unused));
+        assertEquals(BYTES, cache.getCurrentBytes());
+        assertEquals(1, cache.getEvictionCount());
+        assertSame(evicted, ShadowBitmapPool.getInstance().get(WIDTH, HEIGHT, Bitmap.Config.ALPHA_8));
+    }
+
+    @Test
+    public void put_overBudget_evictsLeastRecentlyUsed() throws Exception {
+        ShadowBitmapCache cache = new ShadowBitmapCache(BYTES * 2);
+        ShadowBitmapCache.Key first = newKey(4);
+        ShadowBitmapCache.Key second = newKey(8);
+        ShadowBitmapCache.Key third = newKey(16);
+        cache.put(first, newBitmap());
+        cache.release(first);
+        cache.put(second, newBitmap());
+        cache.release(second);
+        cache.acquire(first);
+        cache.release(first);
+
+        cache.put(third, newBitmap());
+
+        assertTrue(cache.contains(first));
+        assertFalse(cache.contains(second));
+        assertTrue(cache.contains(third));
+        assertEquals(BYTES * 2, cache.getCurrentBytes());
+        assertEquals(1, cache.getEvictionCount());
+    }
+
+    @Test
+    public void put_overBudgetInUse_keepsEntries() throws Exception {
+        ShadowBitmapCache cache = new ShadowBitmapCache(BYTES);
+        cache.put(newKey(4), newBitmap());
+        cache.put(newKey(8), newBitmap());
+
+        assertEquals(2, cache.getEntryCount());
+        assertEquals(BYTES * 2, cache.getCurrentBytes());
+        assertEquals(0, cache.getEvictionCount());
+    }
+
+    @Test
+    public void acquire_countsHitsAndMisses() throws Exception {
+        ShadowBitmapCache cache = new ShadowBitmapCache(BYTES * 4);
+        ShadowBitmapCache.Key key = newKey(4);
+
+        assertNull(cache.acquire(key));
+        Bitmap bitmap = cache.put(key, newBitmap());
+        assertSame(bitmap, cache.acquire(key));
+        assertTrue(cache.contains(key));
+
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(1, cache.getPutCount());
+    }
+
+    /*--------------------------------------------------------------------------------------------*/
+
+    private static ShadowBitmapCache.Key newKey(float blurRadius) {
+        return ShadowLayout.newMaskKey(ShadowLayout.getDefaultRenderer(), WIDTH, HEIGHT)
+                .setShadow(12, blurRadius)
+                .build();
+    }
+
+    private static Bitmap newBitmap() {
+        return Bitmap.createBitmap(WIDTH, HEIGHT, Bitmap.Config.ALPHA_8);
+    }
+}
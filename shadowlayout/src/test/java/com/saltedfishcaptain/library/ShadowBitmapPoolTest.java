@@ -0,0 +1,151 @@
+package com.saltedfishcaptain.library;
+
+import android.graphics.Bitmap;
+import android.os.Build;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.util.ReflectionHelpers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Size classes, trimming and byte accounting of a {@link ShadowBitmapPool} of its own, over real
+ * bitmaps of Robolectric. Robolectric runs no SDK before KITKAT, so the exact match taken there is
+ * reached by lowering {@link Build.VERSION#SDK_INT} for the test.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 33, manifest = Config.NONE)
+public class ShadowBitmapPoolTest {
+    private static final int SIZE = 64; // 64x64的ALPHA_8为4096字节，正好是一个尺寸级别的上限
+    private static final int BYTES = SIZE * SIZE;
+
+    @Test
+    public void get_reusesBitmapOfSameSizeClass() throws Exception {
+        ShadowBitmapPool pool = new ShadowBitmapPool(BYTES * 4);
+        Bitmap pooled = newBitmap();
+        pool.put(pooled);
+
+        Bitmap bitmap = pool.get(48, 48, Bitmap.Config.ALPHA_8);
+
+        assertSame(pooled, bitmap);
+        assertEquals(48, bitmap.getWidth());
+        assertEquals(48, bitmap.getHeight());
+        assertEquals(1, pool.getHitCount());
+        assertEquals(0, pool.getCurrentBytes());
+    }
+
+    @Test
+    public void get_reusesBitmapOfNextSizeClass() throws Exception {
+        ShadowBitmapPool pool = new ShadowBitmapPool(BYTES * 4);
+        Bitmap pooled = newBitmap();
+        pool.put(pooled);
+
+        // 1536字节比4096字节小一个级别
+        assertSame(pooled, pool.get(32, 48, Bitmap.Config.ALPHA_8));
+    }
+
+    @Test
+    public void get_skipsBitmapsTwoSizeClassesLarger() throws Exception {
+        ShadowBitmapPool pool = new ShadowBitmapPool(BYTES * 4);
+        Bitmap pooled = newBitmap();
+        pool.put(pooled);
+
+        assertNotSame(pooled, pool.get(16, 16, Bitmap.Config.ALPHA_8));
+        assertEquals(1, pool.getMissCount());
+        assertEquals(BYTES, pool.getCurrentBytes());
+    }
+
+    @Test
+    public void get_skipsBitmapsTooSmall() throws Exception {
+        ShadowBitmapPool pool = new ShadowBitmapPool(BYTES * 4);
+        Bitmap pooled = Bitmap.createBitmap(48, 48, Bitmap.Config.ALPHA_8);
+        pool.put(pooled);
+
+        // 2304字节和4096字节在同一级别，但不够用
+        assertNotSame(pooled, pool.get(SIZE, SIZE, Bitmap.Config.ALPHA_8));
+        assertEquals(1, pool.getMissCount());
+    }
+
+    @Test
+    public void get_beforeKitKat_needsExactMatch() throws Exception {
+        int sdkInt = Build.VERSION.SDK_INT;
+        ReflectionHelpers.setStaticField(Build.VERSION.class, "SDK_INT", Build.VERSION_CODES.JELLY_BEAN_MR2);
+        try {
+            ShadowBitmapPool pool = new ShadowBitmapPool(BYTES * 4);
+            Bitmap pooled = newBitmap();
+            pool.put(pooled);
+
+            assertNotSame(pooled, pool.get(48, 48, Bitmap.Config.ALPHA_8));
+            assertSame(pooled, pool.get(SIZE, SIZE, Bitmap.Config.ALPHA_8));
+        } finally {
+            ReflectionHelpers.setStaticField(Build.VERSION.class, "SDK_INT", sdkInt);
+        }
+    }
+
+    @Test
+    public void put_overBudget_trimsLeastRecentlyPut() throws Exception {
+        ShadowBitmapPool pool = new ShadowBitmapPool(BYTES * 2);
+        Bitmap first = newBitmap();
+        Bitmap second = newBitmap();
+        Bitmap third = newBitmap();
+
+        pool.put(first);
+        pool.put(second);
+        pool.put(third);
+
+        assertEquals(BYTES * 2, pool.getCurrentBytes());
+        assertSame(second, pool.get(SIZE, SIZE, Bitmap.Config.ALPHA_8));
+        assertSame(third, pool.get(SIZE, SIZE, Bitmap.Config.ALPHA_8));
+        assertNotSame(first, pool.get(SIZE, SIZE, Bitmap.Config.ALPHA_8));
+    }
+
+    @Test
+    public void put_sameBitmapTwice_countsOnce() throws Exception {
+        ShadowBitmapPool pool = new ShadowBitmapPool(BYTES * 4);
+        Bitmap pooled = newBitmap();
+
+        pool.put(pooled);
+        pool.put(pooled);
+
+        assertEquals(BYTES, pool.getCurrentBytes());
+    }
+
+    @Test
+    public void stats_countBytesCreatedAndDropped() throws Exception {
+        ShadowStats stats = ShadowStats.getInstance();
+        ShadowBitmapPool pool = new ShadowBitmapPool(BYTES);
+        long heldBytes = stats.getHeldBytes();
+        int createdCount = stats.getBitmapCreatedCount();
+
+        Bitmap created = pool.get(SIZE, SIZE, Bitmap.Config.ALPHA_8);
+        assertEquals(createdCount + 1, stats.getBitmapCreatedCount());
+        assertEquals(heldBytes + BYTES, stats.getHeldBytes());
+
+        // 复用池中的Bitmap不算新建
+        pool.put(created);
+        pool.get(SIZE, SIZE, Bitmap.Config.ALPHA_8);
+        assertEquals(createdCount + 1, stats.getBitmapCreatedCount());
+        assertEquals(heldBytes + BYTES, stats.getHeldBytes());
+
+        pool.put(created);
+        pool.clear();
+        assertEquals(heldBytes, stats.getHeldBytes());
+
+        // 比整个池还大的Bitmap直接丢弃
+        Bitmap large = pool.get(SIZE * 2, SIZE, Bitmap.Config.ALPHA_8);
+        pool.put(large);
+        assertEquals(0, pool.getCurrentBytes());
+        assertEquals(heldBytes, stats.getHeldBytes());
+    }
+
+    /*--------------------------------------------------------------------------------------------*/
+
+    private static Bitmap newBitmap() {
+        return Bitmap.createBitmap(SIZE, SIZE, Bitmap.Config.ALPHA_8);
+    }
+}
@@ -0,0 +1,124 @@
+package com.saltedfishcaptain.library;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Write and read files of {@link ShadowDiskCache} in a temporary directory, writes run directly on
+ * the calling thread.
+ */
+public class ShadowDiskCacheTest {
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    private File directory;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = File.createTempFile("shadow", "");
+        directory.delete();
+        directory.mkdirs();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    @Test
+    public void write_thenRead_returnsSamePixels() throws Exception {
+        ShadowDiskCache cache = new ShadowDiskCache(directory, 1024, DIRECT);
+        byte[] pixels = createPixels(12);
+
+        cache.write("a", 4, 3, pixels);
+        ByteBuffer buffer = ByteBuffer.allocate(12);
+
+        assertTrue(cache.read("a", 4, 3, buffer));
+        assertArrayEquals(pixels, buffer.array());
+        assertEquals(1, cache.getHitCount());
+    }
+
+    @Test
+    public void read_mismatchedSize_missesAndDeletesFile() throws Exception {
+        ShadowDiskCache cache = new ShadowDiskCache(directory, 1024, DIRECT);
+        cache.write("a", 4, 3, createPixels(12));
+
+        assertFalse(cache.read("a", 3, 4, ByteBuffer.allocate(12)));
+        assertFalse(cache.read("a", 4, 3, ByteBuffer.allocate(12)));
+        assertEquals(2, cache.getMissCount());
+        assertEquals(0, cache.getCurrentBytes());
+    }
+
+    @Test
+    public void write_overBudget_evictsLeastRecentlyRead() throws Exception {
+        ShadowDiskCache cache = new ShadowDiskCache(directory, 250, DIRECT);
+        cache.write("a", 10, 10, createPixels(100));
+        cache.write("b", 10, 10, createPixels(100));
+        cache.read("a", 10, 10, ByteBuffer.allocate(100));
+
+        cache.write("c", 10, 10, createPixels(100));
+
+        assertTrue(new File(directory, "a.shadow").exists());
+        assertFalse(new File(directory, "b.shadow").exists());
+        assertTrue(new File(directory, "c.shadow").exists());
+        assertEquals(232, cache.getCurrentBytes());
+    }
+
+    @Test
+    public void firstWrite_indexesOldFilesAndDeletesTemporaryOnes() throws Exception {
+        new ShadowDiskCache(directory, 1024, DIRECT).write("a", 10, 10, createPixels(100));
+        assertTrue(new File(directory, "b.tmp").createNewFile());
+
+        ShadowDiskCache cache = new ShadowDiskCache(directory, 1024, DIRECT);
+        cache.write("c", 10, 10, createPixels(100));
+
+        assertFalse(new File(directory, "b.tmp").exists());
+        assertEquals(232, cache.getCurrentBytes());
+    }
+
+    @Test
+    public void getFileName_dependsOnlyOnKeyFields() throws Exception {
+        String name = ShadowDiskCache.getFileName(createKey(100));
+
+        assertEquals(name, ShadowDiskCache.getFileName(createKey(100)));
+        assertNotEquals(name, ShadowDiskCache.getFileName(createKey(101)));
+        assertEquals(40, name.length());
+    }
+
+    private static ShadowBitmapCache.Key createKey(int width) {
+        return new ShadowBitmapCache.Key.Builder(ShadowLayout.class, width, 80)
+                .setShadow(4, 8)
+                .setOffset(0, 2)
+                .setRing(new int[]{10, 10, 10, 10})
+                .build();
+    }
+
+    private static byte[] createPixels(int count) {
+        byte[] pixels = new byte[count];
+        for (int i = 0; i < count; i++) {
+            pixels[i] = (byte) (i * 7);
+        }
+        return pixels;
+    }
+}
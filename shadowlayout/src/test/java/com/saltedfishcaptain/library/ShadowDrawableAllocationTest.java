@@ -0,0 +1,148 @@
+package com.saltedfishcaptain.library;
+
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Rect;
+import android.graphics.drawable.Drawable;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.GraphicsMode;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Count bytes allocated by the current thread while {@link ShadowDrawable} is resized and drawn
+ * into a real bitmap, and while {@link SuperShadowLayout} renders its shadow again for a new size
+ * on the native graphics of Robolectric.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 33, manifest = Config.NONE)
+@GraphicsMode(GraphicsMode.Mode.NATIVE)
+public class ShadowDrawableAllocationTest {
+    private static final int ITERATIONS = 2000;
+    private static final int RESIZES = 20;
+    private static final int[] SMALL = {200, 120};
+    private static final int[] LARGE = {240, 160};
+
+    @Test
+    public void resizeAndDraw_allocatesNothing() throws Exception {
+        final ShadowDrawable drawable = new ShadowDrawable(8, 16, 0x88757575);
+        final Bitmap bitmap = Bitmap.createBitmap(LARGE[0], LARGE[1], Bitmap.Config.ALPHA_8);
+        final Canvas canvas = new Canvas(bitmap);
+        final Rect small = new Rect(0, 0, SMALL[0], SMALL[1]);
+        final Rect large = new Rect(0, 0, LARGE[0], LARGE[1]);
+
+        long allocated = AllocationCounter.countAllocatedBytes(new Runnable() {
+            @Override
+            public void run() {
+                runResizes(drawable, canvas, small, large);
+            }
+        });
+
+        assertTrue("allocated " + allocated + " bytes in " + ITERATIONS + " resizes", allocated == 0);
+    }
+
+    @Test
+    public void setShadow_withSameParameters_rebuildsNothing() throws Exception {
+        final ShadowDrawable drawable = new ShadowDrawable(8, 16, 0x88757575);
+
+        long allocated = AllocationCounter.countAllocatedBytes(new Runnable() {
+            @Override
+            public void run() {
+                runSameShadows(drawable);
+            }
+        });
+
+        assertTrue("allocated " + allocated + " bytes", allocated == 0);
+    }
+
+    @Test
+    public void superShadowLayout_resize_reusesBackgroundAndAllocatesNothing() throws Exception {
+        assertResizeAllocatesNothing(newSpec());
+        assertResizeAllocatesNothing(newSpec().setQuadrant(true));
+        assertResizeAllocatesNothing(newSpec().setHollow(true));
+    }
+
+    /*--------------------------------------------------------------------------------------------*/
+
+    private static void runSameShadows(ShadowDrawable drawable) {
+        for (int i = 0; i < ITERATIONS; i++) {
+            assertFalse(drawable.setShadow(8, 16, 0x88757575));
+        }
+    }
+
+    private static void runResizes(ShadowDrawable drawable, Canvas canvas, Rect small, Rect large) {
+        for (int i = 0; i < ITERATIONS; i++) {
+            drawable.onBoundsChange(i % 2 == 0 ? small : large);
+            drawable.draw(canvas);
+        }
+    }
+
+    /**
+     * The first size renders the target bitmap, every resize after it renders into the same bitmap
+     * again, so the only bytes allowed are those Robolectric allocates to record invalidations.
+     */
+    private static void assertResizeAllocatesNothing(ShadowSpec.Builder spec) {
+        final SuperShadowLayout layout = new SuperShadowLayout(RuntimeEnvironment.getApplication(), spec.build());
+        layout.onSizeChanged(LARGE[0], LARGE[1], 0, 0);
+        Drawable background = layout.getBackground();
+
+        long allocated = AllocationCounter.countAllocatedBytes(new Runnable() {
+            @Override
+            public void run() {
+                runLayoutResizes(layout);
+            }
+        });
+
+        assertSame(background, layout.getBackground());
+        long invalidations = AllocationCounter.countInvalidationBytes(RESIZES * getInvalidationsPerResize(background));
+        assertTrue("allocated " + allocated + " bytes in " + RESIZES + " resizes, " + invalidations
+                + " of them to record invalidations", allocated <= invalidations);
+    }
+
+    private static void runLayoutResizes(SuperShadowLayout layout) {
+        for (int i = 0; i < RESIZES; i++) {
+            int[] size = i % 2 == 0 ? SMALL : LARGE;
+            int[] oldSize = i % 2 == 0 ? LARGE : SMALL;
+            layout.onSizeChanged(size[0], size[1], oldSize[0], oldSize[1]);
+        }
+    }
+
+    /**
+     * The inner {@link ShadowDrawable} is resized and the background invalidated, a quadrant or
+     * hollow background is invalidated once more by its new full size.
+     */
+    private static int getInvalidationsPerResize(Drawable background) {
+        return background instanceof QuadrantShadowDrawable || background instanceof HollowShadowDrawable ? 3 : 2;
+    }
+
+    /**
+     * A shadow without padding or offsets, resources give the defaults without looking them up.
+     */
+    private static ShadowSpec.Builder newSpec() {
+        Resources base = RuntimeEnvironment.getApplication().getResources();
+        Resources defaults = new Resources(base.getAssets(), base.getDisplayMetrics(), base.getConfiguration()) {
+            @Override
+            public float getDimension(int id) {
+                return 0;
+            }
+
+            @Override
+            public int getColor(int id) {
+                return Color.BLACK;
+            }
+        };
+        return new ShadowSpec.Builder(defaults)
+                .setCornerRadius(12)
+                .setBlurRadius(16)
+                .setColor(0x88757575);
+    }
+}
@@ -0,0 +1,274 @@
+package com.saltedfishcaptain.library;
+
+import org.junit.Test;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Render the masks of {@link ShadowLayout} across sizes, radii and layers, and compare them with
+ * golden masks under src/test/resources/golden, which are box blurred full resolution renders.
+ * Every other renderer and render mode is held to the same goldens with its own tolerance, and
+ * renders are held to an allocation budget, which unlike time does not depend on the machine.
+ * {@link ShadowLayoutRenderTest} holds what the layouts draw on real graphics to the same goldens.
+ * <p>
+ * After an intended change of the box blur, write the goldens again by
+ * {@code ./gradlew :shadowlayout:testDebugUnitTest -PupdateGoldens} and review the diff.
+ */
+public class ShadowGoldenTest {
+    private static final String GOLDEN_DIR_PROPERTY = "shadow.golden.dir";
+
+    private static final int[][] SIZES = {{96, 64}, {37, 120}, {160, 96}};
+    private static final float[] CORNER_RADII = {0, 12};
+    private static final float[] BLUR_RADII = {4, 16};
+    private static final ShadowLayer[][] LAYERS = {
+            {new ShadowLayer(0, 2, 6, 0, 0x33000000), new ShadowLayer(2, -2, 8, 2, 0xFF757575)},
+            {new ShadowLayer(0, 1, 3, 0, 0x1F000000), new ShadowLayer(0, 6, 16, -2, 0x3D000000)},
+    };
+
+    private static final int GOLDEN_TOLERANCE = 1; // 同一渲染器只允许舍入误差
+    private static final int ANALYTIC_TOLERANCE = 8; // 解析高斯与三次box blur的差别，约为3%
+    private static final int SCALED_TOLERANCE = 12; // 缩小渲染再双线性拉伸，与RenderScale测试一致
+
+    private static final int ALLOCATION_RUNS = 2000;
+
+    private final BoxBlurShadowRenderer boxBlur = new BoxBlurShadowRenderer();
+    private final AnalyticShadowRenderer analytic = new AnalyticShadowRenderer();
+
+    @Test
+    public void boxBlur_matchesGoldenMasks() throws Exception {
+        for (int[] size : SIZES) {
+            for (float cornerRadius : CORNER_RADII) {
+                for (float blurRadius : BLUR_RADII) {
+                    ShadowMask actual = render(boxBlur, size[0], size[1], ShadowRenderScale.FULL,
+                            cornerRadius, blurRadius, null);
+                    assertMatchesGolden(getGoldenName(size, cornerRadius, blurRadius), actual);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void layers_matchGoldenMasks() throws Exception {
+        for (int i = 0; i < LAYERS.length; i++) {
+            for (int[] size : SIZES) {
+                ShadowMask actual = render(boxBlur, size[0], size[1], ShadowRenderScale.FULL,
+                        12, 0, LAYERS[i]);
+                assertMatchesGolden(size[0] + "x" + size[1] + "_layers" + i, actual);
+            }
+        }
+    }
+
+    @Test
+    public void analytic_staysCloseToGoldenMasks() throws Exception {
+        for (int[] size : SIZES) {
+            for (float cornerRadius : CORNER_RADII) {
+                for (float blurRadius : BLUR_RADII) {
+                    ShadowMask golden = getGolden(size, cornerRadius, blurRadius);
+                    ShadowMask actual = render(analytic, size[0], size[1], ShadowRenderScale.FULL,
+                            cornerRadius, blurRadius, null);
+                    assertMaxDifference(golden, actual, ANALYTIC_TOLERANCE);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void scaled_staysCloseToGoldenMasks() throws Exception {
+        for (int[] size : SIZES) {
+            for (float cornerRadius : CORNER_RADII) {
+                for (float blurRadius : BLUR_RADII) {
+                    ShadowMask golden = getGolden(size, cornerRadius, blurRadius);
+                    // 只检查不超过AUTO会选择的倍数，模糊半径太小时缩小渲染本来就不会被使用
+                    int maxScale = ShadowRenderScale.resolve(ShadowRenderScale.AUTO, blurRadius);
+                    for (int scale = ShadowRenderScale.HALF; scale <= maxScale; scale *= 2) {
+                        ShadowMask scaled = render(boxBlur,
+                                ShadowRenderScale.scaleSize(size[0], scale),
+                                ShadowRenderScale.scaleSize(size[1], scale),
+                                scale, cornerRadius, blurRadius, null);
+                        assertMaxDifference(golden, stretch(scaled, size[0], size[1]), SCALED_TOLERANCE);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void mirroredQuadrant_isIdenticalToGoldenMasks() throws Exception {
+        for (int[] size : SIZES) {
+            for (float cornerRadius : CORNER_RADII) {
+                for (float blurRadius : BLUR_RADII) {
+                    ShadowMask golden = getGolden(size, cornerRadius, blurRadius);
+                    int width = size[0];
+                    int height = size[1];
+                    int quadrantWidth = QuadrantShadowDrawable.getQuadrantSize(width);
+                    int quadrantHeight = QuadrantShadowDrawable.getQuadrantSize(height);
+                    int extent = QuadrantShadowDrawable.getBlurExtent(blurRadius);
+
+                    ShadowMask quadrant = new ShadowMask(Math.min(width, quadrantWidth + extent),
+                            Math.min(height, quadrantHeight + extent));
+                    ShadowLayout.renderShadowMask(boxBlur, quadrant, width, height,
+                            ShadowRenderScale.FULL, cornerRadius, blurRadius, null);
+                    quadrant.crop(quadrantWidth, quadrantHeight);
+
+                    ShadowMask mirrored = new ShadowMask(width, height);
+                    for (int y = 0; y < height; y++) {
+                        for (int x = 0; x < width; x++) {
+                            mirrored.setAlpha(x, y, quadrant.getAlpha(
+                                    Math.min(x, width - 1 - x), Math.min(y, height - 1 - y)));
+                        }
+                    }
+                    assertMaxDifference(golden, mirrored, 0);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void render_allocatesNothing() throws Exception {
+        ShadowRenderer[] renderers = {boxBlur, analytic};
+        for (final ShadowRenderer renderer : renderers) {
+            for (final float blurRadius : BLUR_RADII) {
+                long allocated = AllocationCounter.countAllocatedBytes(new Runnable() {
+                    @Override
+                    public void run() {
+                        runRenders(renderer, blurRadius);
+                    }
+                });
+
+                assertTrue(renderer.getClass().getSimpleName() + " allocated " + allocated + " bytes in "
+                        + ALLOCATION_RUNS + " renders", allocated < 1024);
+            }
+        }
+    }
+
+    /*--------------------------------------------------------------------------------------------*/
+
+    static String getGoldenName(int[] size, float cornerRadius, float blurRadius) {
+        return size[0] + "x" + size[1] + "_r" + (int) cornerRadius + "_b" + (int) blurRadius;
+    }
+
+    /**
+     * The golden of a single shadow, rendered again while goldens are being written so the order
+     * of tests does not matter.
+     */
+    private ShadowMask getGolden(int[] size, float cornerRadius, float blurRadius) throws IOException {
+        if (System.getProperty(GOLDEN_DIR_PROPERTY) != null) {
+            return render(boxBlur, size[0], size[1], ShadowRenderScale.FULL, cornerRadius, blurRadius, null);
+        }
+        return readGolden(getGoldenName(size, cornerRadius, blurRadius));
+    }
+
+    private static ShadowMask render(ShadowRenderer renderer, int width, int height, int scale,
+                                     float cornerRadius, float blurRadius, ShadowLayer[] layers) {
+        ShadowMask mask = new ShadowMask(width, height);
+        ShadowLayout.renderShadowMask(renderer, mask, width, height, scale, cornerRadius,
+                blurRadius, layers);
+        return mask;
+    }
+
+    private static void renderPooled(ShadowRenderer renderer, int width, int height, int scale,
+                                     float cornerRadius, float blurRadius) {
+        ShadowMask mask = ShadowMask.obtain(width, height);
+        ShadowLayout.renderShadowMask(renderer, mask, width, height, scale, cornerRadius,
+                blurRadius, null);
+        mask.recycle();
+    }
+
+    private static void runRenders(ShadowRenderer renderer, float blurRadius) {
+        for (int i = 0; i < ALLOCATION_RUNS; i++) {
+            renderPooled(renderer, 160, 96, ShadowRenderScale.FULL, 12, blurRadius);
+        }
+    }
+
+    /**
+     * Compare with the golden of the name, or write it instead if the golden directory is given.
+     */
+    private static void assertMatchesGolden(String name, ShadowMask actual) throws IOException {
+        String directory = System.getProperty(GOLDEN_DIR_PROPERTY);
+        if (directory != null) {
+            writeGolden(new File(directory, name + ".gz"), actual);
+            return;
+        }
+        assertMaxDifference(readGolden(name), actual, GOLDEN_TOLERANCE);
+    }
+
+    static void assertMaxDifference(ShadowMask expected, ShadowMask actual, int tolerance) {
+        assertEquals(expected.getWidth(), actual.getWidth());
+        assertEquals(expected.getHeight(), actual.getHeight());
+        for (int y = 0; y < expected.getHeight(); y++) {
+            for (int x = 0; x < expected.getWidth(); x++) {
+                int difference = Math.abs(expected.getAlpha(x, y) - actual.getAlpha(x, y));
+                assertTrue("(" + x + ", " + y + ") of " + expected.getWidth() + "x" + expected.getHeight()
+                        + " differs by " + difference, difference <= tolerance);
+            }
+        }
+    }
+
+    /**
+     * A golden is the width and height followed by the alpha of every pixel in rows, gzipped.
+     */
+    static ShadowMask readGolden(String name) throws IOException {
+        InputStream resource = ShadowGoldenTest.class.getResourceAsStream("/golden/" + name + ".gz");
+        assertNotNull("missing golden " + name, resource);
+
+        DataInputStream input = new DataInputStream(new GZIPInputStream(resource));
+        try {
+            ShadowMask mask = new ShadowMask(input.readInt(), input.readInt());
+            input.readFully(mask.getBuffer(), 0, mask.getWidth() * mask.getHeight());
+            return mask;
+        } finally {
+            input.close();
+        }
+    }
+
+    private static void writeGolden(File file, ShadowMask mask) throws IOException {
+        file.getParentFile().mkdirs();
+        DataOutputStream output = new DataOutputStream(new GZIPOutputStream(new FileOutputStream(file)));
+        try {
+            output.writeInt(mask.getWidth());
+            output.writeInt(mask.getHeight());
+            output.write(mask.getBuffer(), 0, mask.getWidth() * mask.getHeight());
+        } finally {
+            output.close();
+        }
+    }
+
+    /**
+     * Stretch the mask to the size by bilinear filtering, like a filtered bitmap drawable does.
+     */
+    private static ShadowMask stretch(ShadowMask mask, int width, int height) {
+        ShadowMask stretched = new ShadowMask(width, height);
+        for (int y = 0; y < height; y++) {
+            float sourceY = clamp((y + 0.5f) * mask.getHeight() / height - 0.5f, mask.getHeight() - 1);
+            int y0 = (int) sourceY;
+            int y1 = Math.min(y0 + 1, mask.getHeight() - 1);
+            float fy = sourceY - y0;
+            for (int x = 0; x < width; x++) {
+                float sourceX = clamp((x + 0.5f) * mask.getWidth() / width - 0.5f, mask.getWidth() - 1);
+                int x0 = (int) sourceX;
+                int x1 = Math.min(x0 + 1, mask.getWidth() - 1);
+                float fx = sourceX - x0;
+
+                float top = mask.getAlpha(x0, y0) * (1 - fx) + mask.getAlpha(x1, y0) * fx;
+                float bottom = mask.getAlpha(x0, y1) * (1 - fx) + mask.getAlpha(x1, y1) * fx;
+                stretched.setAlpha(x, y, Math.round(top * (1 - fy) + bottom * fy));
+            }
+        }
+        return stretched;
+    }
+
+    private static float clamp(float value, int max) {
+        return Math.max(0, Math.min(max, value));
+    }
+}
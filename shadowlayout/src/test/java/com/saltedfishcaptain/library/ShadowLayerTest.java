@@ -0,0 +1,96 @@
+package com.saltedfishcaptain.library;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Parse layer specs and composite layers the way {@link ShadowLayout} does with a renderer.
+ */
+public class ShadowLayerTest {
+    private static final int WIDTH = 120;
+    private static final int HEIGHT = 80;
+
+    private final BoxBlurShadowRenderer renderer = new BoxBlurShadowRenderer();
+
+    @Test
+    public void parse_readsLengthsInDpOrPxAndColors() throws Exception {
+        ShadowLayer[] layers = ShadowLayer.parse("0 1dp 3 #33000000, 2px -1 4dp 1dp #757575", 2);
+
+        assertEquals(2, layers.length);
+        assertEquals(new ShadowLayer(0, 2, 6, 0, 0x33000000), layers[0]);
+        assertEquals(new ShadowLayer(2, -2, 8, 2, 0xFF757575), layers[1]);
+    }
+
+    @Test
+    public void parse_rejectsMalformedSpec() throws Exception {
+        String[] specs = {"", "0 1dp #33000000", "0 1dp 3dp 0 0 #33000000", "0 1dp 3dp red", "0 a 3dp #000"};
+        for (String spec : specs) {
+            try {
+                ShadowLayer.parse(spec, 1);
+                fail("Accepted " + spec);
+            } catch (IllegalArgumentException expected) {
+            }
+        }
+    }
+
+    @Test
+    public void extents_coverTheWidestLayerOnEachSide() throws Exception {
+        ShadowLayer[] layers = {
+                new ShadowLayer(0, 4, 8, 0, 0x33000000),
+                new ShadowLayer(-2, 1, 2, 1, 0x24000000)};
+
+        assertEquals(8, ShadowLayer.getExtentLeft(layers), 0);
+        assertEquals(8, ShadowLayer.getExtentRight(layers), 0);
+        assertEquals(4, ShadowLayer.getExtentTop(layers), 0);
+        assertEquals(12, ShadowLayer.getExtentBottom(layers), 0);
+        assertEquals(2, ShadowLayer.getMinBlurRadius(layers), 0);
+    }
+
+    @Test
+    public void opaqueSingleLayer_isIdenticalToSingleShadow() throws Exception {
+        ShadowMask layered = new ShadowMask(WIDTH, HEIGHT);
+        ShadowLayer.render(renderer, layered, new ShadowLayer[]{new ShadowLayer(0, 0, 10, 0, 0xFF000000)},
+                6, ShadowRenderScale.FULL);
+
+        ShadowMask single = new ShadowMask(WIDTH, HEIGHT);
+        renderer.render(single, 10, 10, WIDTH - 10, HEIGHT - 10, 6, 10);
+
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                assertEquals(single.getAlpha(x, y), layered.getAlpha(x, y));
+            }
+        }
+    }
+
+    @Test
+    public void layers_areCompositedWithSourceOver() throws Exception {
+        ShadowLayer key = new ShadowLayer(0, 4, 4, 0, 0x80000000);
+        ShadowLayer ambient = new ShadowLayer(0, 0, 12, 2, 0x40000000);
+        ShadowLayer[] layers = {key, ambient};
+
+        ShadowMask layered = new ShadowMask(WIDTH, HEIGHT);
+        ShadowLayer.render(renderer, layered, layers, 6, ShadowRenderScale.FULL);
+
+        ShadowMask keyMask = renderLayer(layers, key);
+        ShadowMask ambientMask = renderLayer(layers, ambient);
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                double first = keyMask.getAlpha(x, y) * 0x80 / 255.0;
+                double second = ambientMask.getAlpha(x, y) * 0x40 / 255.0;
+                double expected = first + second * (255 - Math.round(first)) / 255;
+                assertEquals(expected, layered.getAlpha(x, y), 1.5);
+            }
+        }
+    }
+
+    private ShadowMask renderLayer(ShadowLayer[] layers, ShadowLayer layer) {
+        float[] rect = new float[4];
+        ShadowLayer.getLayerRect(layers, layer, WIDTH, HEIGHT, ShadowRenderScale.FULL, rect);
+
+        ShadowMask mask = new ShadowMask(WIDTH, HEIGHT);
+        renderer.render(mask, rect[0], rect[1], rect[2], rect[3], layer.getCornerRadius(6), layer.getBlurRadius());
+        return mask;
+    }
+}
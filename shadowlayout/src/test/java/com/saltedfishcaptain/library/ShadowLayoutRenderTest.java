@@ -0,0 +1,404 @@
+package com.saltedfishcaptain.library;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Path;
+import android.graphics.RectF;
+import android.graphics.drawable.Drawable;
+import android.view.View;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.GraphicsMode;
+
+import java.io.File;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Lay out {@link ShadowLayout} and {@link SuperShadowLayout} on the native graphics of Robolectric
+ * and read back the alpha of what they draw. Every mode of {@link ShadowLayout} rendering the
+ * goldens of {@link ShadowGoldenTest} is held to them, the platform and analytic renderers within
+ * a bound, a nine patch to the full layout, and the signed distance field renderer to its own
+ * render. Bitmap modes of {@link SuperShadowLayout} are held to its direct draw, which draws the
+ * same {@link ShadowDrawable} without a bitmap.
+ * <p>
+ * Resources of the library are not merged for unit tests by this version of the android plugin,
+ * so specs start from resources which give the defaults without looking them up.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 33, manifest = Config.NONE)
+@GraphicsMode(GraphicsMode.Mode.NATIVE)
+public class ShadowLayoutRenderTest {
+    private static final int[][] SIZES = {{96, 64}, {160, 96}};
+    private static final float[] CORNER_RADII = {0, 12};
+    private static final float[] BLUR_RADII = {4, 16};
+    private static final int[] NINE_PATCH_SIZE = {300, 220}; // 比角上的tile大，中间一定被拉伸
+    private static final int SDF_RESOLUTION = 64;
+    private static final int RESIZES = 20;
+
+    private static final int GOLDEN_TOLERANCE = 2; // 蒙版转成Bitmap后再由画笔染色，多一级舍入
+    private static final int SCALED_TOLERANCE = 16; // 缩小渲染再由平台双线性拉伸，比纯Java的拉伸多一些误差
+    private static final int PAINT_TOLERANCE = 12; // 平台的setShadowLayer模糊与三次box blur的差别，实测最多11
+    private static final int ANALYTIC_TOLERANCE = 8; // 与ShadowGoldenTest一致
+
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    @Test
+    public void shadowLayout_matchesGoldenMasks() throws Exception {
+        for (int[] size : SIZES) {
+            for (float cornerRadius : CORNER_RADII) {
+                for (float blurRadius : BLUR_RADII) {
+                    ShadowMask actual = drawAlpha(new ShadowLayout(getContext(), newSpec(cornerRadius, blurRadius).build()), size);
+                    ShadowGoldenTest.assertMaxDifference(getGolden(size, cornerRadius, blurRadius), actual, GOLDEN_TOLERANCE);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void shadowLayout_quadrant_matchesGoldenMasks() throws Exception {
+        for (int[] size : SIZES) {
+            for (float cornerRadius : CORNER_RADII) {
+                for (float blurRadius : BLUR_RADII) {
+                    ShadowSpec spec = newSpec(cornerRadius, blurRadius).setQuadrant(true).build();
+                    ShadowMask actual = drawAlpha(new ShadowLayout(getContext(), spec), size);
+                    ShadowGoldenTest.assertMaxDifference(getGolden(size, cornerRadius, blurRadius), actual, GOLDEN_TOLERANCE);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void shadowLayout_sharedCache_matchesGoldenMasks() throws Exception {
+        for (int[] size : SIZES) {
+            for (float cornerRadius : CORNER_RADII) {
+                for (float blurRadius : BLUR_RADII) {
+                    ShadowSpec spec = newSpec(cornerRadius, blurRadius).setSharedCache(true).build();
+                    drawAlpha(new ShadowLayout(getContext(), spec), size);
+                    // 第二个布局从共享缓存取出同一个Bitmap
+                    ShadowMask actual = drawAlpha(new ShadowLayout(getContext(), spec), size);
+                    ShadowGoldenTest.assertMaxDifference(getGolden(size, cornerRadius, blurRadius), actual, GOLDEN_TOLERANCE);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void shadowLayout_async_matchesGoldenMasks() throws Exception {
+        Executor executor = ShadowRenderQueue.getExecutor();
+        ShadowRenderQueue.setExecutor(DIRECT);
+        try {
+            for (int[] size : SIZES) {
+                for (float cornerRadius : CORNER_RADII) {
+                    for (float blurRadius : BLUR_RADII) {
+                        ShadowSpec spec = newSpec(cornerRadius, blurRadius).setAsync(true).build();
+                        ShadowMask actual = drawAlpha(new ShadowLayout(getContext(), spec), size);
+                        ShadowGoldenTest.assertMaxDifference(getGolden(size, cornerRadius, blurRadius), actual, GOLDEN_TOLERANCE);
+                    }
+                }
+            }
+        } finally {
+            ShadowRenderQueue.setExecutor(executor);
+        }
+    }
+
+    @Test
+    public void shadowLayout_diskCache_loadsGoldenMasks() throws Exception {
+        File directory = File.createTempFile("shadow", "");
+        directory.delete();
+        ShadowDiskCache cache = new ShadowDiskCache(directory, 4 * 1024 * 1024, DIRECT);
+        ShadowDiskCache.install(cache);
+        try {
+            int writes = 0;
+            for (int[] size : SIZES) {
+                for (float cornerRadius : CORNER_RADII) {
+                    for (float blurRadius : BLUR_RADII) {
+                        ShadowSpec spec = newSpec(cornerRadius, blurRadius).build();
+                        drawAlpha(new ShadowLayout(getContext(), spec), size);
+                        assertEquals(++writes, cache.getWriteCount());
+                        // 第二个布局从磁盘读出第一个布局写入的阴影
+                        ShadowMask actual = drawAlpha(new ShadowLayout(getContext(), spec), size);
+                        assertEquals(writes, cache.getHitCount());
+                        ShadowGoldenTest.assertMaxDifference(getGolden(size, cornerRadius, blurRadius), actual, GOLDEN_TOLERANCE);
+                    }
+                }
+            }
+        } finally {
+            ShadowDiskCache.install((ShadowDiskCache) null);
+            deleteDirectory(directory);
+        }
+    }
+
+    @Test
+    public void shadowLayout_paint_staysCloseToGoldenMasks() throws Exception {
+        for (int[] size : SIZES) {
+            for (float cornerRadius : CORNER_RADII) {
+                for (float blurRadius : BLUR_RADII) {
+                    ShadowSpec spec = newSpec(cornerRadius, blurRadius).setRenderer(ShadowSpec.RENDERER_PAINT).build();
+                    ShadowMask actual = drawAlpha(new ShadowLayout(getContext(), spec), size);
+                    ShadowGoldenTest.assertMaxDifference(getGolden(size, cornerRadius, blurRadius), actual, PAINT_TOLERANCE);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void shadowLayout_analytic_staysCloseToGoldenMasks() throws Exception {
+        for (int[] size : SIZES) {
+            for (float cornerRadius : CORNER_RADII) {
+                for (float blurRadius : BLUR_RADII) {
+                    ShadowSpec spec = newSpec(cornerRadius, blurRadius).setRenderer(ShadowSpec.RENDERER_ANALYTIC).build();
+                    ShadowMask actual = drawAlpha(new ShadowLayout(getContext(), spec), size);
+                    ShadowGoldenTest.assertMaxDifference(getGolden(size, cornerRadius, blurRadius), actual, ANALYTIC_TOLERANCE);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void shadowLayout_sdf_matchesDirectRender() throws Exception {
+        for (int[] size : SIZES) {
+            for (float cornerRadius : CORNER_RADII) {
+                for (float blurRadius : BLUR_RADII) {
+                    Path path = new Path();
+                    path.addRoundRect(new RectF(0, 0, size[0] - 2 * blurRadius, size[1] - 2 * blurRadius),
+                            cornerRadius, cornerRadius, Path.Direction.CW);
+                    SdfShadowRenderer renderer = new SdfShadowRenderer(SignedDistanceField.fromPath(path, SDF_RESOLUTION));
+                    ShadowMask expected = new ShadowMask(size[0], size[1]);
+                    ShadowLayout.renderShadowMask(renderer, expected, size[0], size[1], ShadowRenderScale.FULL,
+                            cornerRadius, blurRadius, null);
+
+                    ShadowLayout layout = new ShadowLayout(getContext(), newSpec(cornerRadius, blurRadius).build());
+                    layout.setShadowRenderer(renderer);
+                    ShadowGoldenTest.assertMaxDifference(expected, drawAlpha(layout, size), GOLDEN_TOLERANCE);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void shadowLayout_ninePatch_matchesFullLayout() throws Exception {
+        for (float cornerRadius : CORNER_RADII) {
+            for (float blurRadius : BLUR_RADII) {
+                ShadowSpec.Builder spec = newSpec(cornerRadius, blurRadius);
+                ShadowMask full = drawAlpha(new ShadowLayout(getContext(), spec.build()), NINE_PATCH_SIZE);
+                ShadowMask actual = drawAlpha(new ShadowLayout(getContext(), spec.setNinePatch(true).build()), NINE_PATCH_SIZE);
+
+                ShadowGoldenTest.assertMaxDifference(full, actual, GOLDEN_TOLERANCE);
+            }
+        }
+    }
+
+    @Test
+    public void shadowLayout_hollow_matchesGoldenMasksOutsideHole() throws Exception {
+        for (int[] size : SIZES) {
+            for (float cornerRadius : CORNER_RADII) {
+                for (float blurRadius : BLUR_RADII) {
+                    ShadowLayout layout = new ShadowLayout(getContext(), newSpec(cornerRadius, blurRadius).setHollow(true).build());
+                    ShadowMask actual = drawAlpha(layout, size);
+                    int[] hole = {
+                            getHoleInset(layout.getPaddingLeft(), cornerRadius),
+                            getHoleInset(layout.getPaddingTop(), cornerRadius),
+                            size[0] - getHoleInset(layout.getPaddingRight(), cornerRadius),
+                            size[1] - getHoleInset(layout.getPaddingBottom(), cornerRadius)};
+
+                    assertMatchesOutsideHole(getGolden(size, cornerRadius, blurRadius), actual, hole);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void shadowLayout_halfScale_staysCloseToGoldenMasks() throws Exception {
+        for (int[] size : SIZES) {
+            for (float cornerRadius : CORNER_RADII) {
+                ShadowSpec spec = newSpec(cornerRadius, 16).setRenderScale(ShadowRenderScale.HALF).build();
+                ShadowMask actual = drawAlpha(new ShadowLayout(getContext(), spec), size);
+                ShadowGoldenTest.assertMaxDifference(getGolden(size, cornerRadius, 16), actual, SCALED_TOLERANCE);
+            }
+        }
+    }
+
+    @Test
+    public void shadowLayout_resize_reusesBackgroundAndAllocatesNothing() throws Exception {
+        assertResizeAllocatesNothing(newSpec(12, 16));
+        assertResizeAllocatesNothing(newSpec(12, 16).setQuadrant(true));
+        assertResizeAllocatesNothing(newSpec(12, 16).setHollow(true));
+    }
+
+    @Test
+    public void superShadowLayout_bitmap_matchesDirectDraw() throws Exception {
+        for (int[] size : SIZES) {
+            for (float cornerRadius : CORNER_RADII) {
+                for (float blurRadius : BLUR_RADII) {
+                    assertBitmapMatchesDirectDraw(newSpec(cornerRadius, blurRadius), size, GOLDEN_TOLERANCE);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void superShadowLayout_quadrantAndHollow_matchDirectDraw() throws Exception {
+        for (int[] size : SIZES) {
+            for (float cornerRadius : CORNER_RADII) {
+                for (float blurRadius : BLUR_RADII) {
+                    assertBitmapMatchesDirectDraw(newSpec(cornerRadius, blurRadius).setQuadrant(true), size, GOLDEN_TOLERANCE);
+                    assertBitmapMatchesDirectDraw(newSpec(cornerRadius, blurRadius).setHollow(true), size, GOLDEN_TOLERANCE);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void superShadowLayout_halfScale_staysCloseToDirectDraw() throws Exception {
+        for (int[] size : SIZES) {
+            for (float cornerRadius : CORNER_RADII) {
+                assertBitmapMatchesDirectDraw(newSpec(cornerRadius, 16).setRenderScale(ShadowRenderScale.HALF), size,
+                        SCALED_TOLERANCE);
+            }
+        }
+    }
+
+    /*--------------------------------------------------------------------------------------------*/
+
+    private static Context getContext() {
+        return RuntimeEnvironment.getApplication();
+    }
+
+    /**
+     * A black shadow without padding or offsets, drawn exactly as the golden of the size.
+     */
+    static ShadowSpec.Builder newSpec(float cornerRadius, float blurRadius) {
+        Resources base = getContext().getResources();
+        Resources defaults = new Resources(base.getAssets(), base.getDisplayMetrics(), base.getConfiguration()) {
+            @Override
+            public float getDimension(int id) {
+                return 0;
+            }
+
+            @Override
+            public int getColor(int id) {
+                return Color.BLACK;
+            }
+        };
+        return new ShadowSpec.Builder(defaults)
+                .setCornerRadius(cornerRadius)
+                .setBlurRadius(blurRadius)
+                .setColor(Color.BLACK);
+    }
+
+    private static ShadowMask getGolden(int[] size, float cornerRadius, float blurRadius) throws Exception {
+        return ShadowGoldenTest.readGolden(ShadowGoldenTest.getGoldenName(size, cornerRadius, blurRadius));
+    }
+
+    /**
+     * Measure, lay out and draw the layout into a bitmap of the size, its background is the shadow.
+     */
+    static ShadowMask drawAlpha(View layout, int[] size) {
+        layout.measure(View.MeasureSpec.makeMeasureSpec(size[0], View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(size[1], View.MeasureSpec.EXACTLY));
+        layout.layout(0, 0, size[0], size[1]);
+
+        Bitmap output = Bitmap.createBitmap(size[0], size[1], Bitmap.Config.ARGB_8888);
+        layout.draw(new Canvas(output));
+
+        ShadowMask mask = new ShadowMask(size[0], size[1]);
+        for (int y = 0; y < size[1]; y++) {
+            for (int x = 0; x < size[0]; x++) {
+                mask.setAlpha(x, y, Color.alpha(output.getPixel(x, y)));
+            }
+        }
+        output.recycle();
+        return mask;
+    }
+
+    private void assertBitmapMatchesDirectDraw(ShadowSpec.Builder spec, int[] size, int tolerance) {
+        ShadowMask direct = drawAlpha(new SuperShadowLayout(getContext(), spec.setDirectDraw(true).build()), size);
+        ShadowMask bitmap = drawAlpha(new SuperShadowLayout(getContext(), spec.setDirectDraw(false).build()), size);
+
+        ShadowGoldenTest.assertMaxDifference(direct, bitmap, tolerance);
+    }
+
+    /**
+     * The first size renders the target bitmap, every resize after it renders into the same bitmap
+     * again, so the only bytes allowed are those Robolectric allocates to record invalidations.
+     */
+    private static void assertResizeAllocatesNothing(ShadowSpec.Builder spec) {
+        final ShadowLayout layout = new ShadowLayout(getContext(), spec.build());
+        drawAlpha(layout, SIZES[1]);
+        Drawable background = layout.getBackground();
+
+        long allocated = AllocationCounter.countAllocatedBytes(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < RESIZES; i++) {
+                    int[] size = SIZES[i % 2];
+                    int[] oldSize = SIZES[(i + 1) % 2];
+                    layout.onSizeChanged(size[0], size[1], oldSize[0], oldSize[1]);
+                }
+            }
+        });
+
+        assertSame(background, layout.getBackground());
+        long invalidations = AllocationCounter.countInvalidationBytes(RESIZES * getInvalidationsPerResize(background));
+        assertTrue("allocated " + allocated + " bytes in " + RESIZES + " resizes, " + invalidations
+                + " of them to record invalidations", allocated <= invalidations);
+    }
+
+    /**
+     * The background is invalidated, a quadrant or hollow background is invalidated once more by
+     * its new full size.
+     */
+    private static int getInvalidationsPerResize(Drawable background) {
+        return background instanceof QuadrantShadowDrawable || background instanceof HollowShadowDrawable ? 2 : 1;
+    }
+
+    /**
+     * The same as the hole inset of a hollow {@link ShadowLayout}.
+     */
+    private static int getHoleInset(int padding, float cornerRadius) {
+        return (int) Math.ceil(padding + cornerRadius);
+    }
+
+    private static void deleteDirectory(File directory) {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    /**
+     * @param hole left, top, right and bottom of the hole, which must not be drawn.
+     */
+    private static void assertMatchesOutsideHole(ShadowMask expected, ShadowMask actual, int[] hole) {
+        assertEquals(expected.getWidth(), actual.getWidth());
+        assertEquals(expected.getHeight(), actual.getHeight());
+        for (int y = 0; y < expected.getHeight(); y++) {
+            for (int x = 0; x < expected.getWidth(); x++) {
+                boolean inHole = x >= hole[0] && x < hole[2] && y >= hole[1] && y < hole[3];
+                int difference = inHole ? actual.getAlpha(x, y)
+                        : Math.abs(expected.getAlpha(x, y) - actual.getAlpha(x, y));
+                assertTrue("(" + x + ", " + y + ") of " + expected.getWidth() + "x" + expected.getHeight()
+                        + " differs by " + difference, difference <= GOLDEN_TOLERANCE);
+            }
+        }
+    }
+}
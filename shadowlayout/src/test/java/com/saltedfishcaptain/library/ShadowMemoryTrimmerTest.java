@@ -0,0 +1,45 @@
+package com.saltedfishcaptain.library;
+
+import org.junit.Test;
+
+import static android.content.ComponentCallbacks2.TRIM_MEMORY_BACKGROUND;
+import static android.content.ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL;
+import static android.content.ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW;
+import static android.content.ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE;
+import static android.content.ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Check how much of the cache and pool is kept at each trim level, and that pooled masks are
+ * dropped under pressure.
+ */
+public class ShadowMemoryTrimmerTest {
+
+    @Test
+    public void ratios_shrinkWithLevel_poolBeforeCache() throws Exception {
+        assertEquals(1, ShadowMemoryTrimmer.getCacheRatio(TRIM_MEMORY_RUNNING_MODERATE), 0);
+        assertEquals(0.5f, ShadowMemoryTrimmer.getPoolRatio(TRIM_MEMORY_RUNNING_MODERATE), 0);
+
+        assertEquals(0.5f, ShadowMemoryTrimmer.getCacheRatio(TRIM_MEMORY_RUNNING_LOW), 0);
+        assertEquals(0, ShadowMemoryTrimmer.getPoolRatio(TRIM_MEMORY_RUNNING_LOW), 0);
+
+        assertEquals(0, ShadowMemoryTrimmer.getCacheRatio(TRIM_MEMORY_RUNNING_CRITICAL), 0);
+        assertEquals(0, ShadowMemoryTrimmer.getCacheRatio(TRIM_MEMORY_UI_HIDDEN), 0);
+        assertEquals(0, ShadowMemoryTrimmer.getCacheRatio(TRIM_MEMORY_BACKGROUND), 0);
+    }
+
+    @Test
+    public void trimMemory_critical_dropsPooledMasks() throws Exception {
+        ShadowMask mask = ShadowMask.obtain(10, 10);
+        mask.recycle();
+        ShadowMemoryTrimmer.trimMemory(TRIM_MEMORY_RUNNING_MODERATE);
+        ShadowMask reused = ShadowMask.obtain(10, 10);
+        assertSame(mask, reused);
+
+        reused.recycle();
+        ShadowMemoryTrimmer.trimMemory(TRIM_MEMORY_RUNNING_CRITICAL);
+        assertNotSame(reused, ShadowMask.obtain(10, 10));
+    }
+}
@@ -0,0 +1,180 @@
+package com.saltedfishcaptain.library;
+
+import android.graphics.Bitmap;
+import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.Drawable;
+import android.view.View;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.GraphicsMode;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Hold the jobs of {@link ShadowRenderQueue} in a queued executor and run them when the test
+ * decides, on the main thread where results are delivered at once, or on another thread where
+ * they are posted to the main looper, so a layout can be resized or detached in between.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 33, manifest = Config.NONE)
+@GraphicsMode(GraphicsMode.Mode.NATIVE)
+public class ShadowRenderQueueTest {
+    private static final int[] SIZE = {160, 96};
+    private static final int[] SMALL_SIZE = {96, 64};
+
+    private final List<Runnable> jobs = new ArrayList<>();
+    private Executor executor;
+
+    @Before
+    public void setUp() throws Exception {
+        executor = ShadowRenderQueue.getExecutor();
+        ShadowRenderQueue.setExecutor(new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                jobs.add(command);
+            }
+        });
+        ShadowBitmapPool.getInstance().clear();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        ShadowRenderQueue.setExecutor(executor);
+        ShadowBitmapPool.getInstance().clear();
+    }
+
+    @Test
+    public void render_replacesPlaceholderWithBitmap() throws Exception {
+        ShadowLayout layout = newAsyncLayout();
+        layOut(layout, SIZE);
+        assertTrue(layout.getBackground() instanceof ShadowDrawable);
+
+        runJobs();
+
+        Bitmap bitmap = getBackgroundBitmap(layout);
+        assertEquals(SIZE[0], bitmap.getWidth());
+        assertEquals(SIZE[1], bitmap.getHeight());
+        ShadowGoldenTest.assertMaxDifference(
+                ShadowGoldenTest.readGolden(ShadowGoldenTest.getGoldenName(SIZE, 12, 16)),
+                ShadowLayoutRenderTest.drawAlpha(layout, SIZE), 2);
+    }
+
+    @Test
+    public void resizeBeforeDelivery_dropsStaleBitmapIntoPool() throws Exception {
+        ShadowLayout layout = newAsyncLayout();
+        layOut(layout, SIZE);
+        Drawable placeholder = layout.getBackground();
+        runJobsOnAnotherThread(); // 结果已经渲染好，投递还在主线程排队
+
+        layOut(layout, SMALL_SIZE);
+        ShadowLooper.idleMainLooper();
+
+        assertSame(placeholder, layout.getBackground());
+        assertTrue(ShadowBitmapPool.getInstance().getCurrentBytes() > 0);
+
+        int hitCount = ShadowBitmapPool.getInstance().getHitCount();
+        runJobs();
+
+        // 新的size从池中取出过期的Bitmap来渲染
+        assertEquals(hitCount + 1, ShadowBitmapPool.getInstance().getHitCount());
+        Bitmap bitmap = getBackgroundBitmap(layout);
+        assertEquals(SMALL_SIZE[0], bitmap.getWidth());
+        assertEquals(SMALL_SIZE[1], bitmap.getHeight());
+    }
+
+    @Test
+    public void detach_discardsRenderInFlight() throws Exception {
+        ShadowLayout layout = newAsyncLayout();
+        layOut(layout, SIZE);
+
+        layout.onDetachedFromWindow();
+        runJobs();
+
+        assertNull(layout.getBackground());
+    }
+
+    @Test
+    public void cancel_afterRender_discardsCallback() throws Exception {
+        ShadowRenderQueue queue = new ShadowRenderQueue();
+        final Bitmap rendered = Bitmap.createBitmap(SIZE[0], SIZE[1], ShadowLayout.SHADOW_BITMAP_CONFIG);
+        queue.submit(new ShadowRenderQueue.Renderer() {
+            @Override
+            public Bitmap render() {
+                return rendered;
+            }
+        }, new ShadowRenderQueue.Callback() {
+            @Override
+            public void onRendered(Bitmap bitmap) {
+                fail("a cancelled result should never be delivered");
+            }
+        });
+        runJobsOnAnotherThread();
+
+        queue.cancel();
+        ShadowLooper.idleMainLooper();
+
+        assertFalse(queue.isPending());
+        assertSame(rendered, ShadowBitmapPool.getInstance().get(SIZE[0], SIZE[1], ShadowLayout.SHADOW_BITMAP_CONFIG));
+    }
+
+    /*--------------------------------------------------------------------------------------------*/
+
+    private static ShadowLayout newAsyncLayout() {
+        return new ShadowLayout(RuntimeEnvironment.getApplication(),
+                ShadowLayoutRenderTest.newSpec(12, 16).setAsync(true).build());
+    }
+
+    private static void layOut(View layout, int[] size) {
+        layout.measure(View.MeasureSpec.makeMeasureSpec(size[0], View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(size[1], View.MeasureSpec.EXACTLY));
+        layout.layout(0, 0, size[0], size[1]);
+    }
+
+    private static Bitmap getBackgroundBitmap(View layout) {
+        Drawable background = layout.getBackground();
+        assertTrue("background is " + background, background instanceof BitmapDrawable);
+        return ((BitmapDrawable) background).getBitmap();
+    }
+
+    /**
+     * Run the jobs on the main thread, a result is delivered before the job returns.
+     */
+    private void runJobs() {
+        List<Runnable> pending = new ArrayList<>(jobs);
+        jobs.clear();
+        for (Runnable job : pending) {
+            job.run();
+        }
+    }
+
+    /**
+     * Run the jobs on a background thread like the default executor, results are posted to the
+     * main looper, which is paused until the test idles it.
+     */
+    private void runJobsOnAnotherThread() throws InterruptedException {
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                runJobs();
+            }
+        });
+        thread.start();
+        thread.join();
+    }
+}
@@ -0,0 +1,110 @@
+package com.saltedfishcaptain.library;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Render shadows downsampled, stretch them back by bilinear filtering like a filtered bitmap
+ * drawable does, and compare them with the full resolution ones.
+ */
+public class ShadowRenderScaleTest {
+    private static final int WIDTH = 240;
+    private static final int HEIGHT = 160;
+
+    private static final int MAX_ERROR = 12; // 最大误差，约为5%
+    private static final double MAX_MEAN_ERROR = 2.5; // 平均误差，约为1%
+
+    private final BoxBlurShadowRenderer renderer = new BoxBlurShadowRenderer();
+
+    @Test
+    public void halfScale_staysCloseToFullScale() throws Exception {
+        assertErrorBelowThreshold(ShadowRenderScale.HALF, 4, 12);
+    }
+
+    @Test
+    public void quarterScale_staysCloseToFullScale() throws Exception {
+        assertErrorBelowThreshold(ShadowRenderScale.QUARTER, 8, 24);
+    }
+
+    @Test
+    public void autoScale_dependsOnBlurRadius() throws Exception {
+        assertEquals(ShadowRenderScale.FULL, ShadowRenderScale.resolve(ShadowRenderScale.AUTO, 4));
+        assertEquals(ShadowRenderScale.HALF, ShadowRenderScale.resolve(ShadowRenderScale.AUTO, 8));
+        assertEquals(ShadowRenderScale.QUARTER, ShadowRenderScale.resolve(ShadowRenderScale.AUTO, 16));
+        assertEquals(ShadowRenderScale.HALF, ShadowRenderScale.resolve(ShadowRenderScale.HALF, 40));
+    }
+
+    @Test
+    public void autoScale_staysCloseToFullScale() throws Exception {
+        for (float blurRadius = 2; blurRadius <= 32; blurRadius += 3) {
+            int scale = ShadowRenderScale.resolve(ShadowRenderScale.AUTO, blurRadius);
+            assertErrorBelowThreshold(scale, 6, blurRadius);
+        }
+    }
+
+    @Test
+    public void scaleSize_roundsToNearestPixel() throws Exception {
+        assertEquals(121, ShadowRenderScale.scaleSize(241, ShadowRenderScale.HALF));
+        assertEquals(60, ShadowRenderScale.scaleSize(241, ShadowRenderScale.QUARTER));
+        assertEquals(1, ShadowRenderScale.scaleSize(1, ShadowRenderScale.QUARTER));
+        assertEquals(241, ShadowRenderScale.scaleSize(241, ShadowRenderScale.FULL));
+    }
+
+    private void assertErrorBelowThreshold(int scale, float cornerRadius, float blurRadius) {
+        ShadowMask full = render(WIDTH, HEIGHT, cornerRadius, blurRadius);
+
+        int scaledWidth = ShadowRenderScale.scaleSize(WIDTH, scale);
+        int scaledHeight = ShadowRenderScale.scaleSize(HEIGHT, scale);
+        ShadowMask scaled = new ShadowMask(scaledWidth, scaledHeight);
+        float inset = blurRadius / scale;
+        renderer.render(scaled, inset, inset, scaledWidth - inset, scaledHeight - inset,
+                cornerRadius / scale, ShadowRenderScale.scaleBlurRadius(blurRadius, scale));
+
+        int maxError = 0;
+        long sumError = 0;
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                int error = Math.abs(full.getAlpha(x, y) - sampleBilinear(scaled, x, y, WIDTH, HEIGHT));
+                maxError = Math.max(maxError, error);
+                sumError += error;
+            }
+        }
+
+        String message = "scale " + scale + " blur " + blurRadius + " max " + maxError
+                + " mean " + (double) sumError / (WIDTH * HEIGHT);
+        assertTrue(message, maxError <= MAX_ERROR);
+        assertTrue(message, (double) sumError / (WIDTH * HEIGHT) <= MAX_MEAN_ERROR);
+    }
+
+    private ShadowMask render(int width, int height, float cornerRadius, float blurRadius) {
+        ShadowMask mask = new ShadowMask(width, height);
+        renderer.render(mask, blurRadius, blurRadius, width - blurRadius, height - blurRadius,
+                cornerRadius, blurRadius);
+        return mask;
+    }
+
+    /**
+     * Sample the mask stretched to the target size at the center of the target pixel.
+     */
+    private static int sampleBilinear(ShadowMask mask, int x, int y, int width, int height) {
+        float sourceX = clamp((x + 0.5f) * mask.getWidth() / width - 0.5f, mask.getWidth() - 1);
+        float sourceY = clamp((y + 0.5f) * mask.getHeight() / height - 0.5f, mask.getHeight() - 1);
+
+        int x0 = (int) sourceX;
+        int y0 = (int) sourceY;
+        int x1 = Math.min(x0 + 1, mask.getWidth() - 1);
+        int y1 = Math.min(y0 + 1, mask.getHeight() - 1);
+        float fx = sourceX - x0;
+        float fy = sourceY - y0;
+
+        float top = mask.getAlpha(x0, y0) * (1 - fx) + mask.getAlpha(x1, y0) * fx;
+        float bottom = mask.getAlpha(x0, y1) * (1 - fx) + mask.getAlpha(x1, y1) * fx;
+        return Math.round(top * (1 - fy) + bottom * fy);
+    }
+
+    private static float clamp(float value, int max) {
+        return Math.max(0, Math.min(max, value));
+    }
+}
@@ -0,0 +1,141 @@
+package com.saltedfishcaptain.library;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Drive {@link ShadowResizeScheduler} frame by frame with a fake clock instead of Choreographer.
+ */
+public class ShadowResizeSchedulerTest {
+    private static final long FRAME_MILLIS = 16;
+
+    private final List<int[]> renders = new ArrayList<>();
+    private long now;
+    private ShadowResizeScheduler scheduler;
+
+    @Before
+    public void setUp() throws Exception {
+        scheduler = new ShadowResizeScheduler(new ShadowResizeScheduler.Callback() {
+            @Override
+            public void onRenderSize(int width, int height) {
+                renders.add(new int[]{width, height});
+            }
+        }) {
+            @Override
+            void scheduleFrame() {
+            }
+
+            @Override
+            void unscheduleFrame() {
+            }
+        };
+        scheduler.setClock(new ShadowResizeScheduler.Clock() {
+            @Override
+            public long uptimeMillis() {
+                return now;
+            }
+        });
+    }
+
+    @Test
+    public void sizeChangesInOneFrame_renderOnce() throws Exception {
+        scheduler.requestSize(100, 100);
+        scheduler.requestSize(101, 102);
+        scheduler.requestSize(103, 104);
+        nextFrame();
+
+        assertEquals(1, renders.size());
+        assertSize(103, 104, renders.get(0));
+    }
+
+    @Test
+    public void resizing_rendersBucketsAtMostOncePerInterval() throws Exception {
+        scheduler.setBucketSize(16);
+        scheduler.setIntervalMillis(50);
+
+        for (int i = 0; i < 30; i++) {
+            scheduler.requestSize(100 + i * 3, 80);
+            nextFrame();
+        }
+
+        // 30 frames of 16ms is 480ms, so no more than 10 renders with a 50ms interval
+        assertTrue(renders.size() > 1);
+        assertTrue(renders.size() <= 10);
+        for (int[] size : renders) {
+            assertEquals(0, size[0] % 16);
+            assertEquals(80, size[1]);
+        }
+        assertTrue(scheduler.isPending());
+    }
+
+    @Test
+    public void sameBucket_isNotRenderedAgain() throws Exception {
+        scheduler.setBucketSize(32);
+
+        for (int i = 0; i < 10; i++) {
+            scheduler.requestSize(130 + i, 64);
+            nextFrame();
+        }
+
+        assertEquals(1, renders.size());
+        assertSize(128, 64, renders.get(0));
+    }
+
+    @Test
+    public void settledSize_isRenderedExactlyOnce() throws Exception {
+        scheduler.setBucketSize(16);
+        scheduler.requestSize(100, 100);
+        nextFrame();
+        scheduler.requestSize(150, 75);
+        long changeTime = now;
+        nextFrame();
+
+        while (scheduler.isPending()) {
+            nextFrame();
+        }
+
+        assertSize(150, 75, renders.get(renders.size() - 1));
+        assertTrue(now - changeTime >= ShadowResizeScheduler.DEFAULT_SETTLE_MILLIS);
+        assertTrue(now - changeTime < ShadowResizeScheduler.DEFAULT_SETTLE_MILLIS + FRAME_MILLIS);
+
+        int count = renders.size();
+        nextFrame();
+        assertEquals(count, renders.size());
+    }
+
+    @Test
+    public void cancel_dropsPendingSize() throws Exception {
+        scheduler.requestSize(100, 100);
+        scheduler.cancel();
+        nextFrame();
+
+        assertFalse(scheduler.isPending());
+        assertTrue(renders.isEmpty());
+    }
+
+    @Test
+    public void toBucketSize_generalizesEvenRounding() throws Exception {
+        assertEquals(10, ShadowResizeScheduler.toBucketSize(11, 2));
+        assertEquals(10, ShadowResizeScheduler.toBucketSize(10, 2));
+        assertEquals(96, ShadowResizeScheduler.toBucketSize(100, 16));
+        assertEquals(7, ShadowResizeScheduler.toBucketSize(7, 16));
+        assertEquals(7, ShadowResizeScheduler.toBucketSize(7, 0));
+    }
+
+    private void nextFrame() {
+        now += FRAME_MILLIS;
+        scheduler.doFrame();
+    }
+
+    private static void assertSize(int width, int height, int[] size) {
+        assertEquals(width, size[0]);
+        assertEquals(height, size[1]);
+    }
+}
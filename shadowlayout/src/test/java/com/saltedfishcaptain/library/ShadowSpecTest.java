@@ -0,0 +1,38 @@
+package com.saltedfishcaptain.library;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * The content padding precomputed by {@link ShadowSpec} is the padding layouts used to compute
+ * for every instance.
+ */
+public class ShadowSpecTest {
+
+    @Test
+    public void contentPadding_fitsBlurAndOffsetsMinusShadowPadding() throws Exception {
+        int[] padding = ShadowSpec.computeContentPadding(10, 2, -4, 1, 0, 3, 0, null);
+
+        assertArrayEquals(new int[]{7, 14, 9, 6}, padding);
+    }
+
+    @Test
+    public void contentPadding_ofLayersReachesWidestLayer() throws Exception {
+        ShadowLayer[] layers = {
+                new ShadowLayer(0, 4, 8, 0, 0x33000000),
+                new ShadowLayer(-2, 1, 2, 1, 0x24000000)};
+
+        int[] padding = ShadowSpec.computeContentPadding(100, 50, 50, 0, 0, 0, 2, layers);
+
+        assertArrayEquals(new int[]{8, 4, 8, 10}, padding);
+    }
+
+    @Test
+    public void layersColor_isOpaqueRgbOfFirstLayer() throws Exception {
+        ShadowLayer[] layers = {new ShadowLayer(0, 4, 8, 0, 0x33123456)};
+
+        assertEquals(0xFF123456, ShadowSpec.getLayersColor(layers));
+    }
+}
@@ -0,0 +1,74 @@
+package com.saltedfishcaptain.library;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Record renders and allocations into a fresh {@link ShadowStats} the way layouts and the pool do.
+ */
+public class ShadowStatsTest {
+    private static final long MILLIS = 1000000;
+
+    private final ShadowStats stats = new ShadowStats();
+
+    @Test
+    public void disabled_recordsNoRender() throws Exception {
+        long start = stats.startRender();
+        stats.onShadowRendered(ShadowStats.TRIGGER_SIZE_CHANGED, start, 100, 100);
+
+        assertEquals(0, start);
+        assertEquals(0, stats.getRenderCount());
+    }
+
+    @Test
+    public void render_isCountedByTriggerAndDuration() throws Exception {
+        stats.setEnabled(true);
+        long now = System.nanoTime();
+        stats.onShadowRendered(ShadowStats.TRIGGER_SIZE_CHANGED, now - 5 * MILLIS, 100, 100);
+        stats.onShadowRendered(ShadowStats.TRIGGER_RESIZE, now - 5 * MILLIS, 100, 100);
+        stats.onShadowRendered(ShadowStats.TRIGGER_INVALIDATE, now - 40 * MILLIS, 100, 100);
+
+        assertEquals(3, stats.getRenderCount());
+        assertEquals(1, stats.getRenderCount(ShadowStats.TRIGGER_SIZE_CHANGED));
+        assertEquals(1, stats.getRenderCount(ShadowStats.TRIGGER_RESIZE));
+        assertEquals(1, stats.getRenderCount(ShadowStats.TRIGGER_INVALIDATE));
+        assertEquals(0, stats.getRenderCount(ShadowStats.TRIGGER_ATTACH));
+        assertArrayEquals(new int[]{0, 0, 0, 2, 0, 0, 1}, stats.getDurationHistogram());
+    }
+
+    @Test
+    public void listener_enablesStatsAndReceivesRenders() throws Exception {
+        final int[] received = new int[2];
+        stats.setListener(new ShadowStats.Listener() {
+            @Override
+            public void onShadowRendered(int trigger, int width, int height, long durationNanos) {
+                received[0] = trigger;
+            }
+
+            @Override
+            public void onBitmapCreated(int bytes) {
+                received[1] = bytes;
+            }
+        });
+
+        stats.onShadowRendered(ShadowStats.TRIGGER_ATTACH, stats.startRender(), 100, 100);
+        stats.onBitmapCreated(4096);
+
+        assertEquals(ShadowStats.TRIGGER_ATTACH, received[0]);
+        assertEquals(4096, received[1]);
+        assertEquals(1, stats.getRenderCount(ShadowStats.TRIGGER_ATTACH));
+    }
+
+    @Test
+    public void heldBytes_excludesDroppedBitmaps() throws Exception {
+        stats.onBitmapCreated(4096);
+        stats.onBitmapCreated(1024);
+        stats.onBitmapDropped(4096);
+        stats.reset();
+
+        assertEquals(1024, stats.getHeldBytes());
+        assertEquals(0, stats.getBitmapCreatedCount());
+    }
+}
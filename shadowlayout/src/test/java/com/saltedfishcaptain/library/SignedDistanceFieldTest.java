@@ -0,0 +1,105 @@
+package com.saltedfishcaptain.library;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Check the distance transform against brute force, and shadows evaluated from the field of a
+ * rect against the round rect renderers.
+ */
+public class SignedDistanceFieldTest {
+
+    @Test
+    public void transform_matchesBruteForce() throws Exception {
+        Random random = new Random(7);
+        int width = 23;
+        int height = 17;
+        boolean[] feature = new boolean[width * height];
+        float[] grid = new float[width * height];
+        for (int i = 0; i < grid.length; i++) {
+            feature[i] = random.nextInt(10) == 0;
+            grid[i] = feature[i] ? 0 : 1e20f;
+        }
+
+        SignedDistanceField.transform(grid, width, height);
+
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                float expected = Float.MAX_VALUE;
+                for (int i = 0; i < feature.length; i++) {
+                    if (!feature[i]) continue;
+                    float dx = i % width - x;
+                    float dy = i / width - y;
+                    expected = Math.min(expected, dx * dx + dy * dy);
+                }
+                assertEquals(expected, grid[y * width + x], 0);
+            }
+        }
+    }
+
+    @Test
+    public void rectField_isDistanceToNearestEdge() throws Exception {
+        SignedDistanceField field = SignedDistanceField.fromMask(createRect(20, 10));
+        int margin = SignedDistanceField.MARGIN;
+
+        assertEquals(-0.5f, field.getDistance(margin, margin + 5), 0);
+        assertEquals(0.5f, field.getDistance(margin - 1, margin + 5), 0);
+        assertEquals(-4.5f, field.getDistance(margin + 4, margin + 4), 0);
+        assertEquals(24, field.getWidth());
+    }
+
+    @Test
+    public void render_withoutBlur_matchesStretchedRectAwayFromCorners() throws Exception {
+        SignedDistanceField field = SignedDistanceField.fromMask(createRect(20, 10));
+        ShadowMask expected = new ShadowMask(50, 40);
+        expected.fillRoundRect(5, 5, 45, 25, 0);
+
+        ShadowMask actual = new ShadowMask(50, 40);
+        field.render(actual, 5, 5, 45, 25, 0);
+
+        // 角上一个像素内的距离是两条边插值出来的，只比较角以外的部分
+        assertMaxDifference(expected, actual, 7, 43, 0, 40, 1);
+        assertMaxDifference(expected, actual, 0, 50, 7, 23, 1);
+    }
+
+    @Test
+    public void render_blurredRect_matchesBoxBlurAlongEdges() throws Exception {
+        SignedDistanceField field = SignedDistanceField.fromMask(createRect(40, 30));
+        ShadowMask expected = new ShadowMask(200, 160);
+        new BoxBlurShadowRenderer().render(expected, 20, 20, 180, 140, 0, 12);
+
+        ShadowMask actual = new ShadowMask(200, 160);
+        field.render(actual, 20, 20, 180, 140, 12);
+
+        assertMaxDifference(expected, actual, 90, 110, 0, 160, 4);
+        assertMaxDifference(expected, actual, 0, 200, 70, 90, 4);
+    }
+
+    @Test
+    public void coverage_isHalfAtEdgeAndFallsOff() throws Exception {
+        assertEquals(0.5f, SignedDistanceField.getCoverage(0, 4), 1e-6f);
+        assertEquals(0.0228f, SignedDistanceField.getCoverage(8, 4), 1e-4f);
+        assertEquals(0.9772f, SignedDistanceField.getCoverage(-8, 4), 1e-4f);
+        assertTrue(SignedDistanceField.getCoverage(1, 4) < SignedDistanceField.getCoverage(0.5f, 4));
+    }
+
+    private static ShadowMask createRect(int width, int height) {
+        ShadowMask mask = new ShadowMask(width, height);
+        mask.fillRoundRect(0, 0, width, height, 0);
+        return mask;
+    }
+
+    private static void assertMaxDifference(ShadowMask expected, ShadowMask actual,
+                                            int left, int right, int top, int bottom, int tolerance) {
+        for (int y = top; y < bottom; y++) {
+            for (int x = left; x < right; x++) {
+                int difference = Math.abs(expected.getAlpha(x, y) - actual.getAlpha(x, y));
+                assertTrue("(" + x + ", " + y + ") differs by " + difference, difference <= tolerance);
+            }
+        }
+    }
+}